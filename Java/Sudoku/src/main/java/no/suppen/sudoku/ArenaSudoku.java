@@ -0,0 +1,81 @@
+package no.suppen.sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * A sudoku whose cells live in a {@link BoardArena}. Reads and writes go
+ * straight to the arena, and the view can be moved to another board, so one
+ * view can walk over any number of boards without allocating.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class ArenaSudoku<S> extends Sudoku<S> {
+	private final BoardArena<S> arena;
+	/** Handle of the board currently viewed */
+	private int handle;
+	/** Buffer holding the board, and the position of its hash and cells */
+	private ByteBuffer buffer;
+	private int offset;
+
+	ArenaSudoku(BoardArena<S> arena, int handle) {
+		super(arena.symbols, arena.cellGroups);
+		this.arena = arena;
+		moveTo(handle);
+	}
+
+	/**
+	 * Makes the view show another board of the same arena
+	 *
+	 * @param handle Handle of the board
+	 *
+	 * @return This view
+	 */
+	public ArenaSudoku<S> moveTo(int handle) {
+		this.handle = handle;
+		buffer = arena.buffer(handle);
+		offset = arena.offset(handle);
+		return this;
+	}
+
+	/** Handle of the board currently viewed */
+	public int handle() {
+		return handle;
+	}
+
+	@Override
+	public int size() {
+		return arena.topology.size;
+	}
+
+	@Override
+	public Optional<S> getCellSymbol(int index) {
+		return arena.storedSymbols.get(buffer.get(offset + Long.BYTES + index));
+	}
+
+	@Override
+	public void setCellSymbol(int index, S symbol) {
+		// Verify the symbol is part of the symbol set
+		if (!symbols.contains(symbol)) {
+			throw new InvalidSymbolException();
+		}
+
+		clearCellSymbol(index);
+		buffer.put(offset + Long.BYTES + index, arena.encode(symbol));
+		buffer.putLong(offset, buffer.getLong(offset) ^ Sudoku.cellHash(index, symbol));
+	}
+
+	@Override
+	public void clearCellSymbol(int index) {
+		Optional<S> symbol = getCellSymbol(index);
+		if (symbol.isPresent()) {
+			buffer.put(offset + Long.BYTES + index, (byte) 0);
+			buffer.putLong(offset, buffer.getLong(offset) ^ Sudoku.cellHash(index, symbol.get()));
+		}
+	}
+
+	@Override
+	public long boardHash() {
+		return buffer.getLong(offset);
+	}
+}
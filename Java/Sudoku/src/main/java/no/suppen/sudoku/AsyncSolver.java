@@ -0,0 +1,112 @@
+package no.suppen.sudoku;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Solves, counts and validates on an executor, for callers which compose
+ * {@link CompletableFuture}s and must not block, like event loops.
+ *
+ * All the work, including looking at the sudoku, happens on the executor. The
+ * calling thread only hands the task over, so sudokus must not be changed
+ * until their futures complete.
+ *
+ * Completing a future in any way, by {@link CompletableFuture#cancel(boolean)},
+ * by a timeout like {@link CompletableFuture#orTimeout} or by
+ * {@link CompletableFuture#complete}, makes its search give up within a
+ * thousand nodes or so, freeing the executor's thread. A task which has not
+ * started yet does nothing when it starts. Cancelling a stage made from the
+ * future, like one from {@code thenApply}, does not reach the search.
+ */
+public final class AsyncSolver {
+	private AsyncSolver() {
+	}
+
+	/**
+	 * Finds one solution to a sudoku, the same one as
+	 * {@link Solver#findSolution(Sudoku)}. Sudokus with more than
+	 * {@link Topology#maxSymbols} symbols can only be cancelled before they start
+	 *
+	 * @param <S>      Type of symbols the sudoku can have
+	 * @param sudoku   The sudoku to solve. Will not be mutated
+	 * @param executor Where to search
+	 *
+	 * @return A future solution, or nothing if there is none
+	 */
+	public static <S> CompletableFuture<Optional<Sudoku<S>>> solveAsync(Sudoku<S> sudoku, Executor executor) {
+		return AsyncSolver.run(executor,
+				cancelled -> SolvingStrategy.mostConstrainedCell().findSolution(sudoku, cancelled));
+	}
+
+	/**
+	 * Counts the solutions of a sudoku, stopping once a limit is reached. Sudokus
+	 * with more than {@link Topology#maxSymbols} symbols can only be cancelled
+	 * before they start
+	 *
+	 * @param <S>      Type of symbols the sudoku can have
+	 * @param sudoku   The sudoku to count the solutions of. Will not be mutated
+	 * @param limit    Stop counting when this many solutions have been found
+	 * @param executor Where to search
+	 *
+	 * @return The future number of solutions, or the limit if there are at least
+	 *         that many
+	 */
+	public static <S> CompletableFuture<Long> countSolutionsAsync(Sudoku<S> sudoku, long limit, Executor executor) {
+		return AsyncSolver.run(executor, cancelled -> {
+			if (!Topology.supports(sudoku)) {
+				return Solver.countSolutions(sudoku, limit);
+			}
+
+			MaskBoard board = Solver.maskBoard(sudoku, Topology.of(sudoku));
+			return board == null ? 0 : board.countSolutions(limit, cancelled);
+		});
+	}
+
+	/**
+	 * Validates a standard 9x9 puzzle record, see {@link PuzzleValidator}
+	 *
+	 * @param record   The record. Will be read on the executor
+	 * @param executor Where to validate
+	 *
+	 * @return The future validation, numbered 1
+	 */
+	public static CompletableFuture<PuzzleValidator.Validation> validateAsync(CharSequence record,
+			Executor executor) {
+		return AsyncSolver.run(executor, cancelled -> {
+			PuzzleValidator validator = new PuzzleValidator();
+			PuzzleValidator.Verdict verdict = validator.verdict(record, cancelled);
+			return new PuzzleValidator.Validation(1, verdict, validator.reason());
+		});
+	}
+
+	/**
+	 * Runs a task on an executor, giving it a cancellation check which is true
+	 * once the returned future is completed some other way
+	 */
+	private static <T> CompletableFuture<T> run(Executor executor, Function<BooleanSupplier, T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		BooleanSupplier cancelled = future::isDone;
+		try {
+			executor.execute(() -> {
+				if (future.isDone()) {
+					return;
+				}
+
+				try {
+					future.complete(task.apply(cancelled));
+				} catch (Throwable e) {
+					// A task which gave up finds the future done already, so this does
+					// nothing then
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+}
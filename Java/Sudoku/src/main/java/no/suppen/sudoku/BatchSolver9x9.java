@@ -0,0 +1,244 @@
+package no.suppen.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Solves many standard 9x9 sudokus at once. The candidates of a whole batch of
+ * puzzles are kept in one array, cell by cell, so that the candidates of the
+ * same cell in every puzzle of the batch lie next to each other. Naked and
+ * hidden singles are then propagated through the whole batch with tight loops
+ * over the puzzles, which the JIT can vectorize. Only puzzles which are not
+ * solved by propagation alone are handed to {@link Solver#findSolution(Sudoku)},
+ * one by one.
+ *
+ * Instances keep their working arrays between calls, and are not thread safe.
+ */
+public class BatchSolver9x9 {
+	/** Layout of a standard 9x9 sudoku */
+	private static final Topology<Integer> topology = Topology.of(Sudoku9x9.empty());
+	/** Mask of all nine digits */
+	private static final int allDigits = 0x1FF;
+
+	/** Number of puzzles propagated together */
+	private final int batchSize;
+	/** Candidates of the batch. Cell i of puzzle p is at i * batchSize + p */
+	private final int[] candidates;
+	/** Working rows, one entry per puzzle */
+	private final int[] singles, once, twice;
+
+	/** Number of puzzles which needed search since this solver was made */
+	private long searched = 0;
+
+	/**
+	 * Creates a new batch solver
+	 *
+	 * @param batchSize Number of puzzles to propagate together
+	 */
+	public BatchSolver9x9(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive. Got " + batchSize);
+		}
+
+		this.batchSize = batchSize;
+		candidates = new int[Sudoku9x9.size * batchSize];
+		singles = new int[batchSize];
+		once = new int[batchSize];
+		twice = new int[batchSize];
+	}
+
+	/** Number of puzzles which were not solved by propagation alone */
+	public long searched() {
+		return searched;
+	}
+
+	/**
+	 * Solves standard 9x9 sudokus
+	 *
+	 * @param puzzles The sudokus to solve. Will not be mutated
+	 *
+	 * @return A solution to each sudoku, in the same order. Empty for sudokus
+	 *         without solutions. Sudokus with more than one solution get one of
+	 *         them
+	 *
+	 * @throws IllegalArgumentException If a sudoku is not a standard 9x9 sudoku
+	 */
+	public List<Optional<Sudoku<Integer>>> solve(List<Sudoku<Integer>> puzzles) {
+		byte[] digits = new byte[puzzles.size() * Sudoku9x9.size];
+		for (int p = 0; p < puzzles.size(); p++) {
+			Sudoku<Integer> puzzle = puzzles.get(p);
+			if (!Sudoku9x9.isStandard9x9(puzzle)) {
+				throw new IllegalArgumentException("Sudoku " + p + " is not a standard 9x9 sudoku");
+			}
+
+			int offset = p * Sudoku9x9.size;
+			puzzle.filledCellIndices().forEach(i -> digits[offset + i] = puzzle.getCellSymbol(i).get().byteValue());
+		}
+
+		byte[] solutions = new byte[digits.length];
+		solve(digits, solutions, puzzles.size());
+
+		List<Optional<Sudoku<Integer>>> result = new ArrayList<>(puzzles.size());
+		for (int p = 0; p < puzzles.size(); p++) {
+			int offset = p * Sudoku9x9.size;
+			if (solutions[offset] == 0) {
+				result.add(Optional.empty());
+				continue;
+			}
+
+			Sudoku<Integer> solution = Sudoku9x9.empty();
+			solution.cellIndices().forEach(i -> solution.setCellSymbol(i, (int) solutions[offset + i]));
+			result.add(Optional.of(solution));
+		}
+		return result;
+	}
+
+	/**
+	 * Solves standard 9x9 sudokus given as digits, 81 per puzzle, with 0 for
+	 * empty cells. This avoids making {@link Sudoku} objects for puzzles which
+	 * are solved by propagation
+	 *
+	 * @param puzzles   Digits of the puzzles
+	 * @param solutions Output. Receives the digits of a solution to each puzzle,
+	 *                  or 81 zeros for puzzles without solutions
+	 * @param count     Number of puzzles
+	 *
+	 * @return Number of puzzles with a solution
+	 */
+	public int solve(byte[] puzzles, byte[] solutions, int count) {
+		int solved = 0;
+		for (int start = 0; start < count; start += batchSize) {
+			solved += solveBatch(puzzles, solutions, start, Math.min(batchSize, count - start));
+		}
+		return solved;
+	}
+
+	private int solveBatch(byte[] puzzles, byte[] solutions, int start, int count) {
+		load(puzzles, start, count);
+		propagate(count);
+
+		int solved = 0;
+		for (int p = 0; p < count; p++) {
+			int offset = (start + p) * Sudoku9x9.size;
+
+			// Check what propagation left of the puzzle
+			boolean dead = false, complete = true;
+			for (int i = 0; i < Sudoku9x9.size; i++) {
+				int mask = candidates[i * batchSize + p];
+				dead |= mask == 0;
+				complete &= (mask & (mask - 1)) == 0;
+			}
+
+			if (dead) {
+				clear(solutions, offset);
+			} else if (complete) {
+				for (int i = 0; i < Sudoku9x9.size; i++) {
+					solutions[offset + i] = (byte) (Integer.numberOfTrailingZeros(candidates[i * batchSize + p]) + 1);
+				}
+				solved++;
+			} else if (search(p, solutions, offset)) {
+				solved++;
+			}
+		}
+		return solved;
+	}
+
+	/** Fills the candidate array from the givens of a batch */
+	private void load(byte[] puzzles, int start, int count) {
+		for (int i = 0; i < Sudoku9x9.size; i++) {
+			int row = i * batchSize;
+			for (int p = 0; p < count; p++) {
+				int digit = puzzles[(start + p) * Sudoku9x9.size + i];
+				candidates[row + p] = digit == 0 ? allDigits : 1 << (digit - 1);
+			}
+		}
+	}
+
+	/** Applies naked and hidden singles to the whole batch until nothing changes */
+	private void propagate(int count) {
+		int changed;
+		do {
+			changed = 0;
+
+			// Naked singles: remove each decided digit from the cell's peers
+			for (int i = 0; i < Sudoku9x9.size; i++) {
+				int row = i * batchSize;
+				for (int p = 0; p < count; p++) {
+					int mask = candidates[row + p];
+					singles[p] = (mask & (mask - 1)) == 0 ? mask : 0;
+				}
+
+				for (int peer : topology.peers[i]) {
+					int peerRow = peer * batchSize;
+					for (int p = 0; p < count; p++) {
+						int old = candidates[peerRow + p];
+						int updated = old & ~singles[p];
+						candidates[peerRow + p] = updated;
+						changed |= old ^ updated;
+					}
+				}
+			}
+
+			// Hidden singles: a digit with one possible cell in a group goes there
+			for (int[] group : topology.groups) {
+				for (int p = 0; p < count; p++) {
+					once[p] = 0;
+					twice[p] = 0;
+				}
+
+				for (int i : group) {
+					int row = i * batchSize;
+					for (int p = 0; p < count; p++) {
+						twice[p] |= once[p] & candidates[row + p];
+						once[p] |= candidates[row + p];
+					}
+				}
+
+				for (int i : group) {
+					int row = i * batchSize;
+					for (int p = 0; p < count; p++) {
+						int old = candidates[row + p];
+						int hidden = old & once[p] & ~twice[p];
+						int updated = hidden != 0 ? hidden : old;
+						candidates[row + p] = updated;
+						changed |= old ^ updated;
+					}
+				}
+			}
+		} while (changed != 0);
+	}
+
+	/**
+	 * Searches for a solution to a puzzle which propagation could not finish,
+	 * starting from the cells propagation decided
+	 */
+	private boolean search(int p, byte[] solutions, int offset) {
+		searched++;
+
+		Sudoku<Integer> board = Sudoku9x9.empty();
+		for (int i = 0; i < Sudoku9x9.size; i++) {
+			int mask = candidates[i * batchSize + p];
+			if ((mask & (mask - 1)) == 0) {
+				board.setCellSymbol(i, topology.symbolOf(mask));
+			}
+		}
+
+		Optional<Sudoku<Integer>> solution = Solver.findSolution(board);
+		if (solution.isEmpty()) {
+			clear(solutions, offset);
+			return false;
+		}
+
+		for (int i = 0; i < Sudoku9x9.size; i++) {
+			solutions[offset + i] = solution.get().getCellSymbol(i).get().byteValue();
+		}
+		return true;
+	}
+
+	private static void clear(byte[] solutions, int offset) {
+		for (int i = 0; i < Sudoku9x9.size; i++) {
+			solutions[offset + i] = 0;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package no.suppen.sudoku;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Stores many sudokus with the same layout outside the Java heap. Boards are
+ * packed into direct byte buffers with a fixed stride: the board hash, then one
+ * byte per cell holding 0 for an empty cell, or the symbol's bit number in the
+ * {@link Topology} plus one. A board is referred to by an int handle, and read
+ * and written in place through an {@link ArenaSudoku} view, so keeping millions
+ * of boards alive costs the garbage collector nothing.
+ *
+ * Buffers are allocated as the arena fills up, and are never given back while
+ * the arena is reachable. Freed handles are reused. Arenas are not thread safe.
+ *
+ * @param <S> Type of symbols in the sudokus
+ */
+public class BoardArena<S> {
+	/** Largest buffer to allocate */
+	private static final int maxBufferBytes = 1 << 30;
+
+	/** Layout of the boards */
+	public final Topology<S> topology;
+	/** Symbols of the boards, shared by all views */
+	final Set<S> symbols;
+	/** Cell groups of the boards, shared by all views */
+	final Set<Set<Integer>> cellGroups;
+	/** The symbols wrapped in optionals, by stored byte, so reading a cell does not allocate */
+	final List<Optional<S>> storedSymbols;
+
+	/** Bytes per board, including the board hash */
+	final int stride;
+	/** Number of boards per buffer */
+	private final int boardsPerBuffer;
+	/** Maximum number of boards */
+	private final int capacity;
+
+	/** Buffers allocated so far */
+	private final List<ByteBuffer> buffers = new ArrayList<>();
+	/** Handles which have been freed and can be given out again */
+	private int[] freeHandles = new int[16];
+	private int freeCount = 0;
+	/** The handles in freeHandles, to catch boards freed twice */
+	private final BitSet freed = new BitSet();
+	/** Lowest handle which has never been given out */
+	private int nextUnused = 0;
+
+	/**
+	 * Creates a new, empty arena
+	 *
+	 * @param template A sudoku with the layout of the boards to store
+	 * @param capacity Maximum number of boards to store at once
+	 *
+	 * @throws IllegalArgumentException If the layout has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public BoardArena(Sudoku<S> template, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive. Got " + capacity);
+		}
+
+		topology = Topology.of(template);
+		symbols = Set.copyOf(template.symbols);
+		cellGroups = template.cellGroups.stream().map(Set::copyOf).collect(Collectors.toUnmodifiableSet());
+
+		List<Optional<S>> stored = new ArrayList<>();
+		stored.add(Optional.empty());
+		topology.symbols.forEach(symbol -> stored.add(Optional.of(symbol)));
+		storedSymbols = List.copyOf(stored);
+
+		// Keep the board hashes aligned
+		stride = Long.BYTES + (topology.size + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+		boardsPerBuffer = maxBufferBytes / stride;
+		this.capacity = capacity;
+	}
+
+	/** Maximum number of boards the arena can hold */
+	public int capacity() {
+		return capacity;
+	}
+
+	/** Number of boards currently allocated */
+	public int live() {
+		return nextUnused - freeCount;
+	}
+
+	/** Number of bytes allocated outside the heap */
+	public long offHeapBytes() {
+		return buffers.stream().mapToLong(ByteBuffer::capacity).sum();
+	}
+
+	/**
+	 * Allocates an empty board
+	 *
+	 * @return Handle of the board
+	 *
+	 * @throws IllegalStateException If the arena is full
+	 */
+	public int allocate() {
+		int handle;
+		if (freeCount > 0) {
+			handle = freeHandles[--freeCount];
+			freed.clear(handle);
+		} else {
+			if (nextUnused == capacity) {
+				throw new IllegalStateException("Arena is full, with " + capacity + " boards");
+			}
+			handle = nextUnused++;
+			ensureBuffer(handle);
+		}
+
+		clear(handle);
+		return handle;
+	}
+
+	/**
+	 * Allocates a board with the same cells as a sudoku
+	 *
+	 * @param sudoku The sudoku to copy. Must have the arena's layout
+	 *
+	 * @return Handle of the board
+	 *
+	 * @throws IllegalStateException If the arena is full
+	 */
+	public int allocate(Sudoku<S> sudoku) {
+		int handle = allocate();
+		store(handle, sudoku);
+		return handle;
+	}
+
+	/**
+	 * Allocates many empty boards
+	 *
+	 * @param handles Output. Receives the handles of the boards
+	 * @param count   Number of boards to allocate
+	 *
+	 * @throws IllegalStateException If the arena does not have room for all of
+	 *                               them. Nothing is allocated then
+	 */
+	public void allocate(int[] handles, int count) {
+		if (live() + count > capacity) {
+			throw new IllegalStateException("Arena has room for " + (capacity - live()) + " boards, not " + count);
+		}
+
+		for (int i = 0; i < count; i++) {
+			handles[i] = allocate();
+		}
+	}
+
+	/**
+	 * Frees a board, so its handle can be given out again. Views of the board must
+	 * not be used afterwards
+	 *
+	 * @param handle Handle of the board
+	 *
+	 * @throws IndexOutOfBoundsException If the handle has never been given out
+	 * @throws IllegalStateException     If the board is already free
+	 */
+	public void free(int handle) {
+		Objects.checkIndex(handle, nextUnused);
+		if (freed.get(handle)) {
+			throw new IllegalStateException("Board " + handle + " is already free");
+		}
+		freed.set(handle);
+
+		if (freeCount == freeHandles.length) {
+			int[] grown = new int[freeHandles.length * 2];
+			System.arraycopy(freeHandles, 0, grown, 0, freeCount);
+			freeHandles = grown;
+		}
+		freeHandles[freeCount++] = handle;
+	}
+
+	/**
+	 * Frees many boards
+	 *
+	 * @param handles Handles of the boards
+	 * @param count   Number of handles to free
+	 *
+	 * @throws IndexOutOfBoundsException If a handle has never been given out
+	 * @throws IllegalStateException     If a board is already free
+	 */
+	public void free(int[] handles, int count) {
+		for (int i = 0; i < count; i++) {
+			free(handles[i]);
+		}
+	}
+
+	/** Frees every board at once. The buffers are kept for reuse */
+	public void freeAll() {
+		nextUnused = 0;
+		freeCount = 0;
+		freed.clear();
+	}
+
+	/**
+	 * Gets a view of a board
+	 *
+	 * @param handle Handle of the board
+	 *
+	 * @return A new sudoku reading and writing the board in place
+	 */
+	public ArenaSudoku<S> view(int handle) {
+		return new ArenaSudoku<>(this, handle);
+	}
+
+	/**
+	 * Copies a sudoku into a board
+	 *
+	 * @param handle Handle of the board
+	 * @param sudoku The sudoku to copy. Must have the arena's layout
+	 */
+	public void store(int handle, Sudoku<S> sudoku) {
+		ByteBuffer buffer = buffer(handle);
+		int offset = offset(handle);
+		long hash = 0;
+
+		for (int i = 0; i < topology.size; i++) {
+			Optional<S> symbol = sudoku.getCellSymbol(i);
+			if (symbol.isPresent()) {
+				buffer.put(offset + Long.BYTES + i, encode(symbol.get()));
+				hash ^= Sudoku.cellHash(i, symbol.get());
+			} else {
+				buffer.put(offset + Long.BYTES + i, (byte) 0);
+			}
+		}
+		buffer.putLong(offset, hash);
+	}
+
+	/**
+	 * Copies a board onto the heap
+	 *
+	 * @param handle Handle of the board
+	 *
+	 * @return A new, ordinary sudoku with the board's cells
+	 */
+	public Sudoku<S> load(int handle) {
+		return new Sudoku<>(view(handle));
+	}
+
+	/** Gets the byte a symbol is stored as */
+	byte encode(S symbol) {
+		return (byte) (Integer.numberOfTrailingZeros(topology.bitOf(symbol)) + 1);
+	}
+
+	/** Gets the buffer holding a board */
+	ByteBuffer buffer(int handle) {
+		return buffers.get(handle / boardsPerBuffer);
+	}
+
+	/** Gets the position of a board in its buffer */
+	int offset(int handle) {
+		return handle % boardsPerBuffer * stride;
+	}
+
+	private void ensureBuffer(int handle) {
+		if (handle / boardsPerBuffer < buffers.size()) {
+			return;
+		}
+
+		// The last buffer only needs room for the rest of the capacity
+		long boards = Math.min(boardsPerBuffer, capacity - (long) buffers.size() * boardsPerBuffer);
+		buffers.add(ByteBuffer.allocateDirect((int) (boards * stride)).order(ByteOrder.nativeOrder()));
+	}
+
+	private void clear(int handle) {
+		ByteBuffer buffer = buffer(handle);
+		int offset = offset(handle);
+		for (int i = 0; i < stride; i += Long.BYTES) {
+			buffer.putLong(offset + i, 0);
+		}
+	}
+}
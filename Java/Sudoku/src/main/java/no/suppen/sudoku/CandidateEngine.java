@@ -0,0 +1,86 @@
+package no.suppen.sudoku;
+
+/**
+ * Computes candidate masks for all cells of a board at once. Boards are given
+ * as cell masks, as made by {@link Topology#cellMasks(Sudoku)}, and all arrays
+ * have room for the topology's phantom cell and phantom group.
+ *
+ * There is a plain implementation, and one using the incubating
+ * {@code jdk.incubator.vector} module, which is used when the module is
+ * present. Start the JVM with {@code --add-modules jdk.incubator.vector} to
+ * enable it. Setting the system property {@code no.suppen.sudoku.vector} to
+ * {@code false} forces the plain implementation.
+ */
+public interface CandidateEngine {
+	/**
+	 * Finds the symbols used in each cell group
+	 *
+	 * @param topology  The board's topology
+	 * @param cellMasks The board's cells as masks
+	 * @param groupUsed Output. Receives the union of the cell masks of each group
+	 */
+	void groupUsed(Topology<?> topology, int[] cellMasks, int[] groupUsed);
+
+	/**
+	 * Finds the candidates of each cell
+	 *
+	 * @param topology   The board's topology
+	 * @param cellMasks  The board's cells as masks
+	 * @param groupUsed  Symbols used in each cell group, as found by
+	 *                   {@link #groupUsed(Topology, int[], int[])}
+	 * @param candidates Output. Receives the symbols not used by any linked cell
+	 *                   for empty cells, and 0 for filled cells
+	 */
+	void candidates(Topology<?> topology, int[] cellMasks, int[] groupUsed, int[] candidates);
+
+	/**
+	 * Finds the symbols which have exactly one possible cell in each cell group.
+	 * Only groups with one cell per symbol are considered, as a symbol does not
+	 * have to appear in smaller groups
+	 *
+	 * @param topology   The board's topology
+	 * @param candidates Candidates of each cell
+	 * @param groupUsed  Symbols used in each cell group
+	 * @param hidden     Output. Receives the symbols with one possible cell in
+	 *                   each group, or 0 for groups which are not considered
+	 */
+	void hiddenSymbols(Topology<?> topology, int[] candidates, int[] groupUsed, int[] hidden);
+
+	/**
+	 * Counts the set bits of masks
+	 *
+	 * @param masks  Masks to count the bits of
+	 * @param counts Output. Receives the number of set bits of each mask
+	 * @param length Number of masks to count
+	 */
+	void bitCounts(int[] masks, int[] counts, int length);
+
+	/**
+	 * Gets the fastest engine available in this JVM
+	 *
+	 * @return The vector engine if the vector module is present and enabled, the
+	 *         scalar engine otherwise
+	 */
+	static CandidateEngine best() {
+		return Engines.best;
+	}
+
+	/** Holds the chosen engine, so it is only chosen once */
+	static final class Engines {
+		private static final CandidateEngine best = Engines.choose();
+
+		private static CandidateEngine choose() {
+			boolean enabled = Boolean.parseBoolean(System.getProperty("no.suppen.sudoku.vector", "true"));
+			if (enabled && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+				// Loaded reflectively, so this class never links against the vector module
+				try {
+					return (CandidateEngine) Class.forName("no.suppen.sudoku.VectorCandidateEngine")
+							.getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException | LinkageError e) {
+					// Fall through to the scalar engine
+				}
+			}
+			return new ScalarCandidateEngine();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package no.suppen.sudoku;
+
+import java.util.List;
+
+/**
+ * The candidates of every cell of a sudoku, computed all at once as masks by
+ * the best available {@link CandidateEngine}. This is a snapshot: changing the
+ * sudoku afterwards does not change the grid.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class CandidateGrid<S> {
+	/** The sudoku's topology */
+	public final Topology<S> topology;
+
+	private final CandidateEngine engine;
+	private final int[] cellMasks;
+	private final int[] groupUsed;
+	private final int[] candidates;
+	private final int[] counts;
+
+	private CandidateGrid(Topology<S> topology, int[] cellMasks, CandidateEngine engine) {
+		this.topology = topology;
+		this.engine = engine;
+		this.cellMasks = cellMasks;
+
+		groupUsed = new int[topology.groupCount() + 1];
+		candidates = new int[topology.size + 1];
+		counts = new int[topology.size + 1];
+
+		engine.groupUsed(topology, cellMasks, groupUsed);
+		engine.candidates(topology, cellMasks, groupUsed, candidates);
+		engine.bitCounts(candidates, counts, topology.size);
+	}
+
+	/**
+	 * Computes the candidates of a sudoku's cells
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param sudoku The sudoku to compute candidates for
+	 *
+	 * @return The candidates of the sudoku's cells
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> CandidateGrid<S> of(Sudoku<S> sudoku) {
+		return CandidateGrid.of(sudoku, CandidateEngine.best());
+	}
+
+	/**
+	 * Computes the candidates of a sudoku's cells with a specific engine
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param sudoku The sudoku to compute candidates for
+	 * @param engine The engine to compute the candidates with
+	 *
+	 * @return The candidates of the sudoku's cells
+	 */
+	public static <S> CandidateGrid<S> of(Sudoku<S> sudoku, CandidateEngine engine) {
+		Topology<S> topology = Topology.of(sudoku);
+		return new CandidateGrid<>(topology, topology.cellMasks(sudoku), engine);
+	}
+
+	/**
+	 * Gets the candidates of a cell as a mask
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return Mask of the symbols which can be placed in the cell. 0 for filled
+	 *         cells
+	 */
+	public int candidateMask(int index) {
+		return candidates[index];
+	}
+
+	/**
+	 * Gets the candidates of a cell
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return The symbols which can be placed in the cell, in bit order. Empty for
+	 *         filled cells
+	 */
+	public List<S> candidates(int index) {
+		return topology.symbolsOf(candidates[index]);
+	}
+
+	/**
+	 * Gets the number of candidates of a cell
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return Number of symbols which can be placed in the cell
+	 */
+	public int candidateCount(int index) {
+		return counts[index];
+	}
+
+	/**
+	 * Checks whether or not the board has an empty cell without candidates. Such
+	 * a board has no solutions
+	 *
+	 * @return True if an empty cell has no candidates, false otherwise
+	 */
+	public boolean hasDeadCell() {
+		for (int i = 0; i < topology.size; i++) {
+			if (cellMasks[i] == 0 && counts[i] == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the first empty cell with exactly one candidate
+	 *
+	 * @return Index of the cell, or -1 if there is none
+	 */
+	public int firstNakedSingle() {
+		for (int i = 0; i < topology.size; i++) {
+			if (counts[i] == 1) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the empty cell with the fewest candidates. Ties go to the lowest index
+	 *
+	 * @return Index of the cell, or -1 if the board is filled
+	 */
+	public int mostConstrainedCell() {
+		int best = -1;
+		for (int i = 0; i < topology.size; i++) {
+			if (cellMasks[i] == 0 && (best == -1 || counts[i] < counts[best])) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds a symbol which has only one possible cell in a cell group with one
+	 * cell per symbol
+	 *
+	 * @return Pair of cell index and symbol mask, packed as
+	 *         {@code (long) index << 32 | mask}, or -1 if there is none
+	 */
+	public long firstHiddenSingle() {
+		int[] hidden = new int[topology.groupCount()];
+		engine.hiddenSymbols(topology, candidates, groupUsed, hidden);
+
+		for (int g = 0; g < hidden.length; g++) {
+			if (hidden[g] == 0) {
+				continue;
+			}
+
+			int symbol = hidden[g] & -hidden[g];
+			for (int i : topology.groups[g]) {
+				if ((candidates[i] & symbol) != 0) {
+					return (long) i << 32 | (symbol & 0xFFFFFFFFL);
+				}
+			}
+		}
+		return -1;
+	}
+}
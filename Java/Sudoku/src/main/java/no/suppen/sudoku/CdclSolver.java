@@ -0,0 +1,537 @@
+package no.suppen.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A conflict driven clause learning SAT solver, for formulas like the ones made
+ * by {@link Cnf}. It has the usual parts: two watched literals per clause for
+ * unit propagation, first UIP conflict analysis with non-chronological
+ * backjumping, variable activities bumped on conflicts (VSIDS), saved phases,
+ * and restarts following the Luby sequence. Learned clauses are never deleted,
+ * which is fine for formulas of sudoku size.
+ *
+ * A solver solves one formula once, and is not thread safe.
+ */
+public class CdclSolver {
+	/** Conflicts between restarts are this times the Luby sequence */
+	private static final int restartBase = 100;
+	private static final double activityDecay = 0.95;
+
+	private static final byte unassigned = 0, isTrue = 1, isFalse = -1;
+
+	/**
+	 * Literals are numbered 2v for variable v and 2v+1 for its negation. Clauses
+	 * hold them with the two watched literals first
+	 */
+	private final List<int[]> clauses = new ArrayList<>();
+	/** Clauses watching each literal, that is, to visit when it becomes false */
+	private final int[][] watches;
+	private final int[] watchCounts;
+
+	/** Value of each variable */
+	private final byte[] values;
+	/** Value to try first for each variable, from the last time it was assigned */
+	private final boolean[] phases;
+	/** Decision level at which each variable was assigned */
+	private final int[] levels;
+	/** Clause which implied each variable, or -1 for decisions */
+	private final int[] reasons;
+	private final boolean[] seen;
+
+	/** Assigned literals, in order */
+	private final int[] trail;
+	private int trailSize = 0;
+	/** Index in the trail of the next literal to propagate */
+	private int propagated = 0;
+	/** Trail size at the start of each decision level */
+	private int[] levelStarts = new int[16];
+	private int level = 0;
+
+	private final double[] activities;
+	private double activityIncrement = 1;
+	/** Unassigned variables, and some assigned ones, as a max heap on activity */
+	private final int[] heap;
+	private final int[] heapPositions;
+	private int heapSize = 0;
+
+	private final int variableCount;
+	/** Whether or not the clauses were found contradictory while adding them */
+	private boolean contradictory = false;
+	private boolean solved = false;
+
+	private long conflicts = 0, decisions = 0, propagations = 0, restarts = 0;
+
+	/**
+	 * Creates a solver for a formula
+	 *
+	 * @param variableCount Number of variables, numbered from 1
+	 * @param clauses       Clauses as arrays of DIMACS literals. Not mutated
+	 *
+	 * @throws IllegalArgumentException If a literal is 0 or refers to a variable
+	 *                                  out of range
+	 */
+	public CdclSolver(int variableCount, List<int[]> clauses) {
+		this.variableCount = variableCount;
+		int literals = 2 * (variableCount + 1);
+
+		watches = new int[literals][];
+		watchCounts = new int[literals];
+		for (int l = 0; l < literals; l++) {
+			watches[l] = new int[4];
+		}
+
+		values = new byte[variableCount + 1];
+		phases = new boolean[variableCount + 1];
+		levels = new int[variableCount + 1];
+		reasons = new int[variableCount + 1];
+		seen = new boolean[variableCount + 1];
+		trail = new int[variableCount + 1];
+		activities = new double[variableCount + 1];
+		heap = new int[variableCount + 1];
+		heapPositions = new int[variableCount + 1];
+		Arrays.fill(heapPositions, -1);
+		for (int v = 1; v <= variableCount; v++) {
+			heapInsert(v);
+		}
+
+		for (int[] clause : clauses) {
+			addClause(clause);
+		}
+	}
+
+	/**
+	 * Creates a solver for a sudoku's formula
+	 *
+	 * @param cnf The formula
+	 */
+	public CdclSolver(Cnf<?> cnf) {
+		this(cnf.variableCount(), cnf.clauses());
+	}
+
+	/**
+	 * Solves the formula
+	 *
+	 * @return Value of each variable in a satisfying assignment, indexed by
+	 *         variable number, or nothing if the formula is unsatisfiable
+	 *
+	 * @throws IllegalStateException If the solver has already been used
+	 */
+	public Optional<boolean[]> solve() {
+		return solve(() -> false);
+	}
+
+	/**
+	 * Solves the formula, giving up if asked to
+	 *
+	 * @param cancelled Polled before the first decision, and then every thousand
+	 *                  or so decisions and conflicts. The solver gives up once it
+	 *                  returns true
+	 *
+	 * @return Value of each variable in a satisfying assignment, indexed by
+	 *         variable number, or nothing if the formula is unsatisfiable
+	 *
+	 * @throws IllegalStateException If the solver has already been used
+	 * @throws CancellationException If the solver gave up
+	 */
+	public Optional<boolean[]> solve(BooleanSupplier cancelled) {
+		if (solved) {
+			throw new IllegalStateException("A CDCL solver can only be used once");
+		}
+		solved = true;
+
+		if (contradictory || propagate() != -1) {
+			return Optional.empty();
+		}
+
+		int restartNumber = 0;
+		long conflictsLeft = restartBase * CdclSolver.luby(restartNumber);
+
+		long steps = 0;
+		while (true) {
+			if (steps++ % MaskBoard.cancelCheckInterval == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException("The CDCL solver was cancelled");
+			}
+
+			int conflict = propagate();
+			if (conflict != -1) {
+				conflicts++;
+				conflictsLeft--;
+				if (level == 0) {
+					return Optional.empty();
+				}
+				learn(conflict);
+				continue;
+			}
+
+			if (conflictsLeft <= 0) {
+				restarts++;
+				backjump(0);
+				conflictsLeft = restartBase * CdclSolver.luby(++restartNumber);
+				continue;
+			}
+
+			int variable = nextDecision();
+			if (variable == 0) {
+				return Optional.of(model());
+			}
+
+			decisions++;
+			newLevel();
+			assign(2 * variable + (phases[variable] ? 0 : 1), -1);
+		}
+	}
+
+	/** Number of conflicts met */
+	public long conflicts() {
+		return conflicts;
+	}
+
+	/** Number of decisions made */
+	public long decisions() {
+		return decisions;
+	}
+
+	/** Number of literals assigned by unit propagation */
+	public long propagations() {
+		return propagations;
+	}
+
+	/** Number of restarts */
+	public long restarts() {
+		return restarts;
+	}
+
+	/** Adds a clause of DIMACS literals at decision level 0 */
+	private void addClause(int[] dimacs) {
+		int[] clause = new int[dimacs.length];
+		int length = 0;
+
+		for (int d : dimacs) {
+			if (d == 0 || Math.abs(d) > variableCount) {
+				throw new IllegalArgumentException("Invalid literal " + d);
+			}
+			int literal = 2 * Math.abs(d) + (d < 0 ? 1 : 0);
+
+			// Drop duplicates and false literals, and skip satisfied clauses and tautologies
+			boolean skip = false;
+			for (int i = 0; i < length; i++) {
+				if (clause[i] == literal) {
+					skip = true;
+				} else if (clause[i] == (literal ^ 1)) {
+					return;
+				}
+			}
+			byte value = value(literal);
+			if (value == isTrue) {
+				return;
+			}
+			if (!skip && value != isFalse) {
+				clause[length++] = literal;
+			}
+		}
+
+		if (length == 0) {
+			contradictory = true;
+		} else if (length == 1) {
+			assign(clause[0], -1);
+		} else {
+			attach(Arrays.copyOf(clause, length));
+		}
+	}
+
+	/** Stores a clause and watches its first two literals */
+	private int attach(int[] clause) {
+		int index = clauses.size();
+		clauses.add(clause);
+		watch(clause[0], index);
+		watch(clause[1], index);
+		return index;
+	}
+
+	private void watch(int literal, int clause) {
+		if (watchCounts[literal] == watches[literal].length) {
+			watches[literal] = Arrays.copyOf(watches[literal], watchCounts[literal] * 2);
+		}
+		watches[literal][watchCounts[literal]++] = clause;
+	}
+
+	private byte value(int literal) {
+		byte value = values[literal >> 1];
+		return (literal & 1) == 0 ? value : (byte) -value;
+	}
+
+	private void assign(int literal, int reason) {
+		int variable = literal >> 1;
+		values[variable] = (literal & 1) == 0 ? isTrue : isFalse;
+		levels[variable] = level;
+		reasons[variable] = reason;
+		trail[trailSize++] = literal;
+	}
+
+	private void newLevel() {
+		if (level == levelStarts.length) {
+			levelStarts = Arrays.copyOf(levelStarts, level * 2);
+		}
+		levelStarts[level++] = trailSize;
+	}
+
+	/**
+	 * Propagates the assigned literals through the watches
+	 *
+	 * @return Index of a clause with every literal false, or -1 if there was no
+	 *         conflict
+	 */
+	private int propagate() {
+		while (propagated < trailSize) {
+			int falseLiteral = trail[propagated++] ^ 1;
+			int[] watching = watches[falseLiteral];
+			int count = watchCounts[falseLiteral];
+			int kept = 0;
+
+			for (int w = 0; w < count; w++) {
+				int index = watching[w];
+				int[] clause = clauses.get(index);
+
+				// Keep the false literal second
+				if (clause[0] == falseLiteral) {
+					clause[0] = clause[1];
+					clause[1] = falseLiteral;
+				}
+
+				if (value(clause[0]) == isTrue) {
+					watching[kept++] = index;
+					continue;
+				}
+
+				// Look for another literal to watch
+				boolean moved = false;
+				for (int k = 2; k < clause.length; k++) {
+					if (value(clause[k]) != isFalse) {
+						clause[1] = clause[k];
+						clause[k] = falseLiteral;
+						watch(clause[1], index);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+
+				// The clause is unit or conflicting
+				watching[kept++] = index;
+				if (value(clause[0]) == isFalse) {
+					for (w++; w < count; w++) {
+						watching[kept++] = watching[w];
+					}
+					watchCounts[falseLiteral] = kept;
+					propagated = trailSize;
+					return index;
+				}
+				propagations++;
+				assign(clause[0], index);
+			}
+			watchCounts[falseLiteral] = kept;
+		}
+		return -1;
+	}
+
+	/**
+	 * Learns a clause from a conflict by first UIP analysis, jumps back to where
+	 * it becomes unit and assigns its asserting literal
+	 */
+	private void learn(int conflict) {
+		List<Integer> learned = new ArrayList<>();
+		learned.add(0);
+
+		int pending = 0;
+		int literal = -1;
+		int index = trailSize - 1;
+		int reason = conflict;
+
+		do {
+			int[] clause = clauses.get(reason);
+			for (int k = literal == -1 ? 0 : 1; k < clause.length; k++) {
+				int variable = clause[k] >> 1;
+				if (!seen[variable] && levels[variable] > 0) {
+					bump(variable);
+					seen[variable] = true;
+					if (levels[variable] == level) {
+						pending++;
+					} else {
+						learned.add(clause[k]);
+					}
+				}
+			}
+
+			// Walk back to the next marked literal of this level
+			while (!seen[trail[index] >> 1]) {
+				index--;
+			}
+			literal = trail[index--];
+			reason = reasons[literal >> 1];
+			seen[literal >> 1] = false;
+			pending--;
+		} while (pending > 0);
+		learned.set(0, literal ^ 1);
+
+		int[] clause = learned.stream().mapToInt(l -> l).toArray();
+		for (int k = 1; k < clause.length; k++) {
+			seen[clause[k] >> 1] = false;
+		}
+
+		// Watch the literal with the highest level after the asserting one
+		int backjumpLevel = 0;
+		if (clause.length > 1) {
+			int highest = 1;
+			for (int k = 2; k < clause.length; k++) {
+				if (levels[clause[k] >> 1] > levels[clause[highest] >> 1]) {
+					highest = k;
+				}
+			}
+			int swap = clause[1];
+			clause[1] = clause[highest];
+			clause[highest] = swap;
+			backjumpLevel = levels[clause[1] >> 1];
+		}
+
+		backjump(backjumpLevel);
+		if (clause.length == 1) {
+			assign(clause[0], -1);
+		} else {
+			assign(clause[0], attach(clause));
+		}
+		activityIncrement /= activityDecay;
+	}
+
+	/** Undoes every assignment above a decision level */
+	private void backjump(int target) {
+		if (level <= target) {
+			return;
+		}
+
+		int start = levelStarts[target];
+		for (int t = trailSize - 1; t >= start; t--) {
+			int variable = trail[t] >> 1;
+			phases[variable] = values[variable] == isTrue;
+			values[variable] = unassigned;
+			reasons[variable] = -1;
+			if (heapPositions[variable] == -1) {
+				heapInsert(variable);
+			}
+		}
+		trailSize = start;
+		propagated = start;
+		level = target;
+	}
+
+	/** Picks the unassigned variable with the highest activity, or 0 if there is none */
+	private int nextDecision() {
+		while (heapSize > 0) {
+			int variable = heapRemoveMax();
+			if (values[variable] == unassigned) {
+				return variable;
+			}
+		}
+		return 0;
+	}
+
+	private void bump(int variable) {
+		activities[variable] += activityIncrement;
+		if (activities[variable] > 1e100) {
+			for (int v = 1; v <= variableCount; v++) {
+				activities[v] *= 1e-100;
+			}
+			activityIncrement *= 1e-100;
+		}
+		if (heapPositions[variable] != -1) {
+			heapUp(heapPositions[variable]);
+		}
+	}
+
+	private boolean[] model() {
+		boolean[] model = new boolean[variableCount + 1];
+		for (int v = 1; v <= variableCount; v++) {
+			model[v] = values[v] == isTrue;
+		}
+		return model;
+	}
+
+	private void heapInsert(int variable) {
+		heap[heapSize] = variable;
+		heapPositions[variable] = heapSize;
+		heapUp(heapSize++);
+	}
+
+	private int heapRemoveMax() {
+		int max = heap[0];
+		heapPositions[max] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPositions[heap[0]] = 0;
+			heapDown(0);
+		}
+		return max;
+	}
+
+	private void heapUp(int position) {
+		int variable = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (activities[heap[parent]] >= activities[variable]) {
+				break;
+			}
+			heap[position] = heap[parent];
+			heapPositions[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = variable;
+		heapPositions[variable] = position;
+	}
+
+	private void heapDown(int position) {
+		int variable = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && activities[heap[child + 1]] > activities[heap[child]]) {
+				child++;
+			}
+			if (activities[heap[child]] <= activities[variable]) {
+				break;
+			}
+			heap[position] = heap[child];
+			heapPositions[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = variable;
+		heapPositions[variable] = position;
+	}
+
+	/** Gets the i'th number of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ... */
+	static long luby(int i) {
+		// Find the finite subsequence containing i, and its size
+		long size = 1;
+		int sequence = 0;
+		while (size < i + 1) {
+			sequence++;
+			size = 2 * size + 1;
+		}
+
+		long position = i;
+		while (size - 1 != position) {
+			size = (size - 1) / 2;
+			sequence--;
+			position = position % size;
+		}
+		return 1L << sequence;
+	}
+}
@@ -0,0 +1,202 @@
+package no.suppen.sudoku;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sudoku encoded as a boolean formula in conjunctive normal form. There is
+ * one variable per cell and symbol, true if the cell holds the symbol. The
+ * clauses say that
+ * <ul>
+ * <li>every cell holds at least one symbol, and at most one</li>
+ * <li>no two cells of a group hold the same symbol</li>
+ * <li>every symbol is somewhere in a group with one cell per symbol</li>
+ * <li>filled cells hold their symbol</li>
+ * </ul>
+ *
+ * Variables and literals are numbered as in the DIMACS format: variables from
+ * 1, and negative numbers for negated variables. The variable of cell i and the
+ * k'th symbol is {@code i * symbolCount + k + 1}. Unlike {@link Topology}, any
+ * number of symbols is supported.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class Cnf<S> {
+	/** The symbols, in variable order */
+	private final List<S> symbols;
+	private final Map<S, Integer> symbolNumbers = new HashMap<>();
+	private final Sudoku<S> empty;
+	private final int size;
+	private final List<int[]> clauses = new ArrayList<>();
+
+	private Cnf(Sudoku<S> sudoku) {
+		size = sudoku.size();
+		symbols = List.copyOf(Topology.ordered(sudoku.symbols));
+		for (int k = 0; k < symbols.size(); k++) {
+			symbolNumbers.put(symbols.get(k), k);
+		}
+		empty = new Sudoku<>(size, sudoku.symbols, sudoku.cellGroups);
+
+		int n = symbols.size();
+		// Sorted, so the same sudoku always gives the same clauses
+		int[][] groups = sudoku.cellGroups.stream().map(group -> group.stream().mapToInt(i -> i).sorted().toArray())
+				.sorted(Arrays::compare).toArray(int[][]::new);
+
+		for (int i = 0; i < size; i++) {
+			// At least one symbol
+			int[] some = new int[n];
+			for (int k = 0; k < n; k++) {
+				some[k] = variable(i, k);
+			}
+			clauses.add(some);
+
+			// At most one symbol
+			for (int k = 0; k < n; k++) {
+				for (int l = k + 1; l < n; l++) {
+					clauses.add(new int[] { -variable(i, k), -variable(i, l) });
+				}
+			}
+		}
+
+		// No symbol twice in a group. Cells sharing several groups only get one clause
+		BitSet[] linked = new BitSet[size];
+		for (int i = 0; i < size; i++) {
+			linked[i] = new BitSet(size);
+		}
+		for (int[] group : groups) {
+			for (int a = 0; a < group.length; a++) {
+				for (int b = a + 1; b < group.length; b++) {
+					linked[group[a]].set(group[b]);
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			for (int j = linked[i].nextSetBit(0); j >= 0; j = linked[i].nextSetBit(j + 1)) {
+				for (int k = 0; k < n; k++) {
+					clauses.add(new int[] { -variable(i, k), -variable(j, k) });
+				}
+			}
+		}
+
+		// Every symbol somewhere in a full group. Implied, but helps propagation
+		for (int[] group : groups) {
+			if (group.length != n) {
+				continue;
+			}
+			for (int k = 0; k < n; k++) {
+				int[] somewhere = new int[group.length];
+				for (int c = 0; c < group.length; c++) {
+					somewhere[c] = variable(group[c], k);
+				}
+				clauses.add(somewhere);
+			}
+		}
+
+		// The givens
+		sudoku.filledCellIndices().forEach(i -> clauses.add(new int[] { variable(i, sudoku.getCellSymbol(i).get()) }));
+	}
+
+	/**
+	 * Encodes a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param sudoku The sudoku to encode. Will not be mutated
+	 *
+	 * @return The sudoku's formula. Its satisfying assignments are the sudoku's
+	 *         solutions
+	 */
+	public static <S> Cnf<S> encode(Sudoku<S> sudoku) {
+		return new Cnf<>(sudoku);
+	}
+
+	/** Number of variables */
+	public int variableCount() {
+		return size * symbols.size();
+	}
+
+	/** The clauses, as arrays of DIMACS literals. Must not be mutated */
+	public List<int[]> clauses() {
+		return clauses;
+	}
+
+	/**
+	 * Gets the variable saying that a cell holds a symbol
+	 *
+	 * @param index  Index of the cell
+	 * @param symbol The symbol
+	 *
+	 * @return The variable's number
+	 *
+	 * @throws InvalidSymbolException If the symbol is not part of the sudoku's
+	 *                                symbol set
+	 */
+	public int variable(int index, S symbol) {
+		Integer k = symbolNumbers.get(symbol);
+		if (k == null) {
+			throw new InvalidSymbolException();
+		}
+		return variable(index, k);
+	}
+
+	private int variable(int index, int k) {
+		return index * symbols.size() + k + 1;
+	}
+
+	/**
+	 * Writes the formula in DIMACS CNF format
+	 *
+	 * @param out Where to write the formula
+	 *
+	 * @throws IOException If writing fails
+	 */
+	public void writeDimacs(Appendable out) throws IOException {
+		out.append("c sudoku with ").append(String.valueOf(size)).append(" cells and ")
+				.append(String.valueOf(symbols.size())).append(" symbols\n");
+		out.append("p cnf ").append(String.valueOf(variableCount())).append(' ')
+				.append(String.valueOf(clauses.size())).append('\n');
+		for (int[] clause : clauses) {
+			for (int literal : clause) {
+				out.append(String.valueOf(literal)).append(' ');
+			}
+			out.append("0\n");
+		}
+	}
+
+	/** Gets the formula in DIMACS CNF format */
+	public String toDimacs() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeDimacs(sb);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Turns a satisfying assignment back into a sudoku
+	 *
+	 * @param model Value of each variable, indexed by variable number. Index 0 is
+	 *              not used
+	 *
+	 * @return A new sudoku with the symbols the assignment puts in each cell
+	 */
+	public Sudoku<S> decode(boolean[] model) {
+		Sudoku<S> sudoku = new Sudoku<>(empty);
+		for (int i = 0; i < size; i++) {
+			for (int k = 0; k < symbols.size(); k++) {
+				if (model[variable(i, k)]) {
+					sudoku.setCellSymbol(i, symbols.get(k));
+					break;
+				}
+			}
+		}
+		return sudoku;
+	}
+}
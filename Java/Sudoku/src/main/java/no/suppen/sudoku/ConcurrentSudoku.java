@@ -0,0 +1,125 @@
+package no.suppen.sudoku;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * A sudoku which many threads can read and write at once. The board is held as
+ * a series of immutable {@link PersistentSudoku} snapshots, each with a version
+ * number one higher than the one before.
+ *
+ * Readers take a {@link #snapshot()}, which never blocks or copies, and see a
+ * consistent board for as long as they hold on to it, whatever writers do in
+ * the meantime. Writers make a new board from the latest snapshot and publish
+ * it atomically. Competing writers retry on the newer snapshot, so no change is
+ * lost.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class ConcurrentSudoku<S> {
+	/**
+	 * A published board
+	 *
+	 * @param version Number of changes published before this board
+	 * @param board   The board
+	 */
+	public record Snapshot<S>(long version, PersistentSudoku<S> board) {
+	}
+
+	private final AtomicReference<Snapshot<S>> current;
+
+	/**
+	 * Creates a concurrent sudoku
+	 *
+	 * @param initial The first board, which will have version 0. Is copied unless
+	 *                it is a persistent sudoku
+	 */
+	public ConcurrentSudoku(Sudoku<S> initial) {
+		current = new AtomicReference<>(new Snapshot<>(0, PersistentSudoku.of(initial)));
+	}
+
+	/** The latest published board */
+	public Snapshot<S> snapshot() {
+		return current.get();
+	}
+
+	/** Version of the latest published board */
+	public long version() {
+		return current.get().version();
+	}
+
+	/**
+	 * Sets a cell to a symbol
+	 *
+	 * @param index  Index of the cell to set
+	 * @param symbol The symbol to put in the cell. Must be part of the board's
+	 *               symbol set
+	 *
+	 * @return The snapshot holding the change
+	 */
+	public Snapshot<S> setCellSymbol(int index, S symbol) {
+		return update(board -> board.with(index, symbol));
+	}
+
+	/**
+	 * Clears a cell
+	 *
+	 * @param index Index of the cell to clear
+	 *
+	 * @return The snapshot holding the change
+	 */
+	public Snapshot<S> clearCellSymbol(int index) {
+		return update(board -> board.without(index));
+	}
+
+	/**
+	 * Changes the board atomically
+	 *
+	 * @param change Makes the new board from the latest one. May be called more
+	 *               than once if other writers get in first, so it should not
+	 *               have side effects. The new board must have the same size,
+	 *               symbols and cell groups
+	 *
+	 * @return The snapshot holding the change. If the change returned the board
+	 *         it was given, nothing is published and that board's snapshot is
+	 *         returned
+	 */
+	public Snapshot<S> update(UnaryOperator<PersistentSudoku<S>> change) {
+		while (true) {
+			Snapshot<S> old = current.get();
+			PersistentSudoku<S> board = change.apply(old.board());
+			if (board == old.board()) {
+				return old;
+			}
+
+			Snapshot<S> next = next(old, board);
+			if (current.compareAndSet(old, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Publishes a board if no other board has been published since a snapshot
+	 *
+	 * @param expected The snapshot the board was made from
+	 * @param board    The new board. Must have the same size, symbols and cell
+	 *                 groups
+	 *
+	 * @return True if the board was published, false if the snapshot was no
+	 *         longer the latest
+	 */
+	public boolean compareAndSet(Snapshot<S> expected, PersistentSudoku<S> board) {
+		return current.compareAndSet(expected, next(expected, board));
+	}
+
+	private Snapshot<S> next(Snapshot<S> old, PersistentSudoku<S> board) {
+		PersistentSudoku<S> oldBoard = old.board();
+		if (board.size() != oldBoard.size() || !Objects.equals(board.symbols, oldBoard.symbols)
+				|| !Objects.equals(board.cellGroups, oldBoard.cellGroups)) {
+			throw new IllegalArgumentException("The new board must have the same layout as the old one");
+		}
+		return new Snapshot<>(old.version() + 1, board);
+	}
+}
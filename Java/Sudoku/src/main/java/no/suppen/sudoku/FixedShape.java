@@ -0,0 +1,223 @@
+package no.suppen.sudoku;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fast paths for the standard shapes: 4x4, 6x6, 9x9 and 16x16 boards of rows,
+ * columns and blocks, with any symbols. {@link Solver} picks one automatically
+ * when a board's {@link Topology} has one of these shapes, and falls back to a
+ * {@link MaskBoard} for every other layout.
+ *
+ * The general search finds a cell's candidates by walking its list of groups.
+ * Here every cell is in exactly one row, one column and one block, so the
+ * tables are flattened to three group indices per cell, made once when the
+ * class loads. A cell's candidates are then three lookups and no loop, and
+ * placing a symbol is three ors. The empty cells are kept as a bitset, so
+ * looking for the most constrained cell skips the filled ones. The search
+ * branches exactly like {@link MaskBoard#solve()} and
+ * {@link MaskBoard#countSolutions(long)}, so both paths give the same results.
+ */
+final class FixedShape {
+	/** The shapes with fast paths, as rows and columns of a block */
+	private static final List<FixedShape> shapes = List.of(new FixedShape(2, 2), new FixedShape(2, 3),
+			new FixedShape(3, 3), new FixedShape(4, 4));
+
+	/** The last topology looked up, and its shape or null */
+	private record Recent(Topology<?> topology, FixedShape shape) {
+	}
+
+	private static volatile Recent recent = new Recent(null, null);
+
+	/** Number of rows, columns and symbols */
+	final int side;
+	/** Number of cells */
+	final int size;
+	/** Mask of all symbols */
+	private final int allSymbols;
+	/**
+	 * Row, column and block of each cell, as indices into the used masks: rows
+	 * first, then columns, then blocks. Cell i's are at 3i, 3i + 1 and 3i + 2
+	 */
+	private final int[] units;
+	/** The groups of the standard layout, sorted like a topology's */
+	private final int[][] groups;
+
+	private FixedShape(int boxRows, int boxColumns) {
+		side = boxRows * boxColumns;
+		size = side * side;
+		allSymbols = (1 << side) - 1;
+
+		// Loops rather than GridCounter.standardLayout, to keep streams out of class
+		// loading
+		units = new int[3 * size];
+		int[][] unitCells = new int[3 * side][side];
+		int[] filled = new int[3 * side];
+		for (int i = 0; i < size; i++) {
+			int row = i / side, column = i % side;
+			units[3 * i] = row;
+			units[3 * i + 1] = side + column;
+			units[3 * i + 2] = 2 * side + row / boxRows * boxRows + column / boxColumns;
+			for (int k = 0; k < 3; k++) {
+				int unit = units[3 * i + k];
+				unitCells[unit][filled[unit]++] = i;
+			}
+		}
+		Arrays.sort(unitCells, Arrays::compare);
+		groups = unitCells;
+	}
+
+	/**
+	 * Gets the fast path for a topology
+	 *
+	 * @param topology The topology
+	 *
+	 * @return The topology's shape, or null if it has no fast path
+	 */
+	static FixedShape of(Topology<?> topology) {
+		Recent last = recent;
+		if (last.topology == topology) {
+			return last.shape;
+		}
+
+		FixedShape found = null;
+		for (FixedShape shape : shapes) {
+			if (shape.size == topology.size && shape.side == topology.symbols.size()
+					&& Arrays.deepEquals(shape.groups, topology.groups)) {
+				found = shape;
+			}
+		}
+		recent = new Recent(topology, found);
+		return found;
+	}
+
+	/**
+	 * Completes a board with its first completion
+	 *
+	 * @param cells Bit of the symbol of each cell, 0 for empty cells. Entries
+	 *              past the last cell are ignored. Receives the completion if
+	 *              there is one
+	 *
+	 * @return True if the board was completed, false if it has none, or if a
+	 *         symbol appears twice in a group
+	 */
+	boolean solve(int[] cells) {
+		Search search = new Search(cells);
+		return search.load() && search.solve();
+	}
+
+	/**
+	 * Counts the completions of a board
+	 *
+	 * @param cells Bit of the symbol of each cell, 0 for empty cells. Not changed
+	 * @param limit Number of completions to stop at
+	 *
+	 * @return Number of completions, at most limit. 0 if a symbol appears twice
+	 *         in a group
+	 */
+	long countSolutions(int[] cells, long limit) {
+		Search search = new Search(cells.clone());
+		return search.load() ? search.countSolutions(limit) : 0;
+	}
+
+	/** One search. Allocates nothing once made */
+	private final class Search {
+		private final int[] cells;
+		/** Symbols used in each row, column and block */
+		private final int[] used = new int[3 * side];
+		/** Bitset of the empty cells, so that finding them skips the filled ones */
+		private final long[] empty = new long[(size + Long.SIZE - 1) / Long.SIZE];
+
+		Search(int[] cells) {
+			this.cells = cells;
+		}
+
+		/** Marks the filled cells as used, or returns false on a clash */
+		boolean load() {
+			for (int i = 0; i < size; i++) {
+				int bit = cells[i];
+				if (bit == 0) {
+					empty[i / Long.SIZE] |= 1L << i;
+				} else if ((candidates(i) & bit) == 0) {
+					return false;
+				} else {
+					place(i, bit);
+				}
+			}
+			return true;
+		}
+
+		int candidates(int cell) {
+			int u = 3 * cell;
+			return allSymbols & ~(used[units[u]] | used[units[u + 1]] | used[units[u + 2]]);
+		}
+
+		void place(int cell, int bit) {
+			int u = 3 * cell;
+			cells[cell] = bit;
+			empty[cell / Long.SIZE] &= ~(1L << cell);
+			used[units[u]] |= bit;
+			used[units[u + 1]] |= bit;
+			used[units[u + 2]] |= bit;
+		}
+
+		void unplace(int cell) {
+			int u = 3 * cell, keep = ~cells[cell];
+			cells[cell] = 0;
+			empty[cell / Long.SIZE] |= 1L << cell;
+			used[units[u]] &= keep;
+			used[units[u + 1]] &= keep;
+			used[units[u + 2]] &= keep;
+		}
+
+		/** Same choice as {@link MaskBoard#mostConstrainedCell()} */
+		int mostConstrainedCell() {
+			int best = -1, bestCount = Integer.MAX_VALUE;
+			for (int w = 0; w < empty.length; w++) {
+				for (long rest = empty[w]; rest != 0; rest &= rest - 1) {
+					int i = w * Long.SIZE + Long.numberOfTrailingZeros(rest);
+					int count = Integer.bitCount(candidates(i));
+					if (count < bestCount) {
+						best = i;
+						bestCount = count;
+						if (count <= 1) {
+							return best;
+						}
+					}
+				}
+			}
+			return best;
+		}
+
+		boolean solve() {
+			int cell = mostConstrainedCell();
+			if (cell == -1) {
+				return true;
+			}
+
+			for (int rest = candidates(cell); rest != 0; rest &= rest - 1) {
+				place(cell, rest & -rest);
+				if (solve()) {
+					return true;
+				}
+				unplace(cell);
+			}
+			return false;
+		}
+
+		long countSolutions(long limit) {
+			int cell = mostConstrainedCell();
+			if (cell == -1) {
+				return 1;
+			}
+
+			long solutions = 0;
+			for (int rest = candidates(cell); rest != 0 && solutions < limit; rest &= rest - 1) {
+				place(cell, rest & -rest);
+				solutions += countSolutions(limit - solutions);
+				unplace(cell);
+			}
+			return solutions;
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package no.suppen.sudoku;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the completed grids of a layout, that is, the solutions of its empty
+ * board, without visiting every one of them.
+ *
+ * Symbols can always be relabelled, so only grids where the first full group
+ * holds the symbols in order are searched, and the count is multiplied by the
+ * number of relabellings. Standard layouts, with rows, columns and rectangular
+ * blocks as made by {@link #standardLayout(int, int)}, are also reduced by row
+ * symmetry: the rows of a band can be swapped, and so can whole bands, without
+ * breaking a grid. With the first row fixed, only grids where the first column
+ * is in a canonical order are searched, and the count is multiplied by the
+ * number of such row permutations.
+ *
+ * The canonical grids are found by a mask based search, split into subproblems
+ * which are searched in parallel. This counts 6x6 grids in about a second.
+ * Bigger layouts take a long time, so progress can be reported as subproblems
+ * are finished.
+ *
+ * @param <S> Type of symbols in the layout
+ */
+public class GridCounter<S> {
+	/** Number of subproblems to aim for, so progress is fine grained */
+	private static final int targetSubproblems = 4096;
+
+	/**
+	 * Progress of a count
+	 *
+	 * @param done           Number of subproblems searched
+	 * @param total          Number of subproblems
+	 * @param canonicalGrids Number of canonical grids found so far
+	 */
+	public record Progress(long done, long total, long canonicalGrids) {
+	}
+
+	private final Topology<S> topology;
+	/** Symbol bit of each cell fixed by symmetry, 0 for free cells */
+	private final int[] fixed;
+	/** Cells whose symbol must have a higher bit than each cell's */
+	private final int[][] above;
+	/** Cells whose symbol must have a lower bit than each cell's */
+	private final int[][] below;
+	/** Number of grids each canonical grid stands for */
+	private final BigInteger symmetryFactor;
+
+	private GridCounter(Topology<S> topology, int[] fixed, List<int[]> ordered, BigInteger symmetryFactor) {
+		this.topology = topology;
+		this.fixed = fixed;
+		this.symmetryFactor = symmetryFactor;
+
+		List<List<Integer>> aboveLists = new ArrayList<>(), belowLists = new ArrayList<>();
+		for (int i = 0; i < topology.size; i++) {
+			aboveLists.add(new ArrayList<>());
+			belowLists.add(new ArrayList<>());
+		}
+		for (int[] pair : ordered) {
+			aboveLists.get(pair[0]).add(pair[1]);
+			belowLists.get(pair[1]).add(pair[0]);
+		}
+		above = aboveLists.stream().map(l -> l.stream().mapToInt(i -> i).toArray()).toArray(int[][]::new);
+		below = belowLists.stream().map(l -> l.stream().mapToInt(i -> i).toArray()).toArray(int[][]::new);
+	}
+
+	/**
+	 * Makes a counter for a layout
+	 *
+	 * @param <S>    Type of symbols in the layout
+	 * @param layout An empty sudoku with the layout
+	 *
+	 * @return A counter using every symmetry it can find in the layout
+	 *
+	 * @throws IllegalArgumentException If the sudoku is not empty, or has too many
+	 *                                  symbols, see {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> GridCounter<S> of(Sudoku<S> layout) {
+		if (layout.filledCellIndices().findAny().isPresent()) {
+			throw new IllegalArgumentException("Only empty layouts can be counted");
+		}
+		if (!Topology.supports(layout)) {
+			throw new IllegalArgumentException("Counting needs at most " + Topology.maxSymbols + " symbols");
+		}
+
+		Topology<S> topology = Topology.of(layout);
+		int n = topology.symbols.size();
+		int[] fixed = new int[topology.size];
+		List<int[]> ordered = new ArrayList<>();
+
+		// Standard layouts get the first row fixed, and the first column ordered
+		int boxRows = GridCounter.standardBoxRows(layout);
+		if (boxRows != 0) {
+			int side = n;
+			for (int c = 0; c < side; c++) {
+				fixed[c] = 1 << c;
+			}
+
+			// Rows 1.. of the first band, then the rows of each other band, then the bands
+			int bands = side / boxRows;
+			for (int row = 1; row + 1 < boxRows; row++) {
+				ordered.add(new int[] { row * side, (row + 1) * side });
+			}
+			for (int band = 1; band < bands; band++) {
+				for (int row = band * boxRows; row + 1 < (band + 1) * boxRows; row++) {
+					ordered.add(new int[] { row * side, (row + 1) * side });
+				}
+				if (band + 1 < bands) {
+					ordered.add(new int[] { band * boxRows * side, (band + 1) * boxRows * side });
+				}
+			}
+
+			BigInteger factor = GridCounter.factorial(n).multiply(GridCounter.factorial(boxRows - 1))
+					.multiply(GridCounter.factorial(boxRows).pow(bands - 1))
+					.multiply(GridCounter.factorial(bands - 1));
+			return new GridCounter<>(topology, fixed, ordered, factor);
+		}
+
+		// Other layouts only get relabelling, on the first full group
+		for (int g = 0; g < topology.groups.length; g++) {
+			if (topology.fullGroups[g]) {
+				for (int p = 0; p < n; p++) {
+					fixed[topology.groups[g][p]] = 1 << p;
+				}
+				return new GridCounter<>(topology, fixed, ordered, GridCounter.factorial(n));
+			}
+		}
+		return new GridCounter<>(topology, fixed, ordered, BigInteger.ONE);
+	}
+
+	/**
+	 * Makes an empty standard sudoku, with rows, columns and blocks
+	 *
+	 * @param boxRows    Number of rows in a block
+	 * @param boxColumns Number of columns in a block
+	 *
+	 * @return An empty sudoku with boxRows * boxColumns rows and columns, and the
+	 *         symbols 1 to boxRows * boxColumns
+	 */
+	public static Sudoku<Integer> standardLayout(int boxRows, int boxColumns) {
+		int side = boxRows * boxColumns;
+		Set<Integer> symbols = IntStream.rangeClosed(1, side).boxed().collect(Collectors.toSet());
+		return new Sudoku<>(side * side, symbols, GridCounter.standardGroups(boxRows, boxColumns));
+	}
+
+	/**
+	 * Recognizes standard layouts
+	 *
+	 * @param layout The sudoku to check
+	 *
+	 * @return Number of rows in a block if the sudoku has a standard layout, as
+	 *         made by {@link #standardLayout(int, int)}, 0 otherwise
+	 */
+	static int standardBoxRows(Sudoku<?> layout) {
+		int side = layout.symbols.size();
+		if (side * side != layout.size()) {
+			return 0;
+		}
+
+		for (int boxRows = 1; boxRows <= side; boxRows++) {
+			if (side % boxRows == 0
+					&& layout.cellGroups.equals(GridCounter.standardGroups(boxRows, side / boxRows))) {
+				return boxRows;
+			}
+		}
+		return 0;
+	}
+
+	/** Makes the rows, columns and blocks of a standard sudoku */
+	static Set<Set<Integer>> standardGroups(int boxRows, int boxColumns) {
+		int side = boxRows * boxColumns;
+		Set<Set<Integer>> groups = new HashSet<>();
+		for (int a = 0; a < side; a++) {
+			final int row = a, column = a;
+			final int top = a / boxRows * boxRows, left = a % boxRows * boxColumns;
+			groups.add(IntStream.range(0, side).map(i -> row * side + i).boxed().collect(Collectors.toSet()));
+			groups.add(IntStream.range(0, side).map(i -> i * side + column).boxed().collect(Collectors.toSet()));
+			groups.add(IntStream.range(0, side).map(i -> (top + i / boxColumns) * side + left + i % boxColumns)
+					.boxed().collect(Collectors.toSet()));
+		}
+		return groups;
+	}
+
+	/** Number of grids each canonical grid stands for */
+	public BigInteger symmetryFactor() {
+		return symmetryFactor;
+	}
+
+	/**
+	 * Counts the completed grids
+	 *
+	 * @return The number of grids
+	 */
+	public BigInteger count() {
+		return count(progress -> {
+		});
+	}
+
+	/**
+	 * Counts the completed grids, reporting progress
+	 *
+	 * @param listener Gets the progress after each subproblem. Called from the
+	 *                 counting threads, but never by two at once
+	 *
+	 * @return The number of grids
+	 */
+	public BigInteger count(Consumer<Progress> listener) {
+		return BigInteger.valueOf(countCanonical(listener)).multiply(symmetryFactor);
+	}
+
+	/**
+	 * Counts the canonical grids, the ones where the cells fixed by symmetry hold
+	 * their fixed symbols
+	 *
+	 * @param listener Gets the progress after each subproblem. Called from the
+	 *                 counting threads, but never by two at once
+	 *
+	 * @return The number of canonical grids
+	 */
+	public long countCanonical(Consumer<Progress> listener) {
+		Search start = new Search();
+		for (int i = 0; i < topology.size; i++) {
+			if (fixed[i] != 0) {
+				if ((start.candidates(i) & fixed[i]) == 0) {
+					return 0;
+				}
+				start.place(i, fixed[i]);
+			}
+		}
+
+		List<int[]> subproblems = split(start);
+		AtomicLong done = new AtomicLong();
+		LongAdder found = new LongAdder();
+
+		subproblems.parallelStream().forEach(subproblem -> {
+			Search search = new Search();
+			for (int i = 0; i < subproblem.length; i++) {
+				if (subproblem[i] != 0) {
+					search.place(i, subproblem[i]);
+				}
+			}
+			found.add(search.count());
+
+			Progress progress = new Progress(done.incrementAndGet(), subproblems.size(), found.sum());
+			synchronized (listener) {
+				listener.accept(progress);
+			}
+		});
+		return found.sum();
+	}
+
+	/** Expands the search tree breadth first, until there are enough subproblems */
+	private List<int[]> split(Search start) {
+		Deque<int[]> frontier = new ArrayDeque<>();
+		frontier.add(Arrays.copyOf(start.cells, topology.size));
+
+		while (!frontier.isEmpty() && frontier.size() < targetSubproblems) {
+			int[] cells = frontier.poll();
+			Search search = new Search();
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] != 0) {
+					search.place(i, cells[i]);
+				}
+			}
+
+			int cell = search.mostConstrainedCell();
+			if (cell == -1) {
+				// A complete grid is its own subproblem, and counts as one
+				frontier.add(cells);
+				break;
+			}
+			for (int rest = search.candidates(cell); rest != 0; rest &= rest - 1) {
+				int[] child = cells.clone();
+				child[cell] = rest & -rest;
+				frontier.add(child);
+			}
+		}
+		return new ArrayList<>(frontier);
+	}
+
+	private static BigInteger factorial(int n) {
+		BigInteger result = BigInteger.ONE;
+		for (int i = 2; i <= n; i++) {
+			result = result.multiply(BigInteger.valueOf(i));
+		}
+		return result;
+	}
+
+	/** Depth first search over cell masks, for one thread */
+	private class Search {
+		final int[] cells = new int[topology.size];
+		final int[] used = new int[topology.groups.length];
+
+		void place(int cell, int bit) {
+			cells[cell] = bit;
+			for (int g : topology.cellGroups[cell]) {
+				used[g] |= bit;
+			}
+		}
+
+		void unplace(int cell) {
+			int bit = cells[cell];
+			cells[cell] = 0;
+			for (int g : topology.cellGroups[cell]) {
+				used[g] &= ~bit;
+			}
+		}
+
+		int candidates(int cell) {
+			int mask = topology.allSymbols;
+			for (int g : topology.cellGroups[cell]) {
+				mask &= ~used[g];
+			}
+
+			// Keep the canonical order
+			for (int other : above[cell]) {
+				if (cells[other] != 0) {
+					mask &= cells[other] - 1;
+				}
+			}
+			for (int other : below[cell]) {
+				if (cells[other] != 0) {
+					mask &= -(cells[other] << 1);
+				}
+			}
+			return mask;
+		}
+
+		/** Gets the empty cell with the fewest candidates, or -1 if there is none */
+		int mostConstrainedCell() {
+			int best = -1, bestCount = Integer.MAX_VALUE;
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] == 0) {
+					int count = Integer.bitCount(candidates(i));
+					if (count < bestCount) {
+						best = i;
+						bestCount = count;
+						if (count <= 1) {
+							break;
+						}
+					}
+				}
+			}
+			return best;
+		}
+
+		long count() {
+			int cell = mostConstrainedCell();
+			if (cell == -1) {
+				return 1;
+			}
+
+			long total = 0;
+			for (int rest = candidates(cell); rest != 0; rest &= rest - 1) {
+				place(cell, rest & -rest);
+				total += count();
+				unplace(cell);
+			}
+			return total;
+		}
+	}
+}
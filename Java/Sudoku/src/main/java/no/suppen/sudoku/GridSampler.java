@@ -0,0 +1,344 @@
+package no.suppen.sudoku;
+
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Makes random completed grids of a layout. Given the same seed, a sampler
+ * makes the same grids in the same order.
+ *
+ * In {@link Mode#SEARCH} mode, each grid is found by a depth first search on
+ * the most constrained cell, trying its candidates in random order. A search
+ * which runs into too many dead ends is restarted from scratch with new random
+ * choices, as a few bad early choices can otherwise trap it for a long time.
+ * Each restart gets twice the budget of the one before, so a layout without
+ * any grids is eventually searched to the end.
+ *
+ * In {@link Mode#TRANSFORM} mode, grids are made by applying random symmetries
+ * to a base grid found by search: relabelling the symbols, and for standard
+ * layouts also permuting rows within bands, bands, columns within stacks and
+ * stacks, and transposing square-block boards. Every grid in the base grid's
+ * orbit is equally likely, and the base grid is replaced by a fresh search
+ * every so often, so the grids are close to uniform over all grids. This is
+ * much faster than searching.
+ *
+ * Samplers are not thread safe. Use one per thread, with different seeds.
+ *
+ * @param <S> Type of symbols in the layout
+ */
+public class GridSampler<S> {
+	/** How grids are made */
+	public enum Mode {
+		/** Randomized search for every grid */
+		SEARCH,
+		/** Random symmetries of a base grid, replaced now and then */
+		TRANSFORM
+	}
+
+	/** Number of grids made from each base grid in transform mode */
+	private static final int gridsPerBase = 1024;
+
+	private final Topology<S> topology;
+	private final Sudoku<S> empty;
+	private final Mode mode;
+	private final SplittableRandom random;
+	/** Search nodes allowed in the first attempt at each grid */
+	private final long firstBudget;
+	/** Search nodes allowed before restarting */
+	private long nodeBudget;
+
+	/** Search state: cell masks, group masks, candidates of each cell, and the branch stack */
+	private final int[] cells, used, candidates, branchCells, untried;
+	private int depth;
+	private long restarts = 0;
+
+	/** Transform state. Side is 0 for layouts which are not standard */
+	private final int side, boxRows, boxColumns;
+	private final int[] base, relabel, rowOrder, columnOrder, bandOrder, scratch;
+	private int baseUses = gridsPerBase;
+
+	private GridSampler(Sudoku<S> layout, long seed, Mode mode) {
+		topology = Topology.of(layout);
+		empty = new Sudoku<>(layout.size(), layout.symbols, layout.cellGroups);
+		this.mode = mode;
+		random = new SplittableRandom(seed);
+		firstBudget = 8L * topology.size;
+
+		cells = new int[topology.size];
+		used = new int[topology.groups.length];
+		candidates = new int[topology.size];
+		branchCells = new int[topology.size];
+		untried = new int[topology.size];
+
+		int n = topology.symbols.size();
+		boxRows = GridCounter.standardBoxRows(layout);
+		side = boxRows == 0 ? 0 : n;
+		boxColumns = boxRows == 0 ? 0 : n / boxRows;
+		base = new int[topology.size];
+		relabel = new int[n];
+		rowOrder = new int[side];
+		columnOrder = new int[side];
+		bandOrder = new int[side];
+		scratch = new int[side];
+	}
+
+	/**
+	 * Makes a search mode sampler
+	 *
+	 * @see #of(Sudoku, long, Mode)
+	 */
+	public static <S> GridSampler<S> of(Sudoku<S> layout, long seed) {
+		return GridSampler.of(layout, seed, Mode.SEARCH);
+	}
+
+	/**
+	 * Makes a sampler
+	 *
+	 * @param <S>    Type of symbols in the layout
+	 * @param layout An empty sudoku with the layout
+	 * @param seed   Seed of the random number generator
+	 * @param mode   How to make grids
+	 *
+	 * @return A new sampler
+	 *
+	 * @throws IllegalArgumentException If the sudoku is not empty, or has too many
+	 *                                  symbols, see {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> GridSampler<S> of(Sudoku<S> layout, long seed, Mode mode) {
+		if (layout.filledCellIndices().findAny().isPresent()) {
+			throw new IllegalArgumentException("Only empty layouts can be sampled");
+		}
+		if (!Topology.supports(layout)) {
+			throw new IllegalArgumentException("Sampling needs at most " + Topology.maxSymbols + " symbols");
+		}
+		return new GridSampler<>(layout, seed, mode);
+	}
+
+	/** Number of times a search was restarted */
+	public long restarts() {
+		return restarts;
+	}
+
+	/**
+	 * Makes a random grid
+	 *
+	 * @return A new, completed sudoku
+	 *
+	 * @throws IllegalStateException If the layout has no completed grids
+	 */
+	public Sudoku<S> next() {
+		byte[] grid = new byte[topology.size];
+		next(grid);
+
+		Sudoku<S> sudoku = new Sudoku<>(empty);
+		for (int i = 0; i < grid.length; i++) {
+			sudoku.setCellSymbol(i, topology.symbols.get(grid[i] - 1));
+		}
+		return sudoku;
+	}
+
+	/**
+	 * Makes a random grid without making a sudoku object
+	 *
+	 * @param grid Output. Receives the symbol of each cell as its bit number in
+	 *             the {@link Topology} plus one, as in {@link BoardArena}
+	 *
+	 * @throws IllegalStateException If the layout has no completed grids
+	 */
+	public void next(byte[] grid) {
+		if (mode == Mode.SEARCH) {
+			search();
+			for (int i = 0; i < cells.length; i++) {
+				grid[i] = (byte) (Integer.numberOfTrailingZeros(cells[i]) + 1);
+			}
+			return;
+		}
+
+		if (baseUses == gridsPerBase) {
+			search();
+			for (int i = 0; i < cells.length; i++) {
+				base[i] = Integer.numberOfTrailingZeros(cells[i]);
+			}
+			baseUses = 0;
+		}
+		baseUses++;
+		transform(grid);
+	}
+
+	/**
+	 * Makes random grids
+	 *
+	 * @return An infinite stream of new, completed sudokus
+	 */
+	public Stream<Sudoku<S>> stream() {
+		return Stream.generate(this::next);
+	}
+
+	/** Searches until the cell masks hold a grid */
+	private void search() {
+		nodeBudget = firstBudget;
+		while (!attempt()) {
+			restarts++;
+			nodeBudget *= 2;
+		}
+	}
+
+	/**
+	 * Tries to find a grid within the node budget
+	 *
+	 * @return True if the cell masks hold a grid, false if the budget ran out
+	 */
+	private boolean attempt() {
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = 0;
+			candidates[i] = topology.allSymbols;
+		}
+		for (int g = 0; g < used.length; g++) {
+			used[g] = 0;
+		}
+		depth = 0;
+
+		for (long nodes = 0; nodes < nodeBudget; nodes++) {
+			int cell = mostConstrainedCell();
+			if (cell == -1) {
+				return true;
+			}
+
+			int mask = candidates[cell];
+			if (mask != 0) {
+				int bit = randomBit(mask);
+				branchCells[depth] = cell;
+				untried[depth] = mask & ~bit;
+				depth++;
+				place(cell, bit);
+				continue;
+			}
+
+			// Dead end. Try another candidate of the deepest branch with one left
+			while (true) {
+				if (depth == 0) {
+					throw new IllegalStateException("The layout has no completed grids");
+				}
+				int d = depth - 1;
+				unplace(branchCells[d]);
+				if (untried[d] != 0) {
+					int bit = randomBit(untried[d]);
+					untried[d] &= ~bit;
+					place(branchCells[d], bit);
+					break;
+				}
+				depth--;
+			}
+		}
+		return false;
+	}
+
+	/** Gets the empty cell with the fewest candidates, or -1 if there is none */
+	private int mostConstrainedCell() {
+		int best = -1, bestCount = Integer.MAX_VALUE;
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] == 0) {
+				int count = Integer.bitCount(candidates[i]);
+				if (count < bestCount) {
+					best = i;
+					bestCount = count;
+					if (count <= 1) {
+						break;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	private void place(int cell, int bit) {
+		cells[cell] = bit;
+		for (int g : topology.cellGroups[cell]) {
+			used[g] |= bit;
+		}
+		for (int peer : topology.peers[cell]) {
+			candidates[peer] &= ~bit;
+		}
+	}
+
+	private void unplace(int cell) {
+		int bit = cells[cell];
+		cells[cell] = 0;
+		for (int g : topology.cellGroups[cell]) {
+			used[g] &= ~bit;
+		}
+
+		// The symbol may still be ruled out for a peer by another of its groups
+		candidates[cell] = candidatesFromGroups(cell);
+		for (int peer : topology.peers[cell]) {
+			candidates[peer] = candidatesFromGroups(peer);
+		}
+	}
+
+	private int candidatesFromGroups(int cell) {
+		int mask = topology.allSymbols;
+		for (int g : topology.cellGroups[cell]) {
+			mask &= ~used[g];
+		}
+		return mask;
+	}
+
+	/** Picks one of the set bits of a mask, uniformly */
+	private int randomBit(int mask) {
+		int rest = mask;
+		for (int n = random.nextInt(Integer.bitCount(mask)); n > 0; n--) {
+			rest &= rest - 1;
+		}
+		return rest & -rest;
+	}
+
+	/** Writes a random symmetry of the base grid */
+	private void transform(byte[] grid) {
+		shuffle(relabel, relabel.length);
+
+		if (side == 0) {
+			for (int i = 0; i < grid.length; i++) {
+				grid[i] = (byte) (relabel[base[i]] + 1);
+			}
+			return;
+		}
+
+		randomOrder(rowOrder, boxRows, side / boxRows);
+		randomOrder(columnOrder, boxColumns, side / boxColumns);
+		boolean transpose = boxRows == boxColumns && random.nextBoolean();
+
+		for (int r = 0; r < side; r++) {
+			for (int c = 0; c < side; c++) {
+				int from = transpose ? columnOrder[c] * side + rowOrder[r] : rowOrder[r] * side + columnOrder[c];
+				grid[r * side + c] = (byte) (relabel[base[from]] + 1);
+			}
+		}
+	}
+
+	/**
+	 * Makes a random order of rows or columns, keeping the ones of each band or
+	 * stack together
+	 *
+	 * @param order     Output. Receives the line to take each line from
+	 * @param perBand   Number of lines in a band or stack
+	 * @param bandCount Number of bands or stacks
+	 */
+	private void randomOrder(int[] order, int perBand, int bandCount) {
+		shuffle(bandOrder, bandCount);
+		for (int b = 0; b < bandCount; b++) {
+			shuffle(scratch, perBand);
+			for (int l = 0; l < perBand; l++) {
+				order[b * perBand + l] = bandOrder[b] * perBand + scratch[l];
+			}
+		}
+	}
+
+	/** Fills the first n entries of an array with a random permutation of 0 to n-1 */
+	private void shuffle(int[] array, int n) {
+		for (int i = 0; i < n; i++) {
+			int j = random.nextInt(i + 1);
+			array[i] = array[j];
+			array[j] = i;
+		}
+	}
+}
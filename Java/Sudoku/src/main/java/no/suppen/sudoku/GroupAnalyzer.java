@@ -0,0 +1,268 @@
+package no.suppen.sudoku;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds locked sets in the cell groups of a board given as masks, and rules
+ * out the candidates they forbid.
+ *
+ * A naked set is t empty cells of a group with only t candidates between
+ * them: those symbols go in those cells, so no other cell of the group can
+ * have them. A hidden set is t symbols missing from a full group with only t
+ * possible cells between them: those cells must hold those symbols, so they
+ * can have no others. Singles are sets of one, so a hidden single leaves its
+ * cell with one candidate. Fewer than t candidates or cells means the group
+ * can not be completed.
+ *
+ * The combinations of up to {@link #maxSetSize} elements are tables made once
+ * for each number of elements, ordered so that each combination comes after
+ * the combination without its highest element. The candidates or cells of a
+ * combination are then one lookup of that smaller combination and one or, so
+ * checking every set costs a pass over the table rather than nested loops over
+ * the group.
+ *
+ * An analyzer keeps scratch space between calls, so it is not thread safe.
+ */
+public final class GroupAnalyzer {
+	/** Largest locked set looked for */
+	public static final int maxSetSize = 4;
+
+	private final Topology<?> topology;
+	private final Combinations combinations;
+
+	/** The empty cells of the group being analyzed */
+	private final int[] emptyCells = new int[Integer.SIZE];
+	/** Number of empty cells in the group being analyzed */
+	private int empties;
+	/** Candidates of each empty cell */
+	private final int[] cellCandidates = new int[Integer.SIZE];
+	/** Bits of the symbols missing from the group */
+	private final int[] missingSymbols = new int[Integer.SIZE];
+	/** Positions among the empty cells of each missing symbol, as masks */
+	private final int[] positions = new int[Integer.SIZE];
+	/** Union of the masks of each combination, by size */
+	private final int[][] unions;
+
+	/**
+	 * Makes an analyzer for boards with a topology
+	 *
+	 * @param topology The boards' topology
+	 */
+	public GroupAnalyzer(Topology<?> topology) {
+		this.topology = topology;
+
+		int longest = topology.symbols.size();
+		for (int[] group : topology.groups) {
+			longest = Math.max(longest, Math.min(group.length, Integer.SIZE));
+		}
+		combinations = Combinations.of(longest);
+
+		unions = new int[combinations.masks.length][];
+		for (int t = 1; t < unions.length; t++) {
+			unions[t] = new int[combinations.masks[t].length];
+		}
+	}
+
+	/**
+	 * Rules out the candidates which the locked sets of a group forbid. Groups
+	 * with more than 32 cells are left alone
+	 *
+	 * @param group      Index of the group in the topology
+	 * @param cells      Bit of the symbol of each filled cell, 0 for empty cells
+	 * @param candidates Candidates of each empty cell. Changed in place
+	 *
+	 * @return Number of candidates ruled out, or -1 if the group can not be
+	 *         completed. Candidates may have been ruled out either way
+	 */
+	public int analyze(int group, int[] cells, int[] candidates) {
+		int[] members = topology.groups[group];
+		if (members.length > Integer.SIZE) {
+			return 0;
+		}
+
+		int placed = 0;
+		empties = 0;
+		for (int i : members) {
+			if (cells[i] == 0) {
+				emptyCells[empties++] = i;
+			} else if ((placed & cells[i]) != 0) {
+				return -1;
+			} else {
+				placed |= cells[i];
+			}
+		}
+
+		int removed = 0, offered = 0;
+		for (int j = 0; j < empties; j++) {
+			int cell = emptyCells[j];
+			removed += Integer.bitCount(candidates[cell] & placed);
+			candidates[cell] &= ~placed;
+			cellCandidates[j] = candidates[cell];
+			offered |= candidates[cell];
+		}
+		if (Integer.bitCount(offered) < empties) {
+			return -1;
+		}
+
+		int found = lockedSets(empties, cellCandidates, false, candidates);
+		if (found < 0 || !topology.fullGroups[group]) {
+			return found < 0 ? -1 : removed + found;
+		}
+		removed += found;
+
+		// Every missing symbol needs a cell of its own
+		int missing = topology.allSymbols & ~placed;
+		if ((missing & ~offered) != 0) {
+			return -1;
+		}
+		int symbolCount = 0;
+		for (int rest = missing; rest != 0; rest &= rest - 1) {
+			int bit = rest & -rest, where = 0;
+			for (int j = 0; j < empties; j++) {
+				if ((candidates[emptyCells[j]] & bit) != 0) {
+					where |= 1 << j;
+				}
+			}
+			missingSymbols[symbolCount] = bit;
+			positions[symbolCount++] = where;
+		}
+
+		found = lockedSets(symbolCount, positions, true, candidates);
+		return found < 0 ? -1 : removed + found;
+	}
+
+	/**
+	 * Goes through the combinations of some elements, smallest first, looking
+	 * for t elements whose masks have t bits between them
+	 *
+	 * @param count      Number of elements
+	 * @param masks      Mask of each element
+	 * @param hidden     Whether the elements are symbols with masks of
+	 *                   positions, or cells with masks of candidates
+	 * @param candidates Candidates of each cell, where the sets found rule
+	 *                   candidates out
+	 *
+	 * @return Number of candidates ruled out, or -1 if some t elements have fewer
+	 *         than t bits between them
+	 */
+	private int lockedSets(int count, int[] masks, boolean hidden, int[] candidates) {
+		int removed = 0;
+		for (int t = 1; t < unions.length && t <= count; t++) {
+			int[] union = unions[t], previous = unions[t - 1];
+			int[] elements = combinations.elements[t], parents = combinations.parents[t];
+
+			// The combinations of the first count elements come first
+			for (int c = 0, n = combinations.counts[t][count]; c < n; c++) {
+				int mask = (t == 1 ? 0 : previous[parents[c]]) | masks[elements[c]];
+				union[c] = mask;
+
+				int bits = Integer.bitCount(mask);
+				if (bits < t) {
+					return -1;
+				}
+				if (bits == t && t < count) {
+					removed += hidden ? confine(combinations.masks[t][c], mask, candidates)
+							: exclude(combinations.masks[t][c], mask, candidates);
+				}
+			}
+		}
+		return removed;
+	}
+
+	/** Rules a naked set's symbols out of the group's other empty cells */
+	private int exclude(int set, int symbols, int[] candidates) {
+		int removed = 0;
+		for (int j = 0; j < empties; j++) {
+			if ((set & 1 << j) == 0) {
+				int cell = emptyCells[j];
+				removed += Integer.bitCount(candidates[cell] & symbols);
+				candidates[cell] &= ~symbols;
+			}
+		}
+		return removed;
+	}
+
+	/** Rules every other symbol out of a hidden set's cells */
+	private int confine(int set, int where, int[] candidates) {
+		int symbols = 0;
+		for (int rest = set; rest != 0; rest &= rest - 1) {
+			symbols |= missingSymbols[Integer.numberOfTrailingZeros(rest)];
+		}
+
+		int removed = 0;
+		for (int rest = where; rest != 0; rest &= rest - 1) {
+			int cell = emptyCells[Integer.numberOfTrailingZeros(rest)];
+			removed += Integer.bitCount(candidates[cell] & ~symbols);
+			candidates[cell] &= symbols;
+		}
+		return removed;
+	}
+
+	/**
+	 * The combinations of one to {@link #maxSetSize} elements out of n. The
+	 * combinations of each size are in colexicographic order, so those of the
+	 * first k elements come first, and each combination's parent, the
+	 * combination without its highest element, comes before it in the table of
+	 * the size below
+	 */
+	private static final class Combinations {
+		private static final Map<Integer, Combinations> cache = new ConcurrentHashMap<>();
+
+		/** Elements of each combination as a mask, by size */
+		final int[][] masks;
+		/** Highest element of each combination, by size */
+		final int[][] elements;
+		/** Index of each combination's parent, by size */
+		final int[][] parents;
+		/** Number of combinations of the first k elements, by size and k */
+		final int[][] counts;
+
+		static Combinations of(int n) {
+			return cache.computeIfAbsent(n, Combinations::new);
+		}
+
+		private Combinations(int n) {
+			int sizes = Math.min(maxSetSize, n);
+			masks = new int[sizes + 1][];
+			elements = new int[sizes + 1][];
+			parents = new int[sizes + 1][];
+			counts = new int[sizes + 1][];
+
+			for (int t = 1; t <= sizes; t++) {
+				int total = Combinations.binomial(n, t);
+				masks[t] = new int[total];
+				elements[t] = new int[total];
+				parents[t] = new int[total];
+				counts[t] = new int[n + 1];
+
+				int k = 0;
+				for (int e = 0; e < n; e++) {
+					counts[t][e] = k;
+					if (t == 1) {
+						masks[t][k] = 1 << e;
+						elements[t][k] = e;
+						parents[t][k++] = -1;
+						continue;
+					}
+
+					// Add e to every smaller combination of the elements below it
+					for (int p = 0; p < counts[t - 1][e]; p++) {
+						masks[t][k] = masks[t - 1][p] | 1 << e;
+						elements[t][k] = e;
+						parents[t][k++] = p;
+					}
+				}
+				counts[t][n] = k;
+			}
+		}
+
+		private static int binomial(int n, int k) {
+			long result = 1;
+			for (int i = 0; i < k; i++) {
+				result = result * (n - i) / (i + 1);
+			}
+			return (int) result;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package no.suppen.sudoku;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Follows a player through a puzzle, one move at a time, and gives hints. The
+ * puzzle is solved once, when the session starts. After that, each move only
+ * updates the symbol counts of the moved cell's groups, so asking for
+ * candidates, checking moves and finding the next hint take microseconds.
+ *
+ * Sessions are not thread safe.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class HintSession<S> {
+	/** What a hint is based on */
+	public enum Kind {
+		/** A filled cell does not match the solution. The hint has the right symbol */
+		WRONG_SYMBOL,
+		/** An empty cell with only one candidate */
+		NAKED_SINGLE,
+		/** The only cell of a group where a symbol can go */
+		HIDDEN_SINGLE,
+		/** No single is left, so a cell is revealed from the solution */
+		FROM_SOLUTION
+	}
+
+	/**
+	 * A suggested move
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param kind   Why the move is suggested
+	 * @param index  Index of the cell to fill
+	 * @param symbol The symbol to put in the cell
+	 */
+	public record Hint<S>(Kind kind, int index, S symbol) {
+	}
+
+	private final Topology<S> topology;
+	/** The board as the player sees it */
+	private final Sudoku<S> board;
+	/** Cells filled in the puzzle, which can not be changed */
+	private final boolean[] givens;
+	/** Symbol bit of each cell in the known solution */
+	private final int[] solution;
+
+	/** Cell masks of the board */
+	private final int[] cells;
+	/** Number of cells in group g holding symbol k, at g * symbolCount + k */
+	private final int[] groupSymbolCounts;
+	/** Mask of the symbols present in each group */
+	private final int[] groupUsed;
+	/** Number of filled cells which do not match the solution */
+	private int wrongCells = 0;
+
+	private HintSession(Sudoku<S> puzzle, Sudoku<S> solved) {
+		topology = Topology.of(puzzle);
+		board = new Sudoku<>(puzzle);
+		givens = new boolean[topology.size];
+		puzzle.filledCellIndices().forEach(i -> givens[i] = true);
+		solution = topology.cellMasks(solved);
+
+		cells = new int[topology.size];
+		groupSymbolCounts = new int[topology.groups.length * topology.symbols.size()];
+		groupUsed = new int[topology.groups.length];
+		puzzle.filledCellIndices().forEach(i -> place(i, topology.bitOf(puzzle.getCellSymbol(i).get())));
+	}
+
+	/**
+	 * Starts a session
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param puzzle The puzzle. Its filled cells become givens. Will not be mutated
+	 *
+	 * @return A new session on a copy of the puzzle
+	 *
+	 * @throws IllegalArgumentException If the puzzle has no solution, or too many
+	 *                                  symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> HintSession<S> start(Sudoku<S> puzzle) {
+		if (!Topology.supports(puzzle)) {
+			throw new IllegalArgumentException("Hints need at most " + Topology.maxSymbols + " symbols");
+		}
+
+		Sudoku<S> solved = Solver.findSolution(puzzle)
+				.orElseThrow(() -> new IllegalArgumentException("The puzzle has no solution"));
+		return new HintSession<>(puzzle, solved);
+	}
+
+	/**
+	 * Gets the board as the player sees it
+	 *
+	 * @return A copy of the board
+	 */
+	public Sudoku<S> board() {
+		return new Sudoku<>(board);
+	}
+
+	/**
+	 * Fills a cell
+	 *
+	 * @param index  Index of the cell
+	 * @param symbol The symbol to put in the cell
+	 *
+	 * @return True if the move matches the solution, false otherwise
+	 *
+	 * @throws IllegalArgumentException If the cell is a given
+	 * @throws InvalidSymbolException   If the symbol is not part of the sudoku's
+	 *                                  symbol set
+	 */
+	public boolean setCellSymbol(int index, S symbol) {
+		checkNotGiven(index);
+		board.setCellSymbol(index, symbol);
+
+		unplace(index);
+		int bit = topology.bitOf(symbol);
+		place(index, bit);
+		return bit == solution[index];
+	}
+
+	/**
+	 * Empties a cell
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @throws IllegalArgumentException If the cell is a given
+	 */
+	public void clearCellSymbol(int index) {
+		checkNotGiven(index);
+		board.clearCellSymbol(index);
+		unplace(index);
+	}
+
+	/**
+	 * Checks whether or not a move matches the solution
+	 *
+	 * @param index  Index of the cell
+	 * @param symbol The symbol
+	 *
+	 * @return True if the solution has the symbol in the cell, false otherwise
+	 */
+	public boolean isConsistent(int index, S symbol) {
+		return topology.symbols.contains(symbol) && topology.bitOf(symbol) == solution[index];
+	}
+
+	/**
+	 * Gets the cells which are filled with something else than the solution has
+	 *
+	 * @return Indices of the wrong cells, in order
+	 */
+	public IntStream wrongCells() {
+		if (wrongCells == 0) {
+			return IntStream.empty();
+		}
+		return IntStream.range(0, topology.size).filter(i -> cells[i] != 0 && cells[i] != solution[i]);
+	}
+
+	/**
+	 * Gets the symbols which can go in a cell, judging by the cell's groups
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return The candidates, in {@link Topology} order. Empty for filled cells
+	 */
+	public List<S> candidates(int index) {
+		return topology.symbolsOf(candidateMask(index));
+	}
+
+	/**
+	 * Finds the next step towards the solution. Wrong cells are pointed out first.
+	 * Then naked singles are preferred over hidden singles, as they are easier to
+	 * see. If there are no singles, the most constrained cell is revealed
+	 *
+	 * @return A hint, or nothing if the board is solved
+	 */
+	public Optional<Hint<S>> nextStep() {
+		if (wrongCells > 0) {
+			int index = wrongCells().findFirst().getAsInt();
+			return Optional.of(new Hint<>(Kind.WRONG_SYMBOL, index, topology.symbolOf(solution[index])));
+		}
+
+		int best = -1, bestCount = Integer.MAX_VALUE;
+		for (int i = 0; i < topology.size; i++) {
+			if (cells[i] != 0) {
+				continue;
+			}
+			int count = Integer.bitCount(candidateMask(i));
+			if (count == 1) {
+				return Optional.of(new Hint<>(Kind.NAKED_SINGLE, i, topology.symbolOf(solution[i])));
+			}
+			if (count < bestCount) {
+				best = i;
+				bestCount = count;
+			}
+		}
+
+		if (best == -1) {
+			return Optional.empty();
+		}
+
+		// A symbol which is a candidate in exactly one cell of a full group
+		for (int g = 0; g < topology.groups.length; g++) {
+			if (!topology.fullGroups[g]) {
+				continue;
+			}
+
+			int once = 0, twice = 0;
+			for (int i : topology.groups[g]) {
+				int mask = candidateMask(i);
+				twice |= once & mask;
+				once |= mask;
+			}
+			int hidden = once & ~twice;
+			if (hidden != 0) {
+				for (int i : topology.groups[g]) {
+					if ((candidateMask(i) & hidden) != 0) {
+						return Optional.of(new Hint<>(Kind.HIDDEN_SINGLE, i, topology.symbolOf(solution[i])));
+					}
+				}
+			}
+		}
+
+		return Optional.of(new Hint<>(Kind.FROM_SOLUTION, best, topology.symbolOf(solution[best])));
+	}
+
+	/** Candidate mask of a cell, 0 if it is filled */
+	private int candidateMask(int index) {
+		if (cells[index] != 0) {
+			return 0;
+		}
+
+		int used = 0;
+		for (int g : topology.cellGroups[index]) {
+			used |= groupUsed[g];
+		}
+		return topology.allSymbols & ~used;
+	}
+
+	private void place(int index, int bit) {
+		cells[index] = bit;
+		if (bit != solution[index]) {
+			wrongCells++;
+		}
+
+		int k = Integer.numberOfTrailingZeros(bit);
+		for (int g : topology.cellGroups[index]) {
+			groupSymbolCounts[g * topology.symbols.size() + k]++;
+			groupUsed[g] |= bit;
+		}
+	}
+
+	private void unplace(int index) {
+		int bit = cells[index];
+		if (bit == 0) {
+			return;
+		}
+		cells[index] = 0;
+		if (bit != solution[index]) {
+			wrongCells--;
+		}
+
+		// The symbol may still be elsewhere in the group, after a wrong move
+		int k = Integer.numberOfTrailingZeros(bit);
+		for (int g : topology.cellGroups[index]) {
+			if (--groupSymbolCounts[g * topology.symbols.size() + k] == 0) {
+				groupUsed[g] &= ~bit;
+			}
+		}
+	}
+
+	private void checkNotGiven(int index) {
+		if (givens[index]) {
+			throw new IllegalArgumentException("Cell " + index + " is a given");
+		}
+	}
+}
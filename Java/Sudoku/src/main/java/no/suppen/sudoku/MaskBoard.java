@@ -0,0 +1,149 @@
+package no.suppen.sudoku;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A board as symbol masks, with the used symbols of each group kept up to
+ * date, for searches which need to be fast and cheap to copy. Cells hold the
+ * bit of their symbol, or 0 when empty.
+ *
+ * Nothing allocates once the board is made, so searches on it put no load on
+ * the garbage collector however many nodes they visit.
+ */
+final class MaskBoard {
+	/**
+	 * Number of nodes, or steps, between polls of a cancellation check, for all
+	 * the cancellable searches
+	 */
+	static final int cancelCheckInterval = 1024;
+
+	final Topology<?> topology;
+	final int[] cells;
+	/** Mask of the symbols in each group */
+	final int[] used;
+	/** Nodes visited by counts, to time the polls of the cancellation check */
+	private long nodes = 0;
+
+	MaskBoard(Topology<?> topology) {
+		this.topology = topology;
+		cells = new int[topology.size];
+		used = new int[topology.groups.length];
+	}
+
+	MaskBoard(MaskBoard other) {
+		topology = other.topology;
+		cells = other.cells.clone();
+		used = other.used.clone();
+	}
+
+	void place(int cell, int bit) {
+		cells[cell] = bit;
+		for (int g : topology.cellGroups[cell]) {
+			used[g] |= bit;
+		}
+	}
+
+	void unplace(int cell) {
+		int bit = cells[cell];
+		cells[cell] = 0;
+		for (int g : topology.cellGroups[cell]) {
+			used[g] &= ~bit;
+		}
+	}
+
+	int candidates(int cell) {
+		int mask = topology.allSymbols;
+		for (int g : topology.cellGroups[cell]) {
+			mask &= ~used[g];
+		}
+		return mask;
+	}
+
+	/** Gets the empty cell with the fewest candidates, or -1 if there is none */
+	int mostConstrainedCell() {
+		int best = -1, bestCount = Integer.MAX_VALUE;
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] == 0) {
+				int count = Integer.bitCount(candidates(i));
+				if (count < bestCount) {
+					best = i;
+					bestCount = count;
+					if (count <= 1) {
+						break;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Completes the board with its first completion, branching on the most
+	 * constrained cell and trying candidates in bit order. Assumes the filled
+	 * cells do not break any rules
+	 *
+	 * @return True if the board was completed, false if it has no completion. The
+	 *         board is left as it was when there is none
+	 */
+	boolean solve() {
+		int cell = mostConstrainedCell();
+		if (cell == -1) {
+			return true;
+		}
+
+		for (int rest = candidates(cell); rest != 0; rest &= rest - 1) {
+			place(cell, rest & -rest);
+			if (solve()) {
+				return true;
+			}
+			unplace(cell);
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the completions of the board, assuming its filled cells do not
+	 * break any rules
+	 *
+	 * @param limit Number of completions to stop at
+	 *
+	 * @return Number of completions, at most limit. The board is left as it was
+	 */
+	long countSolutions(long limit) {
+		// A lambda which captures nothing is a constant, so this does not allocate
+		return countSolutions(limit, () -> false);
+	}
+
+	/**
+	 * Counts the completions of the board, assuming its filled cells do not
+	 * break any rules, giving up if asked to
+	 *
+	 * @param limit     Number of completions to stop at
+	 * @param cancelled Polled every {@link #cancelCheckInterval} nodes. The
+	 *                  search gives up when it returns true
+	 *
+	 * @return Number of completions, at most limit. The board is left as it was
+	 *
+	 * @throws CancellationException If the search gave up. The board is left in
+	 *                               the middle of the search
+	 */
+	long countSolutions(long limit, BooleanSupplier cancelled) {
+		if (++nodes % cancelCheckInterval == 0 && cancelled.getAsBoolean()) {
+			throw new CancellationException("The count was cancelled");
+		}
+
+		int cell = mostConstrainedCell();
+		if (cell == -1) {
+			return 1;
+		}
+
+		long solutions = 0;
+		for (int rest = candidates(cell); rest != 0 && solutions < limit; rest &= rest - 1) {
+			place(cell, rest & -rest);
+			solutions += countSolutions(limit - solutions, cancelled);
+			unplace(cell);
+		}
+		return solutions;
+	}
+}
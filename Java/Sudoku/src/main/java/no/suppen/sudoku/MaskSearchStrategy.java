@@ -0,0 +1,232 @@
+package no.suppen.sudoku;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Depth first search on a {@link MaskBoard}, with a choice of what to branch
+ * on. The strategies made by {@link SolvingStrategy} differ in the branching
+ * rule, and in whether candidates are tried in order or at random with
+ * restarts. Every node polls for cancellation now and then, so these
+ * strategies stop quickly when they lose a race.
+ */
+final class MaskSearchStrategy implements SolvingStrategy {
+	/** What to branch on */
+	enum Branching {
+		/** The empty cell with the fewest candidates */
+		CELL,
+		/** The symbol of a full group with the fewest places left in the group */
+		GROUP,
+		/** Whichever of the two has the fewest options, as in exact cover */
+		EXACT_COVER
+	}
+
+	/** Nodes allowed in the first randomized attempt, per empty cell */
+	private static final int firstBudgetPerCell = 8;
+
+	private final String name;
+	private final Branching branching;
+	/** Seed of the candidate order, or null to try candidates in bit order */
+	private final Long seed;
+
+	MaskSearchStrategy(String name, Branching branching, Long seed) {
+		this.name = name;
+		this.branching = branching;
+		this.seed = seed;
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+		return findSolution(puzzle, () -> false);
+	}
+
+	@Override
+	public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle, BooleanSupplier cancelled) {
+		if (!Topology.supports(puzzle)) {
+			return Solver.findSolution(puzzle);
+		}
+		if (puzzle.hasErrors()) {
+			return Optional.empty();
+		}
+
+		Topology<S> topology = Topology.of(puzzle);
+		MaskBoard board = new MaskBoard(topology);
+		puzzle.filledCellIndices().forEach(i -> board.place(i, topology.bitOf(puzzle.getCellSymbol(i).get())));
+
+		Search search = new Search(board, cancelled);
+		boolean solved;
+		if (seed == null) {
+			search.budget = Long.MAX_VALUE;
+			solved = search.search();
+		} else {
+			// Restart with a fresh random order and twice the budget until an attempt
+			// finishes, which it eventually will
+			search.random = new SplittableRandom(seed);
+			search.budget = (long) firstBudgetPerCell * puzzle.emptyCellCount() + 1;
+			while (!(solved = search.search()) && search.exhausted) {
+				search.exhausted = false;
+				search.nodes = 0;
+				search.budget *= 2;
+			}
+		}
+
+		if (!solved) {
+			return Optional.empty();
+		}
+		Sudoku<S> solution = new Sudoku<>(puzzle);
+		for (int i = 0; i < topology.size; i++) {
+			solution.setCellSymbol(i, topology.symbolOf(board.cells[i]));
+		}
+		return Optional.of(solution);
+	}
+
+	/** One search. The board is left solved if a solution is found */
+	private class Search {
+		final MaskBoard board;
+		final Topology<?> topology;
+		final BooleanSupplier cancelled;
+		SplittableRandom random;
+		long nodes = 0, budget;
+		/** Whether or not the search ran out of budget */
+		boolean exhausted = false;
+		/** Number of places of each symbol in a group */
+		final int[] places;
+
+		Search(MaskBoard board, BooleanSupplier cancelled) {
+			this.board = board;
+			this.topology = board.topology;
+			this.cancelled = cancelled;
+			places = new int[topology.symbols.size()];
+		}
+
+		/**
+		 * Searches below the board
+		 *
+		 * @return True if the board was completed, false if there is no completion
+		 *         or the budget ran out
+		 */
+		boolean search() {
+			if (++nodes % MaskBoard.cancelCheckInterval == 0 && cancelled.getAsBoolean()) {
+				throw new CancellationException("The " + name + " search was cancelled");
+			}
+			if (nodes > budget) {
+				exhausted = true;
+				return false;
+			}
+
+			// The most constrained cell
+			int bestCell = -1, bestCellCount = Integer.MAX_VALUE;
+			if (branching != Branching.GROUP) {
+				bestCell = board.mostConstrainedCell();
+				if (bestCell == -1) {
+					return true;
+				}
+				bestCellCount = Integer.bitCount(board.candidates(bestCell));
+				if (bestCellCount == 0) {
+					return false;
+				}
+			}
+
+			// The most constrained symbol of a full group
+			int bestGroup = -1, bestBit = 0, bestGroupCount = Integer.MAX_VALUE;
+			if (branching != Branching.CELL && bestCellCount > 1) {
+				for (int g = 0; g < topology.groups.length && bestGroupCount > 1; g++) {
+					if (!topology.fullGroups[g]) {
+						continue;
+					}
+					int missing = topology.allSymbols & ~board.used[g];
+					if (missing == 0) {
+						continue;
+					}
+
+					for (int i : topology.groups[g]) {
+						if (board.cells[i] == 0) {
+							for (int rest = board.candidates(i) & missing; rest != 0; rest &= rest - 1) {
+								places[Integer.numberOfTrailingZeros(rest)]++;
+							}
+						}
+					}
+					for (int rest = missing; rest != 0; rest &= rest - 1) {
+						int bit = Integer.numberOfTrailingZeros(rest);
+						if (places[bit] < bestGroupCount) {
+							bestGroup = g;
+							bestBit = 1 << bit;
+							bestGroupCount = places[bit];
+						}
+						places[bit] = 0;
+					}
+				}
+				if (bestGroupCount == 0) {
+					return false;
+				}
+			}
+
+			if (bestGroup != -1 && bestGroupCount < bestCellCount) {
+				return branchOnGroup(bestGroup, bestBit);
+			}
+			if (branching == Branching.GROUP) {
+				// Every full group is complete, but cells outside them may be empty
+				bestCell = board.mostConstrainedCell();
+				if (bestCell == -1) {
+					return true;
+				}
+			}
+			return branchOnCell(bestCell);
+		}
+
+		private boolean branchOnCell(int cell) {
+			int untried = board.candidates(cell);
+			while (untried != 0) {
+				int bit = random == null ? untried & -untried : randomBit(untried);
+				untried &= ~bit;
+
+				board.place(cell, bit);
+				if (search()) {
+					return true;
+				}
+				board.unplace(cell);
+				if (exhausted) {
+					return false;
+				}
+			}
+			return false;
+		}
+
+		private boolean branchOnGroup(int group, int bit) {
+			int[] cells = topology.groups[group];
+			int offset = random == null ? 0 : random.nextInt(cells.length);
+			for (int k = 0; k < cells.length; k++) {
+				int cell = cells[(k + offset) % cells.length];
+				if (board.cells[cell] != 0 || (board.candidates(cell) & bit) == 0) {
+					continue;
+				}
+
+				board.place(cell, bit);
+				if (search()) {
+					return true;
+				}
+				board.unplace(cell);
+				if (exhausted) {
+					return false;
+				}
+			}
+			return false;
+		}
+
+		/** Picks one of the set bits of a mask, uniformly */
+		private int randomBit(int mask) {
+			int rest = mask;
+			for (int n = random.nextInt(Integer.bitCount(mask)); n > 0; n--) {
+				rest &= rest - 1;
+			}
+			return rest & -rest;
+		}
+	}
+}
@@ -0,0 +1,523 @@
+package no.suppen.sudoku;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The pencil marks of a sudoku: the symbol of every filled cell, and the
+ * candidates left in every empty cell. Unlike a {@link Sudoku}, which only
+ * holds symbols, this keeps candidates which have been ruled out, so work done
+ * on them can be saved and picked up again, possibly in another process.
+ *
+ * Pencil marks can be saved in a compact binary form with
+ * {@link #write(DataOutput)}, and in a text form with {@link #toText()}. The
+ * binary form is, with big endian numbers:
+ * <ul>
+ * <li>the int {@link #magic}</li>
+ * <li>the number of cells, as an int</li>
+ * <li>the number of symbols, as a byte</li>
+ * <li>a fingerprint of the layout, as an int, to catch pencil marks read with
+ * the wrong layout. It is made from the number of cells, the string forms of
+ * the symbols in {@link Topology} order and the sorted cell groups, so it is the
+ * same in every JVM</li>
+ * <li>a bitset of the filled cells, one bit per cell, lowest cell in the lowest
+ * bit of the first byte</li>
+ * <li>for each cell, the bit of its symbol if it is filled, or its candidates if
+ * it is empty, using as few bytes as the number of symbols allows</li>
+ * </ul>
+ * A 9x9 board takes 186 bytes.
+ *
+ * The text form has one token per cell, separated by whitespace. A filled cell
+ * is its symbol. An empty cell is a '.' followed by its candidates, so an empty
+ * cell without candidates is a lone '.'. Each symbol must be one character
+ * long when made into a string.
+ *
+ * Pencil marks are not thread safe.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class PencilMarks<S> {
+	/** First int of the binary form, "PEN1" in ASCII */
+	public static final int magic = 0x50454E31;
+
+	/** The sudoku's topology */
+	public final Topology<S> topology;
+
+	/** An empty sudoku with the layout, to make sudokus from */
+	private final Sudoku<S> layout;
+	/** Bit of the symbol of each filled cell, 0 for empty cells */
+	private final int[] cells;
+	/** Candidates of each empty cell, 0 for filled cells */
+	private final int[] candidates;
+
+	private PencilMarks(Sudoku<S> layout, int[] cells, int[] candidates) {
+		this.topology = Topology.of(layout);
+		this.layout = new Sudoku<>(layout.size(), layout.symbols, layout.cellGroups);
+		this.cells = cells;
+		this.candidates = candidates;
+	}
+
+	/**
+	 * Makes the pencil marks of a sudoku, with every candidate its filled cells
+	 * allow
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param sudoku The sudoku
+	 *
+	 * @return New pencil marks
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> PencilMarks<S> of(Sudoku<S> sudoku) {
+		if (!Topology.supports(sudoku)) {
+			throw new IllegalArgumentException("Pencil marks need at most " + Topology.maxSymbols + " symbols");
+		}
+
+		CandidateGrid<S> grid = CandidateGrid.of(sudoku);
+		Topology<S> topology = grid.topology;
+		int[] cells = Arrays.copyOf(topology.cellMasks(sudoku), topology.size);
+		int[] candidates = new int[topology.size];
+		for (int i = 0; i < topology.size; i++) {
+			candidates[i] = grid.candidateMask(i);
+		}
+		return new PencilMarks<>(sudoku, cells, candidates);
+	}
+
+	/** Makes an independent copy of the pencil marks */
+	public PencilMarks<S> copy() {
+		return new PencilMarks<>(layout, cells.clone(), candidates.clone());
+	}
+
+	/**
+	 * Checks whether or not a cell is filled
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return True if the cell has a symbol, false otherwise
+	 */
+	public boolean isFilled(int index) {
+		return cells[index] != 0;
+	}
+
+	/**
+	 * Gets the symbol of a cell
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return The symbol, or nothing if the cell is empty
+	 */
+	public Optional<S> symbol(int index) {
+		return cells[index] == 0 ? Optional.empty() : Optional.of(topology.symbolOf(cells[index]));
+	}
+
+	/**
+	 * Gets the candidates of a cell as a mask
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return Mask of the cell's candidates. 0 for filled cells
+	 */
+	public int candidateMask(int index) {
+		return candidates[index];
+	}
+
+	/**
+	 * Gets the candidates of a cell
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return The cell's candidates, in bit order. Empty for filled cells
+	 */
+	public List<S> candidates(int index) {
+		return topology.symbolsOf(candidates[index]);
+	}
+
+	/**
+	 * Rules out a candidate
+	 *
+	 * @param index  Index of the cell
+	 * @param symbol The symbol to rule out
+	 *
+	 * @return True if the symbol was a candidate of the cell, false otherwise
+	 */
+	public boolean eliminate(int index, S symbol) {
+		int bit = topology.bitOf(symbol);
+		boolean wasCandidate = (candidates[index] & bit) != 0;
+		candidates[index] &= ~bit;
+		return wasCandidate;
+	}
+
+	/**
+	 * Fills a cell, and rules its symbol out from the cell's peers
+	 *
+	 * @param index  Index of the cell
+	 * @param symbol The symbol. Must be a candidate of the cell
+	 *
+	 * @throws IllegalArgumentException If the symbol is not a candidate
+	 */
+	public void place(int index, S symbol) {
+		int bit = topology.bitOf(symbol);
+		if ((candidates[index] & bit) == 0) {
+			throw new IllegalArgumentException(symbol + " is not a candidate of cell " + index);
+		}
+		PencilMarks.place(topology, cells, candidates, index, bit);
+	}
+
+	/**
+	 * Fills every cell which is forced, either by having only one candidate or by
+	 * being the only place for a symbol in a full group, until there are no more.
+	 * Candidates ruled out by locked sets, see {@link GroupAnalyzer}, are taken
+	 * out along the way
+	 *
+	 * @return False if the pencil marks turned out to have no solution, true
+	 *         otherwise. A false return may leave some cells filled
+	 */
+	public boolean propagate() {
+		return PencilMarks.propagate(topology, new GroupAnalyzer(topology), cells, candidates);
+	}
+
+	/**
+	 * Finds a solution which agrees with the pencil marks, never using a
+	 * candidate which has been ruled out. The pencil marks are not changed
+	 *
+	 * @return A solution, or nothing if there is none
+	 */
+	public Optional<Sudoku<S>> solve() {
+		int[] solution = PencilMarks.search(topology, new GroupAnalyzer(topology), cells.clone(),
+				candidates.clone());
+		if (solution == null) {
+			return Optional.empty();
+		}
+
+		Sudoku<S> sudoku = new Sudoku<>(layout);
+		for (int i = 0; i < solution.length; i++) {
+			sudoku.setCellSymbol(i, topology.symbolOf(solution[i]));
+		}
+		return Optional.of(sudoku);
+	}
+
+	/**
+	 * Makes a sudoku of the filled cells
+	 *
+	 * @return A new sudoku, with the candidates left out
+	 */
+	public Sudoku<S> toSudoku() {
+		Sudoku<S> sudoku = new Sudoku<>(layout);
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != 0) {
+				sudoku.setCellSymbol(i, topology.symbolOf(cells[i]));
+			}
+		}
+		return sudoku;
+	}
+
+	/**
+	 * Writes the pencil marks in binary form
+	 *
+	 * @param out Where to write
+	 *
+	 * @throws IOException If writing fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(magic);
+		out.writeInt(topology.size);
+		out.writeByte(topology.symbols.size());
+		out.writeInt(PencilMarks.fingerprint(topology));
+
+		byte[] filled = new byte[(topology.size + 7) / 8];
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != 0) {
+				filled[i / 8] |= 1 << (i % 8);
+			}
+		}
+		out.write(filled);
+
+		int maskBytes = PencilMarks.maskBytes(topology);
+		for (int i = 0; i < cells.length; i++) {
+			int mask = cells[i] | candidates[i];
+			for (int b = maskBytes - 1; b >= 0; b--) {
+				out.writeByte(mask >>> (8 * b));
+			}
+		}
+	}
+
+	/**
+	 * Reads pencil marks in binary form
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param in     Where to read from
+	 * @param layout A sudoku with the layout the pencil marks were written with.
+	 *               Only its size, symbols and cell groups are used
+	 *
+	 * @return The pencil marks
+	 *
+	 * @throws IOException If reading fails, the data is not pencil marks, or was
+	 *                     written with another layout
+	 */
+	public static <S> PencilMarks<S> read(DataInput in, Sudoku<S> layout) throws IOException {
+		if (in.readInt() != magic) {
+			throw new IOException("Not pencil marks");
+		}
+		Topology<S> topology = Topology.of(layout);
+		int size = in.readInt();
+		int symbolCount = in.readUnsignedByte();
+		int fingerprint = in.readInt();
+		if (size != topology.size || symbolCount != topology.symbols.size()
+				|| fingerprint != PencilMarks.fingerprint(topology)) {
+			throw new IOException("The pencil marks were written with another layout");
+		}
+
+		byte[] filled = new byte[(size + 7) / 8];
+		in.readFully(filled);
+
+		int[] cells = new int[size];
+		int[] candidates = new int[size];
+		int maskBytes = PencilMarks.maskBytes(topology);
+		for (int i = 0; i < size; i++) {
+			int mask = 0;
+			for (int b = 0; b < maskBytes; b++) {
+				mask = mask << 8 | in.readUnsignedByte();
+			}
+			if ((mask & ~topology.allSymbols) != 0) {
+				throw new IOException("Cell " + i + " has a mask with unknown symbols");
+			}
+
+			if ((filled[i / 8] & 1 << (i % 8)) != 0) {
+				if (Integer.bitCount(mask) != 1) {
+					throw new IOException("Filled cell " + i + " does not have exactly one symbol");
+				}
+				cells[i] = mask;
+			} else {
+				candidates[i] = mask;
+			}
+		}
+		return new PencilMarks<>(layout, cells, candidates);
+	}
+
+	/**
+	 * Makes the text form of the pencil marks. Boards with a square number of
+	 * cells get one line per row
+	 *
+	 * @return The text form
+	 *
+	 * @throws IllegalStateException If a symbol is not one character long as a
+	 *                               string
+	 */
+	public String toText() {
+		int side = (int) Math.sqrt(cells.length);
+		boolean square = side * side == cells.length;
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < cells.length; i++) {
+			if (i > 0) {
+				text.append(square && i % side == 0 ? '\n' : ' ');
+			}
+			if (cells[i] != 0) {
+				text.append(PencilMarks.symbolChar(topology.symbolOf(cells[i])));
+			} else {
+				text.append('.');
+				for (S symbol : candidates(i)) {
+					text.append(PencilMarks.symbolChar(symbol));
+				}
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Reads pencil marks in text form
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param text   The text form
+	 * @param layout A sudoku with the layout of the pencil marks. Only its size,
+	 *               symbols and cell groups are used
+	 *
+	 * @return The pencil marks
+	 *
+	 * @throws IllegalArgumentException If the text is not pencil marks of the
+	 *                                  layout
+	 */
+	public static <S> PencilMarks<S> fromText(CharSequence text, Sudoku<S> layout) {
+		Topology<S> topology = Topology.of(layout);
+		Map<Character, Integer> bits = new HashMap<>();
+		for (S symbol : topology.symbols) {
+			bits.put(PencilMarks.symbolChar(symbol), topology.bitOf(symbol));
+		}
+
+		String[] tokens = text.toString().strip().split("\\s+");
+		if (tokens.length != topology.size) {
+			throw new IllegalArgumentException("Expected " + topology.size + " cells. Got " + tokens.length);
+		}
+
+		int[] cells = new int[topology.size];
+		int[] candidates = new int[topology.size];
+		for (int i = 0; i < tokens.length; i++) {
+			String token = tokens[i];
+			boolean empty = token.charAt(0) == '.';
+			if (!empty && token.length() != 1) {
+				throw new IllegalArgumentException("Filled cell " + i + " must have one symbol. Got " + token);
+			}
+
+			int mask = 0;
+			for (int c = empty ? 1 : 0; c < token.length(); c++) {
+				Integer bit = bits.get(token.charAt(c));
+				if (bit == null) {
+					throw new IllegalArgumentException("Unknown symbol " + token.charAt(c) + " in cell " + i);
+				}
+				mask |= bit;
+			}
+
+			if (empty) {
+				candidates[i] = mask;
+			} else {
+				cells[i] = mask;
+			}
+		}
+		return new PencilMarks<>(layout, cells, candidates);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * topology.hashCode() + Arrays.hashCode(cells)) + Arrays.hashCode(candidates);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PencilMarks<?> other = (PencilMarks<?>) obj;
+		return topology.equals(other.topology) && Arrays.equals(cells, other.cells)
+				&& Arrays.equals(candidates, other.candidates);
+	}
+
+	@Override
+	public String toString() {
+		return toText();
+	}
+
+	/** Number of bytes needed for a mask of the topology's symbols */
+	private static int maskBytes(Topology<?> topology) {
+		return Math.max(1, (topology.symbols.size() + 7) / 8);
+	}
+
+	/**
+	 * Hashes a layout the same way in every JVM, unlike
+	 * {@link Topology#hashCode()}, which hashes the symbols themselves
+	 */
+	private static int fingerprint(Topology<?> topology) {
+		int hash = topology.size;
+		for (Object symbol : topology.symbols) {
+			hash = 31 * hash + String.valueOf(symbol).hashCode();
+		}
+		return 31 * hash + Arrays.deepHashCode(topology.groups);
+	}
+
+	private static char symbolChar(Object symbol) {
+		String str = symbol.toString();
+		if (str.length() != 1) {
+			throw new IllegalStateException("The text form needs one character symbols. Got " + str);
+		}
+		return str.charAt(0);
+	}
+
+	private static void place(Topology<?> topology, int[] cells, int[] candidates, int index, int bit) {
+		cells[index] = bit;
+		candidates[index] = 0;
+		for (int peer : topology.peers[index]) {
+			candidates[peer] &= ~bit;
+		}
+	}
+
+	/** Fills forced cells until there are none, see {@link #propagate()} */
+	private static boolean propagate(Topology<?> topology, GroupAnalyzer analyzer, int[] cells,
+			int[] candidates) {
+		// Loaded pencil marks may have filled cells which break the rules, or
+		// candidates which the filled cells rule out
+		for (int[] group : topology.groups) {
+			int placed = 0;
+			for (int i : group) {
+				if ((placed & cells[i]) != 0) {
+					return false;
+				}
+				placed |= cells[i];
+			}
+			for (int i : group) {
+				candidates[i] &= ~placed;
+			}
+		}
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+
+			// Naked singles
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] == 0) {
+					if (candidates[i] == 0) {
+						return false;
+					}
+					if (Integer.bitCount(candidates[i]) == 1) {
+						PencilMarks.place(topology, cells, candidates, i, candidates[i]);
+						changed = true;
+					}
+				}
+			}
+
+			// Hidden singles and locked sets leave forced cells with one candidate,
+			// to be filled in the next round
+			for (int g = 0; g < topology.groups.length; g++) {
+				int removed = analyzer.analyze(g, cells, candidates);
+				if (removed < 0) {
+					return false;
+				}
+				changed |= removed > 0;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Propagates, then tries each candidate of the empty cell with the fewest
+	 *
+	 * @return The filled cells of a solution, or null if there is none
+	 */
+	private static int[] search(Topology<?> topology, GroupAnalyzer analyzer, int[] cells, int[] candidates) {
+		if (!PencilMarks.propagate(topology, analyzer, cells, candidates)) {
+			return null;
+		}
+
+		int best = -1, bestCount = Integer.MAX_VALUE;
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] == 0 && Integer.bitCount(candidates[i]) < bestCount) {
+				best = i;
+				bestCount = Integer.bitCount(candidates[i]);
+			}
+		}
+		if (best == -1) {
+			return cells;
+		}
+
+		for (int rest = candidates[best]; rest != 0; rest &= rest - 1) {
+			int[] branchCells = cells.clone();
+			int[] branchCandidates = candidates.clone();
+			PencilMarks.place(topology, branchCells, branchCandidates, best, rest & -rest);
+
+			int[] solution = PencilMarks.search(topology, analyzer, branchCells, branchCandidates);
+			if (solution != null) {
+				return solution;
+			}
+		}
+		return null;
+	}
+}
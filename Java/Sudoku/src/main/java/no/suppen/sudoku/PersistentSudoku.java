@@ -0,0 +1,153 @@
+package no.suppen.sudoku;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An immutable sudoku. Changes make new boards with {@link #with(int, Object)}
+ * and {@link #without(int)}, leaving the old board as it was, so boards can be
+ * shared between threads freely and never need copying.
+ *
+ * The cells are kept in fixed size chunks. A change copies the list of chunks
+ * and the one chunk holding the cell, and shares all the other chunks with the
+ * old board, so it costs a few dozen references rather than a whole board.
+ *
+ * {@link #setCellSymbol(int, Object)} and {@link #clearCellSymbol(int)} throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class PersistentSudoku<S> extends Sudoku<S> {
+	/** Number of cells in a chunk */
+	private static final int chunkSize = 16;
+
+	private final int size;
+	/** The cells' symbols, or null for empty cells, in chunks of chunkSize */
+	private final Object[][] chunks;
+	private final long boardHash;
+
+	private PersistentSudoku(Set<S> symbols, Set<Set<Integer>> cellGroups, int size, Object[][] chunks,
+			long boardHash) {
+		super(symbols, cellGroups);
+		this.size = size;
+		this.chunks = chunks;
+		this.boardHash = boardHash;
+	}
+
+	/**
+	 * Makes an immutable copy of a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param sudoku The sudoku to copy. Returned as it is if it already is a
+	 *               persistent sudoku
+	 *
+	 * @return An immutable sudoku with the same cells, symbols and cell groups
+	 */
+	public static <S> PersistentSudoku<S> of(Sudoku<S> sudoku) {
+		if (sudoku instanceof PersistentSudoku<S> persistent) {
+			return persistent;
+		}
+
+		int size = sudoku.size();
+		Object[][] chunks = new Object[(size + chunkSize - 1) / chunkSize][];
+		for (int c = 0; c < chunks.length; c++) {
+			chunks[c] = new Object[Math.min(chunkSize, size - c * chunkSize)];
+		}
+		sudoku.filledCellIndices()
+				.forEach(i -> chunks[i / chunkSize][i % chunkSize] = sudoku.getCellSymbol(i).get());
+
+		return new PersistentSudoku<>(Set.copyOf(sudoku.symbols), Sudoku.immutableCopy(sudoku.cellGroups), size,
+				chunks, sudoku.boardHash());
+	}
+
+	/**
+	 * Makes a board with a cell set to a symbol
+	 *
+	 * @param index  Index of the cell to set
+	 * @param symbol The symbol to put in the cell. Must be part of the board's
+	 *               symbol set
+	 *
+	 * @return A board like this one, but with the cell set. This board if the
+	 *         cell already held the symbol
+	 */
+	public PersistentSudoku<S> with(int index, S symbol) {
+		// Verify the symbol is part of the symbol set
+		if (!symbols.contains(symbol)) {
+			throw new InvalidSymbolException();
+		}
+
+		Optional<S> old = getCellSymbol(index);
+		if (old.equals(Optional.of(symbol))) {
+			return this;
+		}
+
+		long hash = boardHash ^ Sudoku.cellHash(index, symbol);
+		if (old.isPresent()) {
+			hash ^= Sudoku.cellHash(index, old.get());
+		}
+		return change(index, symbol, hash);
+	}
+
+	/**
+	 * Makes a board with a cell cleared
+	 *
+	 * @param index Index of the cell to clear
+	 *
+	 * @return A board like this one, but with the cell empty. This board if the
+	 *         cell already was empty
+	 */
+	public PersistentSudoku<S> without(int index) {
+		Optional<S> old = getCellSymbol(index);
+		if (old.isEmpty()) {
+			return this;
+		}
+		return change(index, null, boardHash ^ Sudoku.cellHash(index, old.get()));
+	}
+
+	/** Copies the path to a cell, sharing every other chunk */
+	private PersistentSudoku<S> change(int index, S symbol, long hash) {
+		Object[][] newChunks = chunks.clone();
+		Object[] chunk = chunks[index / chunkSize].clone();
+		chunk[index % chunkSize] = symbol;
+		newChunks[index / chunkSize] = chunk;
+		return new PersistentSudoku<>(symbols, cellGroups, size, newChunks, hash);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Optional<S> getCellSymbol(int index) {
+		Objects.checkIndex(index, size);
+		return Optional.ofNullable((S) chunks[index / chunkSize][index % chunkSize]);
+	}
+
+	/**
+	 * Not supported, as the board is immutable. Use {@link #with(int, Object)}
+	 *
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void setCellSymbol(int index, S symbol) {
+		throw new UnsupportedOperationException("Persistent sudokus are immutable. Use with(index, symbol)");
+	}
+
+	/**
+	 * Not supported, as the board is immutable. Use {@link #without(int)}
+	 *
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void clearCellSymbol(int index) {
+		throw new UnsupportedOperationException("Persistent sudokus are immutable. Use without(index)");
+	}
+
+	@Override
+	public long boardHash() {
+		return boardHash;
+	}
+}
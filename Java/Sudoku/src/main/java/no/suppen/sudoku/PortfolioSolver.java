@@ -0,0 +1,207 @@
+package no.suppen.sudoku;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Races several {@link SolvingStrategy}s on the same sudoku, each on its own
+ * thread. The first strategy to finish gives the answer, and the others are
+ * told to give up. Strategies which can not give up, like
+ * {@link SolvingStrategy#backtracking()}, run to the end in the background.
+ *
+ * The solver counts how often each strategy wins. When it is set to race fewer
+ * strategies than it has, each race is run by the strategies with the most
+ * wins so far, and every {@link #explorationInterval}th race is run by all of
+ * them, so that a strategy which has started doing better gets noticed.
+ *
+ * A portfolio solver is a strategy itself, and is thread safe. Close it to stop
+ * its threads.
+ */
+public class PortfolioSolver implements SolvingStrategy, Closeable {
+	/** Every this many races, all strategies take part */
+	public static final int explorationInterval = 16;
+
+	/**
+	 * The outcome of a race
+	 *
+	 * @param solution The solution, or nothing if the sudoku has none
+	 * @param winner   Name of the strategy which finished first
+	 * @param runners  Number of strategies in the race
+	 * @param nanos    Time from the start of the race to the first finish
+	 */
+	public record Result<S>(Optional<Sudoku<S>> solution, String winner, int runners, long nanos) {
+	}
+
+	private final List<SolvingStrategy> strategies;
+	private final int raceSize;
+	private final ExecutorService executor;
+	private final AtomicLongArray wins;
+	private final AtomicLong races = new AtomicLong();
+
+	/**
+	 * Creates a portfolio solver which races all its strategies every time
+	 *
+	 * @param strategies The strategies to race
+	 */
+	public PortfolioSolver(List<SolvingStrategy> strategies) {
+		this(strategies, strategies.size());
+	}
+
+	/**
+	 * Creates a portfolio solver
+	 *
+	 * @param strategies The strategies to race
+	 * @param raceSize   Number of strategies in each race, apart from the
+	 *                   exploring races where all take part
+	 *
+	 * @throws IllegalArgumentException If there are no strategies, or the race
+	 *                                  size is not between 1 and the number of
+	 *                                  strategies
+	 */
+	public PortfolioSolver(List<SolvingStrategy> strategies, int raceSize) {
+		if (strategies.isEmpty()) {
+			throw new IllegalArgumentException("A portfolio needs at least one strategy");
+		}
+		if (raceSize < 1 || raceSize > strategies.size()) {
+			throw new IllegalArgumentException("Race size must be between 1 and " + strategies.size());
+		}
+
+		this.strategies = List.copyOf(strategies);
+		this.raceSize = raceSize;
+		wins = new AtomicLongArray(strategies.size());
+
+		// Losers which can not give up may still be running, so they must not keep
+		// the JVM alive
+		executor = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "portfolio-solver");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Creates a portfolio of the mask based strategies, the CDCL strategy and a
+	 * random restart strategy
+	 *
+	 * @return A new portfolio solver
+	 */
+	public static PortfolioSolver standard() {
+		return new PortfolioSolver(List.of(SolvingStrategy.mostConstrainedCell(), SolvingStrategy.mostConstrainedGroup(),
+				SolvingStrategy.exactCover(), SolvingStrategy.randomRestarts(1), SolvingStrategy.cdcl()));
+	}
+
+	@Override
+	public String name() {
+		return "portfolio";
+	}
+
+	@Override
+	public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+		return solve(puzzle).solution();
+	}
+
+	/**
+	 * Races strategies on a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param puzzle The sudoku to solve. Will not be mutated
+	 *
+	 * @return The outcome of the race
+	 *
+	 * @throws IllegalStateException If every strategy in the race failed. The
+	 *                               first failure is the cause
+	 */
+	public <S> Result<S> solve(Sudoku<S> puzzle) {
+		List<Integer> runners = runners();
+		long start = System.nanoTime();
+
+		// Every strategy gets its own copy, in case one of them is not as careful
+		// about mutating as it should be
+		AtomicBoolean finished = new AtomicBoolean();
+		ExecutorCompletionService<Optional<Sudoku<S>>> completion = new ExecutorCompletionService<>(executor);
+		Map<Future<Optional<Sudoku<S>>>, Integer> futures = new LinkedHashMap<>();
+		for (int runner : runners) {
+			SolvingStrategy strategy = strategies.get(runner);
+			Sudoku<S> copy = new Sudoku<>(puzzle);
+			futures.put(completion.submit(() -> strategy.findSolution(copy, finished::get)), runner);
+		}
+
+		try {
+			ExecutionException firstFailure = null;
+			for (int n = 0; n < runners.size(); n++) {
+				Future<Optional<Sudoku<S>>> future = completion.take();
+				try {
+					Optional<Sudoku<S>> solution = future.get();
+					long nanos = System.nanoTime() - start;
+					int winner = futures.get(future);
+					wins.incrementAndGet(winner);
+					return new Result<>(solution, strategies.get(winner).name(), runners.size(), nanos);
+				} catch (ExecutionException e) {
+					if (firstFailure == null) {
+						firstFailure = e;
+					}
+				}
+			}
+			throw new IllegalStateException("Every strategy failed", firstFailure.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while racing");
+		} finally {
+			finished.set(true);
+			futures.keySet().forEach(future -> future.cancel(true));
+		}
+	}
+
+	/** Picks the strategies for the next race */
+	private List<Integer> runners() {
+		long race = races.getAndIncrement();
+		List<Integer> all = IntStream.range(0, strategies.size()).boxed().toList();
+		if (raceSize == strategies.size() || race % explorationInterval == 0) {
+			return all;
+		}
+
+		// Most wins first, and earlier strategies first among equals
+		List<Integer> ranked = new ArrayList<>(all);
+		ranked.sort(Comparator.comparingLong((Integer i) -> -wins.get(i)).thenComparingInt(i -> i));
+		return ranked.subList(0, raceSize);
+	}
+
+	/**
+	 * Gets the number of races each strategy has won
+	 *
+	 * @return Wins by strategy name, in the order the strategies were given
+	 */
+	public Map<String, Long> wins() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (int i = 0; i < strategies.size(); i++) {
+			result.merge(strategies.get(i).name(), wins.get(i), Long::sum);
+		}
+		return result;
+	}
+
+	/** Number of races run */
+	public long races() {
+		return races.get();
+	}
+
+	/** Stops the threads. Strategies still running are interrupted */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,177 @@
+package no.suppen.sudoku;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Removes givens from a board until every remaining given is needed for the
+ * solution to be unique, giving a minimal puzzle.
+ *
+ * A given can be removed if no other candidate of its cell leads to a
+ * solution. Removing a given can only make other givens more needed, never
+ * less, so a given found to be needed is never tried again. Each round tests
+ * all the undecided givens of the current puzzle in parallel, starting from one
+ * shared board, drops the needed ones, and removes the first removable one.
+ * Trials stop at the first solution with another candidate, which is the
+ * puzzle's second solution.
+ */
+public class PuzzleReducer {
+	private PuzzleReducer() {
+	}
+
+	/**
+	 * Reduces a board to a minimal puzzle, trying the givens in cell order
+	 *
+	 * @param <S>   Type of symbols in the sudoku
+	 * @param board A solved board, or a puzzle with a unique solution. Will not be
+	 *              mutated
+	 *
+	 * @return A new minimal puzzle, whose givens are a subset of the board's
+	 *
+	 * @throws IllegalArgumentException If the board does not have exactly one
+	 *                                  solution, or has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> Sudoku<S> reduce(Sudoku<S> board) {
+		int[] order = board.filledCellIndices().toArray();
+		return PuzzleReducer.reduce(board, PuzzleReducer.solve(board), order);
+	}
+
+	/**
+	 * Reduces a board to several minimal puzzles, trying the givens in random
+	 * orders
+	 *
+	 * @param <S>   Type of symbols in the sudoku
+	 * @param board A solved board, or a puzzle with a unique solution. Will not be
+	 *              mutated
+	 * @param count Number of orders to try
+	 * @param seed  Seed for the orders
+	 *
+	 * @return The distinct minimal puzzles found. At most count, fewer if some
+	 *         orders gave the same puzzle
+	 *
+	 * @throws IllegalArgumentException If the board does not have exactly one
+	 *                                  solution, or has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> List<Sudoku<S>> reduce(Sudoku<S> board, int count, long seed) {
+		MaskBoard solution = PuzzleReducer.solve(board);
+		SplittableRandom random = new SplittableRandom(seed);
+
+		Set<Sudoku<S>> found = new HashSet<>();
+		List<Sudoku<S>> puzzles = new ArrayList<>();
+		for (int n = 0; n < count; n++) {
+			int[] order = board.filledCellIndices().toArray();
+			for (int i = order.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = order[i];
+				order[i] = order[j];
+				order[j] = swap;
+			}
+
+			Sudoku<S> puzzle = PuzzleReducer.reduce(board, solution, order);
+			if (found.add(puzzle)) {
+				puzzles.add(puzzle);
+			}
+		}
+		return puzzles;
+	}
+
+	/** Finds the board's solution, making sure it is the only one */
+	private static <S> MaskBoard solve(Sudoku<S> board) {
+		if (!Topology.supports(board)) {
+			throw new IllegalArgumentException("Reducing needs at most " + Topology.maxSymbols + " symbols");
+		}
+		if (board.hasErrors()) {
+			throw new IllegalArgumentException("The board has no solution");
+		}
+
+		Topology<S> topology = Topology.of(board);
+		MaskBoard start = PuzzleReducer.load(topology, board);
+		if (start.countSolutions(2) != 1) {
+			throw new IllegalArgumentException("The board must have exactly one solution");
+		}
+
+		Sudoku<S> solved = Solver.findSolution(board).get();
+		return PuzzleReducer.load(topology, solved);
+	}
+
+	private static <S> Sudoku<S> reduce(Sudoku<S> board, MaskBoard solution, int[] order) {
+		Topology<S> topology = Topology.of(board);
+		boolean[] kept = new boolean[topology.size];
+		board.filledCellIndices().forEach(i -> kept[i] = true);
+
+		List<Integer> undecided = new ArrayList<>();
+		for (int cell : order) {
+			undecided.add(cell);
+		}
+
+		while (!undecided.isEmpty()) {
+			MaskBoard shared = PuzzleReducer.load(topology, solution, i -> kept[i]);
+			boolean[] removable = new boolean[topology.size];
+			undecided.parallelStream()
+					.forEach(cell -> removable[cell] = PuzzleReducer.isRemovable(shared, solution, cell));
+
+			List<Integer> next = new ArrayList<>();
+			boolean removed = false;
+			for (int cell : undecided) {
+				if (!removable[cell]) {
+					continue;
+				}
+				if (!removed) {
+					kept[cell] = false;
+					removed = true;
+				} else {
+					next.add(cell);
+				}
+			}
+			undecided = next;
+		}
+
+		Sudoku<S> puzzle = new Sudoku<>(topology.size, board.symbols, board.cellGroups);
+		for (int i = 0; i < topology.size; i++) {
+			if (kept[i]) {
+				puzzle.setCellSymbol(i, topology.symbolOf(solution.cells[i]));
+			}
+		}
+		return puzzle;
+	}
+
+	/** Checks whether a given can go without the puzzle getting another solution */
+	private static boolean isRemovable(MaskBoard shared, MaskBoard solution, int cell) {
+		MaskBoard trial = new MaskBoard(shared);
+		trial.unplace(cell);
+
+		int others = trial.candidates(cell) & ~solution.cells[cell];
+		for (int rest = others; rest != 0; rest &= rest - 1) {
+			trial.place(cell, rest & -rest);
+			if (trial.countSolutions(1) > 0) {
+				return false;
+			}
+			trial.unplace(cell);
+		}
+		return true;
+	}
+
+	/** Makes a mask board with a sudoku's filled cells */
+	private static <S> MaskBoard load(Topology<S> topology, Sudoku<S> sudoku) {
+		MaskBoard board = new MaskBoard(topology);
+		sudoku.filledCellIndices().forEach(i -> board.place(i, topology.bitOf(sudoku.getCellSymbol(i).get())));
+		return board;
+	}
+
+	/** Makes a mask board with some of another mask board's filled cells */
+	private static MaskBoard load(Topology<?> topology, MaskBoard source, IntPredicate keep) {
+		MaskBoard board = new MaskBoard(topology);
+		for (int i = 0; i < topology.size; i++) {
+			if (source.cells[i] != 0 && keep.test(i)) {
+				board.place(i, source.cells[i]);
+			}
+		}
+		return board;
+	}
+}
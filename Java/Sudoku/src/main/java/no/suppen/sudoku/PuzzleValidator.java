@@ -0,0 +1,266 @@
+package no.suppen.sudoku;
+
+import java.io.BufferedReader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Checks submitted standard 9x9 puzzles in one pass per record: the text is
+ * parsed, the givens are checked against each other while they are read, and
+ * the solutions are counted up to two. Every record gets a {@link Verdict};
+ * nothing is thrown for bad input, and no {@link Sudoku} objects are made.
+ *
+ * A record has one character per cell, row by row. Spaces and newlines are
+ * ignored. 1-9 are givens, and '0', '.' and '_' are empty cells. Any other
+ * character makes the record malformed.
+ *
+ * Validators keep their working arrays between records, and are not thread
+ * safe.
+ */
+public class PuzzleValidator {
+	/** Layout of a standard 9x9 sudoku */
+	private static final Topology<Integer> topology = Topology.of(Sudoku9x9.empty());
+	/** Mask of all nine digits */
+	private static final int allDigits = 0x1FF;
+
+	/** Outcome of validating a record */
+	public enum Verdict {
+		/** Not 81 cells, or has characters which are not cells */
+		MALFORMED,
+		/** Two givens break a rule of the board */
+		INVALID_GIVENS,
+		/** The givens are consistent, but can not be completed */
+		NO_SOLUTION,
+		/** Exactly one solution */
+		UNIQUE,
+		/** More than one solution */
+		MULTIPLE
+	}
+
+	/**
+	 * Verdict on a record
+	 *
+	 * @param number  Number of the record in the input, from 1
+	 * @param verdict The verdict
+	 * @param reason  Explanation of the verdict, for humans
+	 */
+	public record Validation(long number, Verdict verdict, String reason) {
+	}
+
+	/** Digit mask used in each group */
+	private final int[] used = new int[topology.groups.length];
+	/** The empty cells */
+	private final int[] empty = new int[Sudoku9x9.size];
+	private int emptyCount;
+	private String reason;
+	/** Cancellation check of the current verdict, and nodes searched for it */
+	private BooleanSupplier cancelled = () -> false;
+	private long nodes;
+
+	/**
+	 * Validates a record
+	 *
+	 * @param record The record
+	 *
+	 * @return The verdict. See {@link #reason()} for why
+	 */
+	public Verdict verdict(CharSequence record) {
+		Verdict verdict = parse(record);
+		if (verdict != null) {
+			return verdict;
+		}
+
+		switch (countSolutions(0, 2)) {
+		case 0:
+			reason = "Has no solution";
+			return Verdict.NO_SOLUTION;
+		case 1:
+			reason = "Has exactly one solution";
+			return Verdict.UNIQUE;
+		default:
+			reason = "Has more than one solution";
+			return Verdict.MULTIPLE;
+		}
+	}
+
+	/**
+	 * Validates a record, giving up if asked to
+	 *
+	 * @param record    The record
+	 * @param cancelled Polled every thousand or so search nodes. The search
+	 *                  gives up when it returns true
+	 *
+	 * @return The verdict. See {@link #reason()} for why
+	 *
+	 * @throws CancellationException If the search gave up
+	 */
+	public Verdict verdict(CharSequence record, BooleanSupplier cancelled) {
+		this.cancelled = cancelled;
+		try {
+			return verdict(record);
+		} finally {
+			this.cancelled = () -> false;
+		}
+	}
+
+	/** Explanation of the last verdict */
+	public String reason() {
+		return reason;
+	}
+
+	/**
+	 * Validates records as they are read, one record per line
+	 *
+	 * @param reader Where to read the records from. Read lazily, as the stream is
+	 *               consumed
+	 *
+	 * @return A sequential stream of one validation per line
+	 *
+	 * @throws UncheckedIOException From the stream, if reading fails
+	 */
+	public Stream<Validation> validate(BufferedReader reader) {
+		return validate(reader.lines());
+	}
+
+	/**
+	 * Validates records as they are consumed
+	 *
+	 * @param records The records
+	 *
+	 * @return A sequential stream of one validation per record, in order
+	 */
+	public Stream<Validation> validate(Stream<? extends CharSequence> records) {
+		Iterator<? extends CharSequence> iterator = records.sequential().iterator();
+
+		return StreamSupport.stream(new Spliterators.AbstractSpliterator<Validation>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			private long number = 0;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Validation> action) {
+				if (!iterator.hasNext()) {
+					return false;
+				}
+				Verdict verdict = verdict(iterator.next());
+				action.accept(new Validation(++number, verdict, reason));
+				return true;
+			}
+		}, false).onClose(records::close);
+	}
+
+	/**
+	 * Reads the givens into the group masks, and finds the empty cells
+	 *
+	 * @return A verdict if the record is malformed or has invalid givens, null
+	 *         otherwise
+	 */
+	private Verdict parse(CharSequence record) {
+		for (int g = 0; g < used.length; g++) {
+			used[g] = 0;
+		}
+		emptyCount = 0;
+
+		// Keep reading after a conflict, so malformed records are reported as such
+		int cell = 0, conflict = -1;
+		for (int c = 0; c < record.length(); c++) {
+			char ch = record.charAt(c);
+			if (ch == ' ' || ch == '\n' || ch == '\r') {
+				continue;
+			}
+			if (cell == Sudoku9x9.size) {
+				reason = "Has more than " + Sudoku9x9.size + " cells";
+				return Verdict.MALFORMED;
+			}
+
+			if (ch >= '1' && ch <= '9') {
+				int bit = 1 << (ch - '1');
+				for (int g : topology.cellGroups[cell]) {
+					if ((used[g] & bit) != 0 && conflict == -1) {
+						conflict = cell;
+					}
+					used[g] |= bit;
+				}
+			} else if (ch == '0' || ch == '.' || ch == '_') {
+				empty[emptyCount++] = cell;
+			} else {
+				reason = "Unexpected character '" + ch + "' at position " + c;
+				return Verdict.MALFORMED;
+			}
+			cell++;
+		}
+
+		if (cell != Sudoku9x9.size) {
+			reason = "Has " + cell + " cells, not " + Sudoku9x9.size;
+			return Verdict.MALFORMED;
+		}
+		if (conflict != -1) {
+			reason = "The given at cell " + conflict + " is already in one of its groups";
+			return Verdict.INVALID_GIVENS;
+		}
+		return null;
+	}
+
+	/**
+	 * Counts the solutions, up to a limit, by filling the most constrained empty
+	 * cell first
+	 *
+	 * @param filled Number of empty cells filled so far. The unfilled ones are
+	 *               empty[filled..]
+	 * @param limit  Number of solutions to stop at
+	 */
+	private int countSolutions(int filled, int limit) {
+		if (++nodes % MaskBoard.cancelCheckInterval == 0 && cancelled.getAsBoolean()) {
+			throw new CancellationException("Validation was cancelled");
+		}
+		if (filled == emptyCount) {
+			return 1;
+		}
+
+		// Move the most constrained cell to position filled
+		int best = filled, bestMask = 0, bestCount = Integer.MAX_VALUE;
+		for (int e = filled; e < emptyCount; e++) {
+			int mask = candidates(empty[e]);
+			int count = Integer.bitCount(mask);
+			if (count < bestCount) {
+				best = e;
+				bestMask = mask;
+				bestCount = count;
+				if (count <= 1) {
+					break;
+				}
+			}
+		}
+		int cell = empty[best];
+		empty[best] = empty[filled];
+		empty[filled] = cell;
+
+		int[] groups = topology.cellGroups[cell];
+		int solutions = 0;
+		for (int rest = bestMask; rest != 0 && solutions < limit; rest &= rest - 1) {
+			int bit = rest & -rest;
+			for (int g : groups) {
+				used[g] |= bit;
+			}
+			solutions += countSolutions(filled + 1, limit - solutions);
+			for (int g : groups) {
+				used[g] &= ~bit;
+			}
+		}
+		return solutions;
+	}
+
+	private int candidates(int cell) {
+		int taken = 0;
+		for (int g : topology.cellGroups[cell]) {
+			taken |= used[g];
+		}
+		return ~taken & allDigits;
+	}
+}
@@ -0,0 +1,58 @@
+package no.suppen.sudoku;
+
+/** Candidate engine using plain loops. Works everywhere */
+public class ScalarCandidateEngine implements CandidateEngine {
+	@Override
+	public void groupUsed(Topology<?> topology, int[] cellMasks, int[] groupUsed) {
+		for (int g = 0; g < topology.groups.length; g++) {
+			int used = 0;
+			for (int i : topology.groups[g]) {
+				used |= cellMasks[i];
+			}
+			groupUsed[g] = used;
+		}
+		groupUsed[topology.groups.length] = 0;
+	}
+
+	@Override
+	public void candidates(Topology<?> topology, int[] cellMasks, int[] groupUsed, int[] candidates) {
+		for (int i = 0; i < topology.size; i++) {
+			if (cellMasks[i] != 0) {
+				candidates[i] = 0;
+				continue;
+			}
+
+			int used = 0;
+			for (int g : topology.cellGroups[i]) {
+				used |= groupUsed[g];
+			}
+			candidates[i] = topology.allSymbols & ~used;
+		}
+		candidates[topology.size] = 0;
+	}
+
+	@Override
+	public void hiddenSymbols(Topology<?> topology, int[] candidates, int[] groupUsed, int[] hidden) {
+		for (int g = 0; g < topology.groups.length; g++) {
+			if (!topology.fullGroups[g]) {
+				hidden[g] = 0;
+				continue;
+			}
+
+			// Symbols seen at least once, and at least twice
+			int once = 0, twice = 0;
+			for (int i : topology.groups[g]) {
+				twice |= once & candidates[i];
+				once |= candidates[i];
+			}
+			hidden[g] = once & ~twice & ~groupUsed[g];
+		}
+	}
+
+	@Override
+	public void bitCounts(int[] masks, int[] counts, int length) {
+		for (int i = 0; i < length; i++) {
+			counts[i] = Integer.bitCount(masks[i]);
+		}
+	}
+}
@@ -0,0 +1,366 @@
+package no.suppen.sudoku;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Spreads an exhaustive search for the solutions of a sudoku over any number of
+ * {@link SearchWorker}s, which connect over TCP, possibly from other machines.
+ *
+ * The search tree is cut into subproblems, each being the puzzle plus the
+ * branches taken to get there. A few levels of the tree are expanded up front
+ * to get the first subproblems. Workers pull one subproblem at a time, and
+ * check in with the coordinator while searching it. When a worker is waiting
+ * and there are no subproblems left to give it, the next worker to check in is
+ * told to split, and gives back its untried branches closest to the root as new
+ * subproblems. The counts and solutions of the subproblems are merged as they
+ * come in.
+ *
+ * If a worker disconnects in the middle of a subproblem, or sends anything
+ * which does not fit the protocol, the search fails.
+ *
+ * By default the coordinator only listens on the loopback address, so only
+ * workers on the same machine can connect. To use other machines, give an
+ * address they can reach. There is no authentication: anyone who can connect
+ * gets the puzzle, and can make the search fail or give wrong results.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class SearchCoordinator<S> implements Closeable {
+	/** Default number of subproblems to make before any worker connects */
+	public static final int defaultInitialSubproblems = 64;
+
+	/**
+	 * Result of a distributed search
+	 *
+	 * @param <S>           Type of symbols in the sudoku
+	 * @param solutionCount Number of solutions
+	 * @param solutions     The solutions, if they were collected. Empty otherwise
+	 * @param subproblems   Number of subproblems searched by workers
+	 * @param splits        Number of times a worker was told to split
+	 */
+	public record Result<S>(long solutionCount, List<Sudoku<S>> solutions, int subproblems, int splits) {
+	}
+
+	private final Sudoku<S> empty;
+	private final Topology<S> topology;
+	private final boolean collectSolutions;
+	private final ServerSocket server;
+
+	/** Subproblems waiting for a worker. Guarded by this */
+	private final Deque<byte[]> pending = new ArrayDeque<>();
+	/** Solutions found so far, as boards. Guarded by this */
+	private final List<byte[]> solutionBoards = new ArrayList<>();
+	/** Whether or not the search has started. Guarded by this */
+	private boolean started = false;
+	/** Whether or not the coordinator has been closed. Guarded by this */
+	private boolean closed = false;
+	/** Number of subproblems given out and not yet done. Guarded by this */
+	private int inFlight = 0;
+	/** Number of workers waiting for a subproblem. Guarded by this */
+	private int idleWorkers = 0;
+	/** Number of splits asked for and not yet answered. Guarded by this */
+	private int unansweredSplits = 0;
+	/** Results so far. Guarded by this */
+	private long solutionCount = 0;
+	private int subproblems = 0;
+	private int splits = 0;
+	/** Why the search failed, if it did. Guarded by this */
+	private IOException failure = null;
+
+	/**
+	 * Creates a coordinator on the loopback address, making
+	 * {@link #defaultInitialSubproblems} subproblems up front
+	 *
+	 * @see #SearchCoordinator(Sudoku, boolean, InetAddress, int, int)
+	 */
+	public SearchCoordinator(Sudoku<S> puzzle, boolean collectSolutions, int port) throws IOException {
+		this(puzzle, collectSolutions, port, defaultInitialSubproblems);
+	}
+
+	/**
+	 * Creates a coordinator on the loopback address
+	 *
+	 * @see #SearchCoordinator(Sudoku, boolean, InetAddress, int, int)
+	 */
+	public SearchCoordinator(Sudoku<S> puzzle, boolean collectSolutions, int port, int initialSubproblems)
+			throws IOException {
+		this(puzzle, collectSolutions, InetAddress.getLoopbackAddress(), port, initialSubproblems);
+	}
+
+	/**
+	 * Creates a coordinator and starts accepting workers. The search does not
+	 * start before {@link #run()} is called
+	 *
+	 * @param puzzle             The sudoku to search. Will not be mutated
+	 * @param collectSolutions   Whether or not to send the solutions back, or just
+	 *                           count them
+	 * @param bindAddress        Address to listen on, or null for every address of
+	 *                           the machine. Workers elsewhere can only connect if
+	 *                           this is not the loopback address
+	 * @param port               Port to listen on, or 0 for any free port
+	 * @param initialSubproblems Number of subproblems to aim for before the search
+	 *                           starts
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 * @throws IOException              If the port could not be listened on
+	 */
+	public SearchCoordinator(Sudoku<S> puzzle, boolean collectSolutions, InetAddress bindAddress, int port,
+			int initialSubproblems) throws IOException {
+		if (!Topology.supports(puzzle)) {
+			throw new IllegalArgumentException("Sudokus with more than 32 symbols can not be searched remotely");
+		}
+
+		empty = new Sudoku<>(puzzle.size(), puzzle.symbols, puzzle.cellGroups);
+		topology = Topology.of(puzzle);
+		this.collectSolutions = collectSolutions;
+
+		if (!puzzle.hasErrors()) {
+			expand(puzzle, initialSubproblems);
+		}
+
+		server = new ServerSocket(port, 0, bindAddress);
+		Thread acceptor = new Thread(this::accept, "search-coordinator-" + server.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/** Port the coordinator listens on */
+	public int port() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Lets the workers search, and waits until every subproblem is done
+	 *
+	 * @return The merged results
+	 *
+	 * @throws IOException          If a worker disconnected in the middle of a
+	 *                              subproblem, or sent garbage, or the coordinator
+	 *                              was closed before the search was over
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public Result<S> run() throws IOException, InterruptedException {
+		List<byte[]> boards;
+		synchronized (this) {
+			started = true;
+			notifyAll();
+
+			while (failure == null && !closed && (inFlight > 0 || !pending.isEmpty())) {
+				wait();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			if (inFlight > 0 || !pending.isEmpty()) {
+				throw new IOException("Coordinator was closed before the search was over");
+			}
+			boards = List.copyOf(solutionBoards);
+		}
+
+		List<Sudoku<S>> solutions = new ArrayList<>(boards.size());
+		for (byte[] board : boards) {
+			solutions.add(SearchProtocol.decode(topology, empty, board));
+		}
+		synchronized (this) {
+			return new Result<>(solutionCount, List.copyOf(solutions), subproblems, splits);
+		}
+	}
+
+	/** Stops accepting workers. Workers already connected are told to shut down */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		server.close();
+	}
+
+	/** Number of workers waiting for a subproblem */
+	synchronized int idleWorkers() {
+		return idleWorkers;
+	}
+
+	/**
+	 * Expands the search tree breadth first until there are enough subproblems,
+	 * or nothing left to expand
+	 */
+	private void expand(Sudoku<S> puzzle, int target) {
+		Deque<Sudoku<S>> frontier = new ArrayDeque<>();
+		List<Sudoku<S>> leaves = new ArrayList<>();
+		frontier.add(new Sudoku<>(puzzle));
+
+		while (!frontier.isEmpty() && frontier.size() + leaves.size() < target) {
+			Sudoku<S> board = frontier.poll();
+			CandidateGrid<S> grid = CandidateGrid.of(board);
+			int cell = grid.mostConstrainedCell();
+
+			// Solutions are left for the workers, so they are counted in one place
+			if (cell == -1) {
+				leaves.add(board);
+				continue;
+			}
+
+			for (S symbol : grid.candidates(cell)) {
+				Sudoku<S> child = new Sudoku<>(board);
+				child.setCellSymbol(cell, symbol);
+				frontier.add(child);
+			}
+		}
+
+		leaves.forEach(board -> pending.add(SearchProtocol.encode(topology, board)));
+		frontier.forEach(board -> pending.add(SearchProtocol.encode(topology, board)));
+	}
+
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				Thread handler = new Thread(() -> serve(socket), "search-worker-" + socket.getRemoteSocketAddress());
+				handler.setDaemon(true);
+				handler.start();
+			} catch (IOException e) {
+				// Closed
+			}
+		}
+	}
+
+	/** Talks to one worker until it is told to shut down or disconnects */
+	private void serve(Socket socket) {
+		boolean busy = false, asked = false;
+
+		try (socket;
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			SearchProtocol.writeJob(out, topology, collectSolutions);
+
+			while (true) {
+				byte tag = in.readByte();
+				switch (tag) {
+				case SearchProtocol.ready -> {
+					byte[] board = take();
+					if (board == null) {
+						out.writeByte(SearchProtocol.shutdown);
+						out.flush();
+						return;
+					}
+					busy = true;
+					out.writeByte(SearchProtocol.task);
+					SearchProtocol.writeBoard(out, board);
+					out.flush();
+				}
+				case SearchProtocol.check -> {
+					asked = shouldSplit();
+					out.writeByte(asked ? SearchProtocol.split : SearchProtocol.carryOn);
+					out.flush();
+				}
+				case SearchProtocol.donate -> {
+					// A split gives away the untried candidates of one cell
+					int count = in.readInt();
+					if (!asked || count < 0 || count >= topology.symbols.size()) {
+						throw new IOException("Unexpected donation of " + count + " boards from worker");
+					}
+					asked = false;
+					List<byte[]> boards = new ArrayList<>(count);
+					for (int i = 0; i < count; i++) {
+						boards.add(SearchProtocol.readBoard(in, topology));
+					}
+					donated(boards);
+				}
+				case SearchProtocol.done -> {
+					long count = in.readLong();
+					int solutions = in.readInt();
+					if (!busy || count < 0 || solutions != (collectSolutions ? count : 0)) {
+						throw new IOException(
+								"Unexpected result of " + count + " solutions and " + solutions + " boards from worker");
+					}
+					// Not sized by the number, which is only trusted as far as boards arrive
+					List<byte[]> boards = new ArrayList<>();
+					for (int i = 0; i < solutions; i++) {
+						boards.add(SearchProtocol.readBoard(in, topology));
+					}
+					busy = false;
+					finished(count, boards);
+				}
+				default -> throw new IOException("Unexpected message " + tag + " from worker");
+				}
+			}
+		} catch (IOException e) {
+			// Losing an idle worker is harmless. Losing a busy one loses its subproblem
+			if (busy) {
+				fail(e);
+			}
+		} catch (RuntimeException e) {
+			fail(new IOException("Worker could not be served", e));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits for a subproblem to give a worker
+	 *
+	 * @return The subproblem, or null if the search is over or the coordinator is
+	 *         closed
+	 */
+	private synchronized byte[] take() throws InterruptedException {
+		idleWorkers++;
+		try {
+			while (failure == null && !closed && (!started || (pending.isEmpty() && inFlight > 0))) {
+				wait();
+			}
+			if (failure != null || closed || pending.isEmpty()) {
+				return null;
+			}
+
+			inFlight++;
+			subproblems++;
+			return pending.poll();
+		} finally {
+			idleWorkers--;
+		}
+	}
+
+	/** Decides whether a worker checking in should give away some of its work */
+	private synchronized boolean shouldSplit() {
+		if (pending.isEmpty() && idleWorkers > unansweredSplits) {
+			unansweredSplits++;
+			splits++;
+			return true;
+		}
+		return false;
+	}
+
+	private synchronized void donated(List<byte[]> boards) {
+		unansweredSplits--;
+		pending.addAll(boards);
+		notifyAll();
+	}
+
+	private synchronized void finished(long count, List<byte[]> boards) {
+		inFlight--;
+		solutionCount += count;
+		solutionBoards.addAll(boards);
+		notifyAll();
+	}
+
+	private synchronized void fail(IOException e) {
+		if (failure == null) {
+			failure = e;
+		}
+		notifyAll();
+	}
+}
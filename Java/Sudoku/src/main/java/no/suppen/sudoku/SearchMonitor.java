@@ -0,0 +1,249 @@
+package no.suppen.sudoku;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts the solutions of a sudoku while reporting how far it has come, for
+ * counts which run for minutes or hours. Progress goes to a listener at a fixed
+ * interval, and the monitor is registered as an MBean, named
+ * {@code no.suppen.sudoku:type=SearchMonitor,id=<n>}, while it counts, so the
+ * search can be watched with any JMX console.
+ *
+ * The share of the search tree done is estimated from the branching factors on
+ * the way down. The root weighs 1, and each node splits its weight evenly
+ * between its branches. Every dead end and every solution adds its weight to
+ * the share done, which reaches 1 when the search is complete. The estimate is
+ * rough when the subtrees differ a lot in size, but it moves steadily, and is
+ * exact once the shallow branches are done.
+ *
+ * The search branches like {@link Solver#countSolutions(Sudoku, long)}, on a
+ * {@link MaskBoard}. A monitor counts once.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class SearchMonitor<S> implements SearchMonitorMBean {
+	/** Nodes between looks at the clock */
+	private static final int clockInterval = 1024;
+	private static final AtomicLong ids = new AtomicLong();
+
+	/**
+	 * A progress report
+	 *
+	 * @param nodes          Number of search nodes visited
+	 * @param solutions      Number of solutions found
+	 * @param fractionDone   Estimated share of the search tree done, from 0 to 1
+	 * @param nodesPerSecond Nodes visited per second since the report before
+	 * @param elapsed        Time since the search started
+	 * @param running        False for the last report, made when the search is
+	 *                       over
+	 */
+	public record Progress(long nodes, long solutions, double fractionDone, double nodesPerSecond,
+			Duration elapsed, boolean running) {
+		/**
+		 * Estimates the time left, assuming the rest of the tree goes as fast as the
+		 * part done so far
+		 *
+		 * @return The estimated time left, or nothing if nothing is done yet
+		 */
+		public Optional<Duration> estimatedRemaining() {
+			if (!running) {
+				return Optional.of(Duration.ZERO);
+			}
+			if (fractionDone <= 0) {
+				return Optional.empty();
+			}
+			return Optional.of(Duration.ofNanos((long) (elapsed.toNanos() * (1 - fractionDone) / fractionDone)));
+		}
+	}
+
+	private final Sudoku<S> puzzle;
+	private final long intervalNanos;
+	private final Consumer<Progress> listener;
+	private final ObjectName name;
+
+	/** The latest report, read by JMX */
+	private volatile Progress latest = new Progress(0, 0, 0, 0, Duration.ZERO, false);
+	private boolean used = false;
+
+	// Search state, only touched by the counting thread
+	private MaskBoard board;
+	private long nodes, solutions;
+	private double done;
+	private long start, lastReport, lastNodes;
+
+	/**
+	 * Creates a monitor for a count
+	 *
+	 * @param puzzle   The sudoku to count the solutions of. Will not be mutated
+	 * @param interval Time between progress reports
+	 * @param listener Gets the progress reports, on the counting thread. Gets a
+	 *                 last report when the count is over
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public SearchMonitor(Sudoku<S> puzzle, Duration interval, Consumer<Progress> listener) {
+		if (!Topology.supports(puzzle)) {
+			throw new IllegalArgumentException("Monitored searches need at most " + Topology.maxSymbols + " symbols");
+		}
+
+		this.puzzle = new Sudoku<>(puzzle);
+		this.intervalNanos = interval.toNanos();
+		this.listener = listener;
+		try {
+			name = new ObjectName("no.suppen.sudoku:type=SearchMonitor,id=" + ids.incrementAndGet());
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Name of the MBean, registered while counting */
+	public ObjectName objectName() {
+		return name;
+	}
+
+	/** The latest progress report */
+	public Progress progress() {
+		return latest;
+	}
+
+	/**
+	 * Counts the solutions, stopping once a limit is reached
+	 *
+	 * @param limit Stop counting when this many solutions have been found
+	 *
+	 * @return The number of solutions, or the limit if there are at least that
+	 *         many
+	 *
+	 * @throws IllegalStateException If this monitor has counted before
+	 */
+	public long count(long limit) {
+		synchronized (this) {
+			if (used) {
+				throw new IllegalStateException("A monitor counts once");
+			}
+			used = true;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register " + name, e);
+		}
+
+		try {
+			start = lastReport = System.nanoTime();
+			latest = new Progress(0, 0, 0, 0, Duration.ZERO, true);
+			long found = 0;
+			if (puzzle.hasErrors()) {
+				done = 1;
+			} else {
+				Topology<S> topology = Topology.of(puzzle);
+				board = new MaskBoard(topology);
+				puzzle.filledCellIndices()
+						.forEach(i -> board.place(i, topology.bitOf(puzzle.getCellSymbol(i).get())));
+				found = search(1, limit);
+			}
+			report(false);
+			return found;
+		} finally {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				// Already gone
+			}
+		}
+	}
+
+	/** Counts below the board, like {@link MaskBoard#countSolutions(long)} */
+	private long search(double weight, long limit) {
+		if (++nodes % clockInterval == 0 && System.nanoTime() - lastReport >= intervalNanos) {
+			report(true);
+		}
+
+		int cell = board.mostConstrainedCell();
+		if (cell == -1) {
+			solutions++;
+			done += weight;
+			return 1;
+		}
+		int options = board.candidates(cell);
+		if (options == 0) {
+			done += weight;
+			return 0;
+		}
+
+		double share = weight / Integer.bitCount(options);
+		long found = 0;
+		for (int rest = options; rest != 0 && found < limit; rest &= rest - 1) {
+			board.place(cell, rest & -rest);
+			found += search(share, limit - found);
+			board.unplace(cell);
+		}
+		return found;
+	}
+
+	private void report(boolean running) {
+		long now = System.nanoTime();
+		double seconds = (now - lastReport) / 1e9;
+		double rate = seconds > 0 ? (nodes - lastNodes) / seconds : 0;
+		lastReport = now;
+		lastNodes = nodes;
+
+		latest = new Progress(nodes, solutions, Math.min(done, 1), rate, Duration.ofNanos(now - start), running);
+		listener.accept(latest);
+	}
+
+	@Override
+	public String getPuzzle() {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < puzzle.size(); i++) {
+			line.append(puzzle.getCellSymbol(i).map(Object::toString).orElse("_"));
+		}
+		return line.toString();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return latest.running();
+	}
+
+	@Override
+	public long getNodes() {
+		return latest.nodes();
+	}
+
+	@Override
+	public long getSolutions() {
+		return latest.solutions();
+	}
+
+	@Override
+	public double getFractionDone() {
+		return latest.fractionDone();
+	}
+
+	@Override
+	public double getNodesPerSecond() {
+		return latest.nodesPerSecond();
+	}
+
+	@Override
+	public long getElapsedMillis() {
+		return latest.elapsed().toMillis();
+	}
+
+	@Override
+	public long getEstimatedMillisRemaining() {
+		return latest.estimatedRemaining().map(Duration::toMillis).orElse(-1L);
+	}
+}
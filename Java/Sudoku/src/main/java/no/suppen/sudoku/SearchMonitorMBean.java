@@ -0,0 +1,31 @@
+package no.suppen.sudoku;
+
+/**
+ * What a {@link SearchMonitor} shows through JMX. The values are those of the
+ * latest progress report, so they move in steps of the report interval
+ */
+public interface SearchMonitorMBean {
+	/** The puzzle being searched, as a line of symbols with '_' for empty cells */
+	String getPuzzle();
+
+	/** Whether or not the search is still going */
+	boolean isRunning();
+
+	/** Number of search nodes visited */
+	long getNodes();
+
+	/** Number of solutions found */
+	long getSolutions();
+
+	/** Estimated share of the search tree done, from 0 to 1 */
+	double getFractionDone();
+
+	/** Nodes visited per second since the report before */
+	double getNodesPerSecond();
+
+	/** Milliseconds since the search started */
+	long getElapsedMillis();
+
+	/** Estimated milliseconds left, or -1 if there is no estimate yet */
+	long getEstimatedMillisRemaining();
+}
@@ -0,0 +1,130 @@
+package no.suppen.sudoku;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Messages passed between a {@link SearchCoordinator} and its
+ * {@link SearchWorker}s. Boards are sent as one byte per cell: 0 for empty
+ * cells, otherwise the symbol's bit number in the {@link Topology} plus one.
+ * Workers never see the actual symbols, only their numbers, so any symbol type
+ * can be searched.
+ *
+ * The coordinator starts by sending the layout of the boards. The worker then
+ * sends {@link #ready}, and gets either a {@link #task} or {@link #shutdown}.
+ * While searching a task, the worker sends {@link #check} every so often, and
+ * gets {@link #carryOn} or {@link #split} back. After a split, it sends the
+ * boards of the branches it gives up with {@link #donate}. When the task is
+ * searched, it sends {@link #done} with the results, and then {@link #ready}
+ * again.
+ */
+final class SearchProtocol {
+	static final byte ready = 1;
+	static final byte task = 2;
+	static final byte shutdown = 3;
+	static final byte check = 4;
+	static final byte carryOn = 5;
+	static final byte split = 6;
+	static final byte donate = 7;
+	static final byte done = 8;
+
+	private SearchProtocol() {
+	}
+
+	/** Sends the layout of the boards, and whether or not solutions are wanted */
+	static void writeJob(DataOutputStream out, Topology<?> topology, boolean collectSolutions) throws IOException {
+		out.writeInt(topology.size);
+		out.writeInt(topology.symbols.size());
+		out.writeInt(topology.groups.length);
+		for (int[] group : topology.groups) {
+			out.writeInt(group.length);
+			for (int i : group) {
+				out.writeInt(i);
+			}
+		}
+		out.writeBoolean(collectSolutions);
+		out.flush();
+	}
+
+	/**
+	 * Reads the layout of the boards
+	 *
+	 * @return An empty sudoku with the layout, using the symbol numbers 0 to n-1
+	 *         as symbols
+	 */
+	static Sudoku<Integer> readLayout(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		int symbolCount = in.readInt();
+		int groupCount = in.readInt();
+
+		Set<Set<Integer>> groups = new HashSet<>();
+		for (int g = 0; g < groupCount; g++) {
+			int length = in.readInt();
+			Set<Integer> group = new HashSet<>();
+			for (int i = 0; i < length; i++) {
+				group.add(in.readInt());
+			}
+			groups.add(group);
+		}
+
+		Set<Integer> symbols = IntStream.range(0, symbolCount).boxed().collect(Collectors.toSet());
+		return new Sudoku<>(size, symbols, groups);
+	}
+
+	static void writeBoard(DataOutputStream out, byte[] board) throws IOException {
+		out.writeInt(board.length);
+		out.write(board);
+	}
+
+	/**
+	 * Reads a board, checking that it fits the layout
+	 *
+	 * @throws IOException If the board has the wrong number of cells, or symbol
+	 *                     numbers the layout does not have
+	 */
+	static byte[] readBoard(DataInputStream in, Topology<?> topology) throws IOException {
+		int length = in.readInt();
+		if (length != topology.size) {
+			throw new IOException("Board of " + length + " cells does not fit " + topology.size + " cells");
+		}
+
+		byte[] board = new byte[length];
+		in.readFully(board);
+		for (byte symbol : board) {
+			if (symbol < 0 || symbol > topology.symbols.size()) {
+				throw new IOException("Symbol number " + symbol + " out of range");
+			}
+		}
+		return board;
+	}
+
+	/** Encodes a board as one byte per cell */
+	static <S> byte[] encode(Topology<S> topology, Sudoku<S> sudoku) {
+		byte[] board = new byte[topology.size];
+		sudoku.filledCellIndices().forEach(i -> {
+			int bit = topology.bitOf(sudoku.getCellSymbol(i).get());
+			board[i] = (byte) (Integer.numberOfTrailingZeros(bit) + 1);
+		});
+		return board;
+	}
+
+	/**
+	 * Decodes a board of one byte per cell onto an empty board. The board must
+	 * have been checked by {@link #readBoard(DataInputStream, Topology)} or made
+	 * by {@link #encode(Topology, Sudoku)}
+	 */
+	static <S> Sudoku<S> decode(Topology<S> topology, Sudoku<S> empty, byte[] board) {
+		Sudoku<S> sudoku = new Sudoku<>(empty);
+		for (int i = 0; i < board.length; i++) {
+			if (board[i] != 0) {
+				sudoku.setCellSymbol(i, topology.symbols.get(board[i] - 1));
+			}
+		}
+		return sudoku;
+	}
+}
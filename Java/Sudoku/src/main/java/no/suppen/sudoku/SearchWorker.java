@@ -0,0 +1,229 @@
+package no.suppen.sudoku;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches subproblems handed out by a {@link SearchCoordinator}. Run it as a
+ * program to put a JVM to work:
+ *
+ * <pre>
+ * java -cp sudoku.jar no.suppen.sudoku.SearchWorker host port [checkInterval]
+ * </pre>
+ *
+ * A worker does not need to know the coordinator's symbols, since boards are
+ * sent as symbol numbers. See {@link SearchProtocol}.
+ */
+public class SearchWorker {
+	/** Default number of search nodes between check-ins with the coordinator */
+	public static final int defaultCheckInterval = 1024;
+
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final int checkInterval;
+
+	/** Empty board with the layout of the job, using symbol numbers as symbols */
+	private final Sudoku<Integer> empty;
+	private final Topology<Integer> topology;
+	private final boolean collectSolutions;
+
+	/** Branching cell and its untried candidates, per depth */
+	private int[] cells = new int[16], untried = new int[16];
+	private int depth;
+
+	private SearchWorker(DataInputStream in, DataOutputStream out, int checkInterval) throws IOException {
+		this.in = in;
+		this.out = out;
+		this.checkInterval = checkInterval;
+
+		empty = SearchProtocol.readLayout(in);
+		topology = Topology.of(empty);
+		collectSolutions = in.readBoolean();
+	}
+
+	/**
+	 * Connects to a coordinator and searches subproblems until told to shut down
+	 *
+	 * @param host          Host of the coordinator
+	 * @param port          Port of the coordinator
+	 * @param checkInterval Number of search nodes between check-ins. Lower values
+	 *                      rebalance sooner, at the cost of more round trips
+	 *
+	 * @return Number of subproblems searched
+	 *
+	 * @throws IOException If the connection fails
+	 */
+	public static int run(String host, int port, int checkInterval) throws IOException {
+		if (checkInterval < 1) {
+			throw new IllegalArgumentException("Check interval must be positive. Got " + checkInterval);
+		}
+
+		try (Socket socket = new Socket(host, port);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			socket.setTcpNoDelay(true);
+			return new SearchWorker(in, out, checkInterval).work();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: SearchWorker host port [checkInterval]");
+			System.exit(2);
+		}
+
+		int checkInterval = args.length > 2 ? Integer.parseInt(args[2]) : defaultCheckInterval;
+		int searched = run(args[0], Integer.parseInt(args[1]), checkInterval);
+		System.out.println("Searched " + searched + " subproblems");
+	}
+
+	private int work() throws IOException {
+		int searched = 0;
+
+		while (true) {
+			out.writeByte(SearchProtocol.ready);
+			out.flush();
+
+			byte tag = in.readByte();
+			if (tag == SearchProtocol.shutdown) {
+				return searched;
+			}
+			if (tag != SearchProtocol.task) {
+				throw new IOException("Unexpected message " + tag + " from coordinator");
+			}
+
+			search(SearchProtocol.decode(topology, empty, SearchProtocol.readBoard(in, topology)));
+			searched++;
+		}
+	}
+
+	/** Searches one subproblem depth first, and reports the results */
+	private void search(Sudoku<Integer> board) throws IOException {
+		List<byte[]> solutions = new ArrayList<>();
+		long count = 0;
+		long nodes = 0;
+		depth = 0;
+
+		while (true) {
+			CandidateGrid<Integer> grid = CandidateGrid.of(board);
+			int cell = grid.mostConstrainedCell();
+
+			// Only candidates are ever placed, so a filled board is a solution
+			if (cell == -1) {
+				count++;
+				if (collectSolutions) {
+					solutions.add(SearchProtocol.encode(topology, board));
+				}
+			}
+
+			int mask = cell == -1 ? 0 : grid.candidateMask(cell);
+			if (mask == 0) {
+				if (!nextSibling(board)) {
+					break;
+				}
+				continue;
+			}
+
+			push(board, cell, mask);
+			if (++nodes % checkInterval == 0) {
+				checkIn(board);
+			}
+		}
+
+		out.writeByte(SearchProtocol.done);
+		out.writeLong(count);
+		out.writeInt(solutions.size());
+		for (byte[] solution : solutions) {
+			SearchProtocol.writeBoard(out, solution);
+		}
+		out.flush();
+	}
+
+	/** Branches on a cell, placing its first candidate */
+	private void push(Sudoku<Integer> board, int cell, int mask) {
+		if (depth == cells.length) {
+			cells = Arrays.copyOf(cells, depth * 2);
+			untried = Arrays.copyOf(untried, depth * 2);
+		}
+
+		int first = mask & -mask;
+		cells[depth] = cell;
+		untried[depth] = mask & ~first;
+		depth++;
+		board.setCellSymbol(cell, topology.symbolOf(first));
+	}
+
+	/**
+	 * Moves to the next untried branch, undoing exhausted ones
+	 *
+	 * @return True if there was an untried branch, false if the subproblem is done
+	 */
+	private boolean nextSibling(Sudoku<Integer> board) {
+		while (depth > 0) {
+			int d = depth - 1;
+			board.clearCellSymbol(cells[d]);
+
+			if (untried[d] != 0) {
+				int next = untried[d] & -untried[d];
+				untried[d] &= ~next;
+				board.setCellSymbol(cells[d], topology.symbolOf(next));
+				return true;
+			}
+			depth--;
+		}
+		return false;
+	}
+
+	/**
+	 * Asks the coordinator whether to carry on. If told to split, gives away the
+	 * untried branches at the shallowest depth which has any, since those are
+	 * likely the largest
+	 */
+	private void checkIn(Sudoku<Integer> board) throws IOException {
+		out.writeByte(SearchProtocol.check);
+		out.flush();
+
+		byte tag = in.readByte();
+		if (tag == SearchProtocol.carryOn) {
+			return;
+		}
+		if (tag != SearchProtocol.split) {
+			throw new IOException("Unexpected message " + tag + " from coordinator");
+		}
+
+		List<byte[]> donated = new ArrayList<>();
+		for (int d = 0; d < depth; d++) {
+			if (untried[d] == 0) {
+				continue;
+			}
+
+			// The board as it was when branching at depth d
+			byte[] base = SearchProtocol.encode(topology, board);
+			for (int deeper = d; deeper < depth; deeper++) {
+				base[cells[deeper]] = 0;
+			}
+
+			for (int rest = untried[d]; rest != 0; rest &= rest - 1) {
+				byte[] sibling = base.clone();
+				sibling[cells[d]] = (byte) (Integer.numberOfTrailingZeros(rest) + 1);
+				donated.add(sibling);
+			}
+			untried[d] = 0;
+			break;
+		}
+
+		out.writeByte(SearchProtocol.donate);
+		out.writeInt(donated.size());
+		for (byte[] sibling : donated) {
+			SearchProtocol.writeBoard(out, sibling);
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,272 @@
+package no.suppen.sudoku;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerates the solutions of a sudoku one at a time, in a fixed order, and can
+ * be stopped and resumed later, even in another process. The search always
+ * branches on the empty cell with the fewest candidates (lowest index on ties),
+ * trying its candidates in {@link Topology} order. That makes the search tree a
+ * function of the puzzle alone, so the position in it is fully described by
+ * which candidate was picked at each branch. This branch path is what
+ * {@link #token()} serializes.
+ *
+ * Cursors are not thread safe.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class SolutionCursor<S> {
+	/** Version of the token format */
+	private static final byte tokenVersion = 1;
+
+	private enum State {
+		/** No solution has been returned yet */
+		FRESH,
+		/** The board holds the last solution returned */
+		POSITIONED,
+		/** Every solution has been returned */
+		DONE
+	}
+
+	/** Board hash of the puzzle, to catch tokens used with the wrong puzzle */
+	private final long puzzleHash;
+	/** The board being searched. Holds the puzzle plus the branches taken */
+	private final Sudoku<S> board;
+	private final Topology<S> topology;
+
+	private State state = State.FRESH;
+	/** Branching cell, its candidates and the picked candidate, per depth */
+	private int[] cells = new int[16], candidates = new int[16], choices = new int[16];
+	private int depth = 0;
+
+	private SolutionCursor(Sudoku<S> puzzle) {
+		puzzleHash = puzzle.boardHash();
+		board = new Sudoku<>(puzzle);
+		topology = Topology.of(puzzle);
+
+		// A sudoku with errors has no solutions
+		if (puzzle.hasErrors()) {
+			state = State.DONE;
+		}
+	}
+
+	/**
+	 * Starts enumerating the solutions of a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param puzzle The sudoku to solve. Will not be mutated
+	 *
+	 * @return A cursor before the first solution
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> SolutionCursor<S> start(Sudoku<S> puzzle) {
+		return new SolutionCursor<>(puzzle);
+	}
+
+	/**
+	 * Resumes enumerating the solutions of a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param puzzle The sudoku the token was made for. Will not be mutated
+	 * @param token  Token from {@link #token()}
+	 *
+	 * @return A cursor right after the last solution returned before the token
+	 *         was made
+	 *
+	 * @throws IllegalArgumentException If the token is malformed or was made for
+	 *                                  another puzzle
+	 */
+	public static <S> SolutionCursor<S> resume(Sudoku<S> puzzle, String token) {
+		SolutionCursor<S> cursor = new SolutionCursor<>(puzzle);
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+			if (in.readByte() != tokenVersion) {
+				throw new IllegalArgumentException("Unknown token version");
+			}
+			State state = State.values()[in.readByte()];
+			if (in.readLong() != cursor.puzzleHash) {
+				throw new IllegalArgumentException("Token was made for another puzzle");
+			}
+			// A sudoku with errors has no solutions, whatever the token says
+			if (cursor.state == State.DONE) {
+				return cursor;
+			}
+
+			if (state == State.POSITIONED) {
+				int length = in.readInt();
+				for (int d = 0; d < length; d++) {
+					cursor.replay(in.readInt());
+				}
+				// The path must end at a solution
+				if (!cursor.board.isFilled()) {
+					throw new IllegalArgumentException("Token does not lead to a solution");
+				}
+			}
+			cursor.state = state;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Malformed token", e);
+		}
+
+		return cursor;
+	}
+
+	/**
+	 * Serializes the cursor's position
+	 *
+	 * @return A short, URL safe string which {@link #resume(Sudoku, String)} turns
+	 *         back into an equivalent cursor
+	 */
+	public String token() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(tokenVersion);
+			out.writeByte(state.ordinal());
+			out.writeLong(puzzleHash);
+			if (state == State.POSITIONED) {
+				out.writeInt(depth);
+				for (int d = 0; d < depth; d++) {
+					out.writeInt(choices[d]);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * Checks whether or not every solution has been returned
+	 *
+	 * @return True if there are no more solutions, false otherwise. A cursor which
+	 *         is not done may still turn out to have no more solutions
+	 */
+	public boolean isDone() {
+		return state == State.DONE;
+	}
+
+	/**
+	 * Finds the next solution
+	 *
+	 * @return The next solution, or nothing if every solution has been returned
+	 */
+	public Optional<Sudoku<S>> next() {
+		if (state == State.DONE) {
+			return Optional.empty();
+		}
+
+		// Step past the last solution returned
+		if (state == State.POSITIONED && !nextSibling()) {
+			state = State.DONE;
+			return Optional.empty();
+		}
+		state = State.POSITIONED;
+
+		while (true) {
+			CandidateGrid<S> grid = CandidateGrid.of(board);
+			int cell = grid.mostConstrainedCell();
+
+			// Only candidates are ever placed, so a filled board is a solution
+			if (cell == -1) {
+				return Optional.of(new Sudoku<>(board));
+			}
+
+			int mask = grid.candidateMask(cell);
+			if (mask == 0) {
+				if (!nextSibling()) {
+					state = State.DONE;
+					return Optional.empty();
+				}
+				continue;
+			}
+
+			push(cell, mask, 0);
+		}
+	}
+
+	/**
+	 * Gets the remaining solutions as a stream. The stream shares this cursor, so
+	 * the cursor's token tells where the stream stopped
+	 *
+	 * @return A lazy stream of the solutions after the current position
+	 */
+	public Stream<Sudoku<S>> stream() {
+		return StreamSupport.stream(new Spliterators.AbstractSpliterator<Sudoku<S>>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super Sudoku<S>> action) {
+				Optional<Sudoku<S>> solution = next();
+				solution.ifPresent(action);
+				return solution.isPresent();
+			}
+		}, false);
+	}
+
+	/** Takes the branch with the given candidate at the next depth, when resuming */
+	private void replay(int choice) {
+		CandidateGrid<S> grid = CandidateGrid.of(board);
+		int cell = grid.mostConstrainedCell();
+		if (cell == -1 || choice < 0 || choice >= grid.candidateCount(cell)) {
+			throw new IllegalArgumentException("Token does not match the puzzle's search tree");
+		}
+		push(cell, grid.candidateMask(cell), choice);
+	}
+
+	/** Branches on a cell, placing its choice'th candidate */
+	private void push(int cell, int mask, int choice) {
+		if (depth == cells.length) {
+			cells = Arrays.copyOf(cells, depth * 2);
+			candidates = Arrays.copyOf(candidates, depth * 2);
+			choices = Arrays.copyOf(choices, depth * 2);
+		}
+
+		cells[depth] = cell;
+		candidates[depth] = mask;
+		choices[depth] = choice;
+		depth++;
+		board.setCellSymbol(cell, topology.symbolOf(SolutionCursor.nthBit(mask, choice)));
+	}
+
+	/**
+	 * Moves to the next untried branch, undoing exhausted ones
+	 *
+	 * @return True if there was an untried branch, false if the search is over
+	 */
+	private boolean nextSibling() {
+		while (depth > 0) {
+			int d = depth - 1;
+			board.clearCellSymbol(cells[d]);
+			choices[d]++;
+
+			if (choices[d] < Integer.bitCount(candidates[d])) {
+				board.setCellSymbol(cells[d], topology.symbolOf(SolutionCursor.nthBit(candidates[d], choices[d])));
+				return true;
+			}
+			depth--;
+		}
+		return false;
+	}
+
+	/** Gets the n'th lowest set bit of a mask */
+	private static int nthBit(int mask, int n) {
+		int rest = mask;
+		for (int i = 0; i < n; i++) {
+			rest &= rest - 1;
+		}
+		return rest & -rest;
+	}
+}
@@ -0,0 +1,332 @@
+package no.suppen.sudoku;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * What the solutions of a sudoku have in common: how often each symbol is in
+ * each cell, and the backbone, the cells which hold the same symbol in every
+ * solution. Found in one pass over the solutions without keeping any of them,
+ * so it works for puzzles with far more solutions than fit in memory.
+ *
+ * The search branches like {@link Solver#countSolutions(Sudoku, long)}, on a
+ * {@link MaskBoard}, where every empty cell is placed by a branch on the way
+ * to each solution. Each branch adds the number of solutions below it to the
+ * frequency of its symbol in its cell, so the tables cost a few operations per
+ * node rather than per cell of every solution. The search can be split into
+ * subproblems which are searched in parallel, like in {@link GridCounter}.
+ *
+ * Tools which only want the backbone can use
+ * {@link #findBackbone(Sudoku, boolean)}, which stops as soon as every empty
+ * cell is known to differ between solutions or to be fixed.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public final class SolutionSpace<S> {
+	/** Number of subproblems to aim for in parallel searches */
+	private static final int targetSubproblems = 1024;
+
+	private final Sudoku<S> puzzle;
+	private final Topology<S> topology;
+	/** Solutions of each symbol index in each cell, at cell * symbols + index */
+	private final long[] frequencies;
+	private final long solutions;
+	private final boolean complete;
+
+	private SolutionSpace(Sudoku<S> puzzle, Topology<S> topology, long[] frequencies, long solutions,
+			boolean complete) {
+		this.puzzle = puzzle;
+		this.topology = topology;
+		this.frequencies = frequencies;
+		this.solutions = solutions;
+		this.complete = complete;
+	}
+
+	/**
+	 * Goes through every solution of a sudoku
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param puzzle The sudoku to analyze. Will not be mutated
+	 *
+	 * @return The frequencies and backbone of all the solutions
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> SolutionSpace<S> analyze(Sudoku<S> puzzle) {
+		return SolutionSpace.analyze(puzzle, false);
+	}
+
+	/**
+	 * Goes through every solution of a sudoku
+	 *
+	 * @param <S>      Type of symbols the sudoku can have
+	 * @param puzzle   The sudoku to analyze. Will not be mutated
+	 * @param parallel Whether to search on all the processors
+	 *
+	 * @return The frequencies and backbone of all the solutions
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> SolutionSpace<S> analyze(Sudoku<S> puzzle, boolean parallel) {
+		if (!Topology.supports(puzzle)) {
+			throw new IllegalArgumentException("Solution spaces need at most " + Topology.maxSymbols + " symbols");
+		}
+
+		Sudoku<S> copy = new Sudoku<>(puzzle);
+		Topology<S> topology = Topology.of(copy);
+		int symbols = topology.symbols.size();
+		long[] frequencies = new long[topology.size * symbols];
+		MaskBoard start = Solver.maskBoard(copy, topology);
+		if (start == null) {
+			return new SolutionSpace<>(copy, topology, frequencies, 0, true);
+		}
+
+		LongAdder solutions = new LongAdder();
+		List<int[]> subproblems = parallel ? SolutionSpace.split(start) : List.of(start.cells.clone());
+		(parallel ? subproblems.parallelStream() : subproblems.stream()).forEach(subproblem -> {
+			long[] local = new long[frequencies.length];
+			MaskBoard board = new MaskBoard(topology);
+			for (int i = 0; i < subproblem.length; i++) {
+				if (subproblem[i] != 0) {
+					board.place(i, subproblem[i]);
+				}
+			}
+
+			long found = SolutionSpace.search(board, symbols, local);
+			if (found == 0) {
+				return;
+			}
+			solutions.add(found);
+			// The givens, and the cells placed when splitting, are in every solution of
+			// the subproblem
+			for (int i = 0; i < subproblem.length; i++) {
+				if (subproblem[i] != 0) {
+					local[i * symbols + Integer.numberOfTrailingZeros(subproblem[i])] += found;
+				}
+			}
+			synchronized (frequencies) {
+				for (int i = 0; i < frequencies.length; i++) {
+					frequencies[i] += local[i];
+				}
+			}
+		});
+
+		return new SolutionSpace<>(copy, topology, frequencies, solutions.sum(), true);
+	}
+
+	/**
+	 * Finds the backbone of a sudoku, going through only as many solutions as it
+	 * takes. Starting from one solution, each empty cell which has only been seen
+	 * with one symbol is searched for a solution with another symbol there. Each
+	 * one found shows every cell it differs in as open, so the search is over
+	 * once every empty cell has been seen with two symbols or searched in vain.
+	 * That takes at most one search per candidate of each empty cell, however
+	 * many solutions there are. A cell which turns out to be fixed costs a failed
+	 * search for each of its other candidates, while an open cell stops at the
+	 * first search which succeeds.
+	 *
+	 * The frequencies are those of the solutions found, so only puzzles with one
+	 * solution give a complete result, see {@link #isComplete()}
+	 *
+	 * @param <S>      Type of symbols the sudoku can have
+	 * @param puzzle   The sudoku to analyze. Will not be mutated
+	 * @param parallel Whether to search the cells on all the processors
+	 *
+	 * @return The backbone, and the frequencies of the solutions found
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> SolutionSpace<S> findBackbone(Sudoku<S> puzzle, boolean parallel) {
+		if (!Topology.supports(puzzle)) {
+			throw new IllegalArgumentException("Solution spaces need at most " + Topology.maxSymbols + " symbols");
+		}
+
+		Sudoku<S> copy = new Sudoku<>(puzzle);
+		Topology<S> topology = Topology.of(copy);
+		int symbols = topology.symbols.size();
+		long[] frequencies = new long[topology.size * symbols];
+		MaskBoard start = Solver.maskBoard(copy, topology);
+		MaskBoard first = start == null ? null : new MaskBoard(start);
+		if (first == null || !first.solve()) {
+			return new SolutionSpace<>(copy, topology, frequencies, 0, true);
+		}
+
+		// Symbols seen in each cell, and the solutions they were seen in
+		AtomicIntegerArray seen = new AtomicIntegerArray(first.cells);
+		Set<List<Integer>> found = ConcurrentHashMap.newKeySet();
+		found.add(Arrays.stream(first.cells).boxed().toList());
+
+		IntStream empties = IntStream.range(0, topology.size).filter(i -> start.cells[i] == 0);
+		(parallel ? empties.parallel() : empties).forEach(cell -> {
+			int known = seen.get(cell);
+			if (Integer.bitCount(known) > 1) {
+				return;
+			}
+
+			for (int rest = start.candidates(cell) & ~known; rest != 0; rest &= rest - 1) {
+				MaskBoard board = new MaskBoard(start);
+				board.place(cell, rest & -rest);
+				if (board.solve()) {
+					found.add(Arrays.stream(board.cells).boxed().toList());
+					for (int i = 0; i < board.cells.length; i++) {
+						seen.getAndAccumulate(i, board.cells[i], (a, b) -> a | b);
+					}
+					return;
+				}
+			}
+		});
+
+		for (List<Integer> solution : found) {
+			for (int i = 0; i < topology.size; i++) {
+				frequencies[i * symbols + Integer.numberOfTrailingZeros(solution.get(i))]++;
+			}
+		}
+		return new SolutionSpace<>(copy, topology, frequencies, found.size(), found.size() == 1);
+	}
+
+	/** Expands the search tree breadth first, until there are enough subproblems */
+	private static List<int[]> split(MaskBoard start) {
+		Deque<int[]> frontier = new ArrayDeque<>();
+		List<int[]> solved = new ArrayList<>();
+		frontier.add(start.cells.clone());
+
+		while (!frontier.isEmpty() && frontier.size() < targetSubproblems) {
+			int[] cells = frontier.poll();
+			MaskBoard board = new MaskBoard(start.topology);
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] != 0) {
+					board.place(i, cells[i]);
+				}
+			}
+
+			int cell = board.mostConstrainedCell();
+			if (cell == -1) {
+				// A solution is its own subproblem, and dead ends are dropped
+				solved.add(cells);
+				continue;
+			}
+			for (int rest = board.candidates(cell); rest != 0; rest &= rest - 1) {
+				int[] child = cells.clone();
+				child[cell] = rest & -rest;
+				frontier.add(child);
+			}
+		}
+		solved.addAll(frontier);
+		return solved;
+	}
+
+	/**
+	 * Counts the solutions below a board, adding them to the frequencies of the
+	 * symbols they have in the cells branched on
+	 */
+	private static long search(MaskBoard board, int symbols, long[] frequencies) {
+		int cell = board.mostConstrainedCell();
+		if (cell == -1) {
+			return 1;
+		}
+
+		long found = 0;
+		for (int rest = board.candidates(cell); rest != 0; rest &= rest - 1) {
+			int bit = rest & -rest;
+			board.place(cell, bit);
+			long below = SolutionSpace.search(board, symbols, frequencies);
+			board.unplace(cell);
+			frequencies[cell * symbols + Integer.numberOfTrailingZeros(bit)] += below;
+			found += below;
+		}
+		return found;
+	}
+
+	/**
+	 * Gets the number of solutions. If not every solution was gone through, only
+	 * those found are counted
+	 */
+	public long solutions() {
+		return solutions;
+	}
+
+	/**
+	 * Gets whether or not every solution was gone through. Searches for the
+	 * backbone only go through them all when there is just one
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Gets the number of solutions with a symbol in a cell
+	 *
+	 * @param index  Index of the cell
+	 * @param symbol The symbol
+	 *
+	 * @return The number of solutions, 0 if the symbol is not one of the
+	 *         sudoku's
+	 */
+	public long frequency(int index, S symbol) {
+		if (!topology.symbols.contains(symbol)) {
+			return 0;
+		}
+		return frequencies[index * topology.symbols.size() + Integer.numberOfTrailingZeros(topology.bitOf(symbol))];
+	}
+
+	/**
+	 * Gets the number of solutions with each symbol in a cell
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return The symbols which are in the cell in any solution, with their
+	 *         number of solutions, in {@link Topology} order
+	 */
+	public Map<S, Long> frequencies(int index) {
+		Map<S, Long> result = new LinkedHashMap<>();
+		for (int i = 0; i < topology.symbols.size(); i++) {
+			long count = frequencies[index * topology.symbols.size() + i];
+			if (count > 0) {
+				result.put(topology.symbols.get(i), count);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the symbol a cell has in every solution, if it has the same one in all
+	 *
+	 * @param index Index of the cell
+	 *
+	 * @return The symbol, or nothing if the cell differs between solutions or
+	 *         there are no solutions
+	 */
+	public Optional<S> fixedSymbol(int index) {
+		Map<S, Long> symbols = frequencies(index);
+		return symbols.size() == 1 ? Optional.of(symbols.keySet().iterator().next()) : Optional.empty();
+	}
+
+	/**
+	 * Gets the backbone, the puzzle with every cell which is the same in all
+	 * solutions filled in
+	 *
+	 * @return A new sudoku, with no cells filled if there are no solutions
+	 */
+	public Sudoku<S> backbone() {
+		Sudoku<S> backbone = new Sudoku<>(topology.size, puzzle.symbols, puzzle.cellGroups);
+		for (int i = 0; i < topology.size; i++) {
+			int cell = i;
+			fixedSymbol(i).ifPresent(symbol -> backbone.setCellSymbol(cell, symbol));
+		}
+		return backbone;
+	}
+}
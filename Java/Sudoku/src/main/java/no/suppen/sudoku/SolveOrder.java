@@ -0,0 +1,267 @@
+package no.suppen.sudoku;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A reproducible order to search in, for benchmarks and tests which must do
+ * the same work on every run. Nothing in the search depends on hash order, so
+ * the same puzzle and order give the same solutions in the same order, after
+ * visiting the same nodes, in every JVM.
+ *
+ * Both orders branch on the empty cell with the fewest candidates, and stop
+ * looking as soon as a cell with at most one candidate is found.
+ * <ul>
+ * <li>{@link #fixed()} looks at the cells in index order, so ties go to the
+ * lowest index, and tries candidates in {@link Topology} order: the symbols'
+ * natural order, or the order of their string forms if they have none. This is
+ * the order of {@link Solver#findSolution(Sudoku)} and {@link SolutionCursor}.
+ * </li>
+ * <li>{@link #seeded(long)} looks at the cells in an order shuffled by the
+ * seed, and tries candidates in an order drawn from a random generator seeded
+ * with it. Different seeds give different trees, which is useful to average a
+ * benchmark over, and the same seed always gives the same tree.</li>
+ * </ul>
+ *
+ * Orders are immutable and thread safe. Each search has its own state.
+ */
+public final class SolveOrder {
+	/**
+	 * Result of a count
+	 *
+	 * @param solutions Number of solutions found, at most the limit
+	 * @param nodes     Number of search nodes visited, the same on every run
+	 */
+	public record Count(long solutions, long nodes) {
+	}
+
+	private static final SolveOrder fixed = new SolveOrder(null);
+
+	/** Seed of the shuffles, or null for the fixed order */
+	private final Long seed;
+
+	private SolveOrder(Long seed) {
+		this.seed = seed;
+	}
+
+	/** Gets the fixed order, with cells by index and candidates by symbol */
+	public static SolveOrder fixed() {
+		return fixed;
+	}
+
+	/**
+	 * Gets a seeded random order
+	 *
+	 * @param seed The seed
+	 *
+	 * @return An order which is the same for the same seed
+	 */
+	public static SolveOrder seeded(long seed) {
+		return new SolveOrder(seed);
+	}
+
+	/**
+	 * Finds all solutions to a sudoku, lazily, in this order
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param puzzle The sudoku to solve. Will not be mutated
+	 *
+	 * @return A sequential stream of the distinct solutions
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public <S> Stream<Sudoku<S>> solve(Sudoku<S> puzzle) {
+		Search<S> search = new Search<>(puzzle);
+		return StreamSupport.stream(new Spliterators.AbstractSpliterator<Sudoku<S>>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super Sudoku<S>> action) {
+				if (!search.next()) {
+					return false;
+				}
+				action.accept(search.solution());
+				return true;
+			}
+		}, false);
+	}
+
+	/**
+	 * Finds the first solution to a sudoku in this order
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param puzzle The sudoku to solve. Will not be mutated
+	 *
+	 * @return The first solution, if there is any
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+		Search<S> search = new Search<>(puzzle);
+		return search.next() ? Optional.of(search.solution()) : Optional.empty();
+	}
+
+	/**
+	 * Counts the solutions of a sudoku, and the nodes it takes, stopping once a
+	 * limit is reached
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param puzzle The sudoku to count the solutions of. Will not be mutated
+	 * @param limit  Stop counting when this many solutions have been found
+	 *
+	 * @return The number of solutions and of nodes visited
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public <S> Count count(Sudoku<S> puzzle, long limit) {
+		Search<S> search = new Search<>(puzzle);
+		long solutions = 0;
+		while (solutions < limit && search.next()) {
+			solutions++;
+		}
+		return new Count(solutions, search.nodes);
+	}
+
+	@Override
+	public String toString() {
+		return seed == null ? "fixed" : "seeded(" + seed + ")";
+	}
+
+	/**
+	 * A depth first search with an explicit stack, so it can stop after each
+	 * solution and go on later
+	 */
+	private final class Search<S> {
+		private final Sudoku<S> puzzle;
+		private final Topology<S> topology;
+		/** The board, or null if the puzzle breaks a rule */
+		private final MaskBoard board;
+		/** Order to look at the cells in */
+		private final int[] cellOrder;
+		private final SplittableRandom random;
+
+		/** Branching cell and untried candidates of each level */
+		private final int[] cells, untried;
+		private int depth = 0;
+		private boolean started = false;
+		long nodes = 0;
+
+		Search(Sudoku<S> puzzle) {
+			if (!Topology.supports(puzzle)) {
+				throw new IllegalArgumentException("Ordered searches need at most " + Topology.maxSymbols + " symbols");
+			}
+
+			this.puzzle = puzzle;
+			topology = Topology.of(puzzle);
+			board = Solver.maskBoard(puzzle, topology);
+			cells = new int[topology.size];
+			untried = new int[topology.size];
+
+			cellOrder = new int[topology.size];
+			for (int i = 0; i < cellOrder.length; i++) {
+				cellOrder[i] = i;
+			}
+			random = seed == null ? null : new SplittableRandom(seed);
+			if (random != null) {
+				for (int i = cellOrder.length - 1; i > 0; i--) {
+					int j = random.nextInt(i + 1), swap = cellOrder[i];
+					cellOrder[i] = cellOrder[j];
+					cellOrder[j] = swap;
+				}
+			}
+		}
+
+		/**
+		 * Moves the board to the next solution
+		 *
+		 * @return False if there are no more
+		 */
+		boolean next() {
+			if (board == null || (started && !advance())) {
+				return false;
+			}
+			started = true;
+
+			while (true) {
+				nodes++;
+				int cell = mostConstrainedCell();
+				if (cell == -1) {
+					return true;
+				}
+
+				cells[depth] = cell;
+				untried[depth++] = board.candidates(cell);
+				if (!advance()) {
+					return false;
+				}
+			}
+		}
+
+		/**
+		 * Places the next untried candidate of the deepest level which has one,
+		 * leaving the levels without any
+		 *
+		 * @return False if every level is out of candidates
+		 */
+		private boolean advance() {
+			while (depth > 0) {
+				int level = depth - 1, cell = cells[level];
+				if (board.cells[cell] != 0) {
+					board.unplace(cell);
+				}
+				if (untried[level] != 0) {
+					int bit = random == null ? untried[level] & -untried[level] : randomBit(untried[level]);
+					untried[level] &= ~bit;
+					board.place(cell, bit);
+					return true;
+				}
+				depth--;
+			}
+			return false;
+		}
+
+		private int mostConstrainedCell() {
+			int best = -1, bestCount = Integer.MAX_VALUE;
+			for (int i : cellOrder) {
+				if (board.cells[i] == 0) {
+					int count = Integer.bitCount(board.candidates(i));
+					if (count < bestCount) {
+						best = i;
+						bestCount = count;
+						if (count <= 1) {
+							break;
+						}
+					}
+				}
+			}
+			return best;
+		}
+
+		/** Picks one of the set bits of a mask, uniformly */
+		private int randomBit(int mask) {
+			int rest = mask;
+			for (int n = random.nextInt(Integer.bitCount(mask)); n > 0; n--) {
+				rest &= rest - 1;
+			}
+			return rest & -rest;
+		}
+
+		/** Copies out the solution the board holds */
+		Sudoku<S> solution() {
+			Sudoku<S> solution = new Sudoku<>(puzzle);
+			for (int i = 0; i < topology.size; i++) {
+				if (solution.cellIsEmpty(i)) {
+					solution.setCellSymbol(i, topology.symbolOf(board.cells[i]));
+				}
+			}
+			return solution;
+		}
+	}
+}
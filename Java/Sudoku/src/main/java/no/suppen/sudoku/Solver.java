@@ -1,24 +1,80 @@
 package no.suppen.sudoku;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Solver {
 	/**
 	 * Finds all solutions to a sudoku
-	 * 
+	 *
 	 * @param <S>   Type of symbols the sudoku can have
 	 * @param sudoku The sudoku to solve. Will not be mutated
-	 * 
-	 * @return A stream of all possible solutions to the sudoku
+	 *
+	 * @return A stream of all possible solutions to the sudoku. To count long
+	 *         streams while seeing how far the count has come, use
+	 *         {@link #countSolutions(Sudoku, long, Duration, Consumer)} instead
 	 */
 	public static <S> Stream<Sudoku<S>> solve(Sudoku<S> sudoku) {
+		return Solver.solve(sudoku, Optional.empty());
+	}
+
+	/**
+	 * Finds all solutions to a sudoku, skipping partial boards which the
+	 * transposition table knows have no solutions. Boards found to have no
+	 * solutions are added to the table
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param sudoku The sudoku to solve. Will not be mutated
+	 * @param table  Transposition table to consult and fill. May be shared with
+	 *               other searches of sudokus with the same cell groups and
+	 *               symbols
+	 *
+	 * @return A stream of all possible solutions to the sudoku
+	 */
+	public static <S> Stream<Sudoku<S>> solve(Sudoku<S> sudoku, TranspositionTable table) {
+		return Solver.solve(sudoku, Optional.of(table));
+	}
+
+	/**
+	 * Finds all solutions to a sudoku in a reproducible order, for benchmarks and
+	 * tests which must do the same work on every run
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param sudoku The sudoku to solve. Will not be mutated
+	 * @param order  Order to pick cells and try candidates in
+	 *
+	 * @return A stream of all possible solutions to the sudoku, in the same order
+	 *         on every run
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> Stream<Sudoku<S>> solve(Sudoku<S> sudoku, SolveOrder order) {
+		return order.solve(sudoku);
+	}
+
+	private static <S> Stream<Sudoku<S>> solve(Sudoku<S> sudoku, Optional<TranspositionTable> table) {
 		// A sudoku with errors has no solutions
 		if (sudoku.hasErrors()) {
 			System.out.println("Error");
 			return Stream.empty();
 		}
 
+		// Skip boards which have been searched before without finding anything
+		long key = sudoku.boardHash();
+		if (table.map(t -> t.isUnsolvable(key)).orElse(false)) {
+			return Stream.empty();
+		}
+
 		// Do not mess with the original
 		Sudoku<S> boardCopy = new Sudoku<>(sudoku);
 
@@ -27,29 +83,351 @@ public class Solver {
 			return Stream.of(boardCopy);
 		}
 
-		// Fill all cells with only one possible candidate
-		boolean changed = boardCopy.emptyCellIndices().anyMatch(i -> {
-			Set<S> candidates = boardCopy.getCandidatesForCell(i);
-			if (candidates.size() == 1) {
-				// Is there an easier way to extract one (the only) element from a set?
-				for (S symbol : candidates) {
-					boardCopy.setCellSymbol(i, symbol);
-				}
-				return true;
-			}
-			return false;
-		});
+		// Fill a cell with only one possible candidate
+		Forced forced = Solver.fillForcedCell(boardCopy);
+		if (forced == Forced.DEAD_END) {
+			table.ifPresent(t -> t.storeExact(key, 0, sudoku.emptyCellCount()));
+			return Stream.empty();
+		}
 
-		// If any cells were filled, keep going with the now more filled sudoku
-		if (changed) {
-			return Solver.solve(boardCopy);
+		// If a cell was filled, keep going with the now more filled sudoku
+		if (forced == Forced.FILLED) {
+			return table.map(t -> Solver.recordOutcome(Solver.solve(boardCopy, table), t, key, sudoku))
+					.orElseGet(() -> Solver.solve(boardCopy, table));
 		}
 
 		// Otherwise brute force is needed
-		return boardCopy.emptyCellIndices().boxed()
+		Stream<Sudoku<S>> solutions = boardCopy.emptyCellIndices().boxed()
 				.flatMap(i -> boardCopy.getCandidatesForCell(i).stream().flatMap(candidate -> {
 					boardCopy.setCellSymbol(i, candidate);
-					return Solver.solve(boardCopy);
+					return Solver.solve(boardCopy, table);
 				}));
+
+		return table.map(t -> Solver.recordOutcome(solutions, t, key, sudoku)).orElse(solutions);
+	}
+
+	/**
+	 * Counts the solutions of a sudoku, stopping once a limit is reached
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param sudoku The sudoku to count the solutions of. Will not be mutated
+	 * @param limit  Stop counting when this many solutions have been found
+	 *
+	 * @return The number of solutions, or the limit if there are at least that
+	 *         many
+	 */
+	public static <S> long countSolutions(Sudoku<S> sudoku, long limit) {
+		return Solver.countSolutions(sudoku, limit, Optional.empty());
+	}
+
+	/**
+	 * Counts the solutions of a sudoku, stopping once a limit is reached. Partial
+	 * boards already in the transposition table are not searched again, and the
+	 * counts of searched partial boards are added to it
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param sudoku The sudoku to count the solutions of. Will not be mutated
+	 * @param limit  Stop counting when this many solutions have been found
+	 * @param table  Transposition table to consult and fill. May be shared with
+	 *               other searches of sudokus with the same cell groups and
+	 *               symbols
+	 *
+	 * @return The number of solutions, or the limit if there are at least that
+	 *         many
+	 */
+	public static <S> long countSolutions(Sudoku<S> sudoku, long limit, TranspositionTable table) {
+		return Solver.countSolutions(sudoku, limit, Optional.of(table));
+	}
+
+	/**
+	 * Counts the solutions of a sudoku, stopping once a limit is reached, and
+	 * reports progress while counting. The count is also visible through JMX
+	 * while it runs, see {@link SearchMonitor}
+	 *
+	 * @param <S>      Type of symbols the sudoku can have
+	 * @param sudoku   The sudoku to count the solutions of. Will not be mutated
+	 * @param limit    Stop counting when this many solutions have been found
+	 * @param interval Time between progress reports
+	 * @param listener Gets the progress reports, on the calling thread
+	 *
+	 * @return The number of solutions, or the limit if there are at least that
+	 *         many
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	public static <S> long countSolutions(Sudoku<S> sudoku, long limit, Duration interval,
+			Consumer<SearchMonitor.Progress> listener) {
+		return new SearchMonitor<>(sudoku, interval, listener).count(limit);
+	}
+
+	private static <S> long countSolutions(Sudoku<S> sudoku, long limit, Optional<TranspositionTable> table) {
+		// Without a table, boards which fit in masks are searched without allocating
+		if (table.isEmpty() && Topology.supports(sudoku)) {
+			Topology<S> topology = Topology.of(sudoku);
+			FixedShape shape = FixedShape.of(topology);
+			if (shape != null) {
+				return shape.countSolutions(topology.cellMasks(sudoku), limit);
+			}
+
+			MaskBoard board = Solver.maskBoard(sudoku, topology);
+			return board == null ? 0 : board.countSolutions(limit);
+		}
+
+		// A sudoku with errors has no solutions
+		if (sudoku.hasErrors()) {
+			return 0;
+		}
+
+		return Solver.searchBelow(new Sudoku<>(sudoku), limit, table, Optional.empty());
+	}
+
+	/**
+	 * Finds one solution to a sudoku. Unlike {@link #solve(Sudoku)}, this only
+	 * branches on one cell at a time, so it never visits the same partial board
+	 * twice. Sudokus with at most {@link Topology#maxSymbols} symbols are
+	 * searched on masks, so only setting up the search and copying out the
+	 * solution allocate memory, and the search nodes do not. Standard 4x4, 6x6,
+	 * 9x9 and 16x16 layouts take the faster {@link FixedShape} path
+	 *
+	 * @param <S>    Type of symbols the sudoku can have
+	 * @param sudoku The sudoku to solve. Will not be mutated
+	 *
+	 * @return A solution to the sudoku, if it has any
+	 */
+	public static <S> Optional<Sudoku<S>> findSolution(Sudoku<S> sudoku) {
+		if (Topology.supports(sudoku)) {
+			Topology<S> topology = Topology.of(sudoku);
+			int[] cells = Solver.firstCompletion(sudoku, topology);
+			if (cells == null) {
+				return Optional.empty();
+			}
+
+			Sudoku<S> solution = new Sudoku<>(sudoku);
+			for (int i = 0; i < topology.size; i++) {
+				if (solution.cellIsEmpty(i)) {
+					solution.setCellSymbol(i, topology.symbolOf(cells[i]));
+				}
+			}
+			return Optional.of(solution);
+		}
+
+		// A sudoku with errors has no solutions
+		if (sudoku.hasErrors()) {
+			return Optional.empty();
+		}
+
+		List<Sudoku<S>> found = new ArrayList<>(1);
+		Solver.searchBelow(new Sudoku<>(sudoku), 1, Optional.empty(), Optional.of(found::add));
+		return found.stream().findFirst();
+	}
+
+	/**
+	 * Finds the first completion of a sudoku, on the fast path for its shape if
+	 * there is one
+	 *
+	 * @param sudoku   The sudoku to complete
+	 * @param topology The sudoku's topology
+	 *
+	 * @return The completed cells as masks, or null if there is no completion
+	 */
+	private static <S> int[] firstCompletion(Sudoku<S> sudoku, Topology<S> topology) {
+		FixedShape shape = FixedShape.of(topology);
+		if (shape != null) {
+			int[] cells = topology.cellMasks(sudoku);
+			return shape.solve(cells) ? cells : null;
+		}
+
+		MaskBoard board = Solver.maskBoard(sudoku, topology);
+		return board != null && board.solve() ? board.cells : null;
+	}
+
+	/**
+	 * Loads a sudoku into masks
+	 *
+	 * @param sudoku   The sudoku to load
+	 * @param topology The sudoku's topology
+	 *
+	 * @return The loaded board, or null if a symbol appears twice in a cell
+	 *         group, as such a sudoku has no solutions
+	 */
+	static <S> MaskBoard maskBoard(Sudoku<S> sudoku, Topology<S> topology) {
+		MaskBoard board = new MaskBoard(topology);
+		for (int i = 0; i < topology.size; i++) {
+			if (sudoku.cellIsFilled(i)) {
+				int bit = topology.bitOf(sudoku.getCellSymbol(i).get());
+				if ((board.candidates(i) & bit) == 0) {
+					return null;
+				}
+				board.place(i, bit);
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Counts the solutions below a valid partial board by trying every candidate
+	 * of the cell with the fewest candidates. The board is restored before
+	 * returning
+	 *
+	 * @param board     The board to search below
+	 * @param limit     Stop searching when this many solutions have been found
+	 * @param table     Transposition table to consult and fill
+	 * @param solutions Receives a copy of each solution found. When given, counts
+	 *                  from the table are not trusted, as they come without the
+	 *                  solutions themselves
+	 *
+	 * @return The number of solutions found, at most the limit
+	 */
+	private static <S> long searchBelow(Sudoku<S> board, long limit, Optional<TranspositionTable> table,
+			Optional<Consumer<Sudoku<S>>> solutions) {
+		long key = board.boardHash();
+		Optional<TranspositionTable.Outcome> known = table.flatMap(t -> t.lookup(key));
+		if (known.isPresent()) {
+			TranspositionTable.Outcome outcome = known.get();
+			if (outcome.isUnsolvable()) {
+				return 0;
+			}
+			if (solutions.isEmpty() && (outcome.exact() || outcome.solutions() >= limit)) {
+				return Math.min(outcome.solutions(), limit);
+			}
+		}
+
+		// Find the empty cell with the fewest candidates
+		int branchIndex = -1;
+		Collection<S> branchCandidates = null;
+		int emptyCells = 0;
+		if (Topology.supports(board)) {
+			CandidateGrid<S> grid = CandidateGrid.of(board);
+			branchIndex = grid.mostConstrainedCell();
+			branchCandidates = branchIndex == -1 ? null : grid.candidates(branchIndex);
+			// Only needed for the table's replacement policy
+			emptyCells = table.isPresent() ? board.emptyCellCount() : 0;
+		} else {
+			for (int i = 0; i < board.size(); i++) {
+				if (board.cellIsFilled(i)) {
+					continue;
+				}
+
+				emptyCells++;
+				Set<S> candidates = board.getCandidatesForCell(i);
+				if (branchCandidates == null || candidates.size() < branchCandidates.size()) {
+					branchIndex = i;
+					branchCandidates = candidates;
+				}
+			}
+		}
+
+		// Only candidates are ever placed, so a filled board is a solution
+		if (branchCandidates == null) {
+			solutions.ifPresent(consumer -> consumer.accept(new Sudoku<>(board)));
+			return 1;
+		}
+
+		long found = 0;
+		for (S candidate : branchCandidates) {
+			board.setCellSymbol(branchIndex, candidate);
+			found += Solver.searchBelow(board, limit - found, table, solutions);
+			if (found >= limit) {
+				break;
+			}
+		}
+		board.clearCellSymbol(branchIndex);
+
+		if (table.isPresent()) {
+			if (found < limit) {
+				table.get().storeExact(key, found, emptyCells);
+			} else {
+				table.get().storeLowerBound(key, found, emptyCells);
+			}
+		}
+
+		return found;
+	}
+
+	/** What happened when looking for a forced cell */
+	private enum Forced {
+		/** A cell with only one possible symbol was filled */
+		FILLED,
+		/** No cell was forced */
+		NONE,
+		/** An empty cell has no possible symbols, so the board has no solutions */
+		DEAD_END
+	}
+
+	/**
+	 * Fills one cell whose symbol is forced: either the cell has only one
+	 * candidate, or it is the only place in a full cell group for a symbol
+	 *
+	 * @param board The board to fill a cell of
+	 *
+	 * @return What was found
+	 */
+	private static <S> Forced fillForcedCell(Sudoku<S> board) {
+		// Boards with too many symbols for masks take the slow path
+		if (!Topology.supports(board)) {
+			boolean changed = board.emptyCellIndices().anyMatch(i -> {
+				Set<S> candidates = board.getCandidatesForCell(i);
+				if (candidates.size() == 1) {
+					board.setCellSymbol(i, candidates.iterator().next());
+					return true;
+				}
+				return false;
+			});
+			return changed ? Forced.FILLED : Forced.NONE;
+		}
+
+		CandidateGrid<S> grid = CandidateGrid.of(board);
+		if (grid.hasDeadCell()) {
+			return Forced.DEAD_END;
+		}
+
+		int nakedSingle = grid.firstNakedSingle();
+		if (nakedSingle != -1) {
+			board.setCellSymbol(nakedSingle, grid.candidates(nakedSingle).get(0));
+			return Forced.FILLED;
+		}
+
+		long hiddenSingle = grid.firstHiddenSingle();
+		if (hiddenSingle != -1) {
+			board.setCellSymbol((int) (hiddenSingle >>> 32), grid.topology.symbolOf((int) hiddenSingle));
+			return Forced.FILLED;
+		}
+
+		return Forced.NONE;
+	}
+
+	/**
+	 * Wraps a stream of solutions below a board, so that the board is recorded as
+	 * unsolvable in the transposition table if the stream runs out without
+	 * producing anything
+	 */
+	private static <S> Stream<Sudoku<S>> recordOutcome(Stream<Sudoku<S>> solutions, TranspositionTable table,
+			long key, Sudoku<S> board) {
+		Spliterator<Sudoku<S>> source = solutions.spliterator();
+		int emptyCells = board.emptyCellCount();
+
+		Spliterator<Sudoku<S>> recording = new Spliterators.AbstractSpliterator<Sudoku<S>>(Long.MAX_VALUE,
+				Spliterator.ORDERED) {
+			private long found = 0;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Sudoku<S>> action) {
+				if (source.tryAdvance(action)) {
+					found++;
+					return true;
+				}
+
+				// Only a stream which has actually run out says anything about the board
+				if (found == 0) {
+					table.storeExact(key, 0, emptyCells);
+				} else {
+					table.storeLowerBound(key, 1, emptyCells);
+				}
+				return false;
+			}
+		};
+
+		return StreamSupport.stream(recording, false).onClose(solutions::close);
 	}
 }
@@ -0,0 +1,297 @@
+package no.suppen.sudoku;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A solver compiled for one layout of givens: the sudoku's topology plus which
+ * cells are filled. Puzzles with the same layout differ only in their digits,
+ * so everything that depends on the layout alone is worked out once:
+ * <ul>
+ * <li>the order to consider the empty cells in, most constrained first</li>
+ * <li>for each empty cell, its empty peers, to propagate placements to</li>
+ * <li>for each empty cell, its given peers, to find its first candidates</li>
+ * <li>the pairs of givens which share a group, to check the givens</li>
+ * </ul>
+ *
+ * Solving a puzzle with a plan then only reads the givens, fills in the first
+ * candidates and searches, with forward checking on the empty peers and the
+ * empty cell with the fewest candidates picked first. Plans are immutable and
+ * can be used by many threads at once.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class SolverPlan<S> {
+	/** Number of plans to keep in the cache of {@link #of(Sudoku)} */
+	private static final int cacheSize = 256;
+
+	private record Key(Topology<?> topology, BitSet givens) {
+	}
+
+	private static final Map<Key, SolverPlan<?>> cache = Collections
+			.synchronizedMap(new LinkedHashMap<Key, SolverPlan<?>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, SolverPlan<?>> eldest) {
+					return size() > cacheSize;
+				}
+			});
+
+	private final Topology<S> topology;
+	/** Cells which are filled in every puzzle of the plan */
+	private final BitSet givens;
+	/** The given cells */
+	private final int[] givenCells;
+	/** The empty cells, in the order to consider them */
+	private final int[] emptyCells;
+	/** Positions in emptyCells of the empty peers of each empty cell */
+	private final int[][] emptyPeers;
+	/** Positions in givenCells of the given peers of each empty cell */
+	private final int[][] givenPeers;
+	/** Pairs of positions in givenCells which share a group */
+	private final int[][] givenConflicts;
+	/** Most narrowed candidates a search can have to undo at once */
+	private final int trailCapacity;
+
+	private SolverPlan(Topology<S> topology, BitSet givens) {
+		this.topology = topology;
+		this.givens = givens;
+		givenCells = givens.stream().toArray();
+
+		// Cells with the most given peers have the fewest candidates to begin with
+		int[] givenPeerCounts = new int[topology.size];
+		for (int i = 0; i < topology.size; i++) {
+			for (int peer : topology.peers[i]) {
+				if (givens.get(peer)) {
+					givenPeerCounts[i]++;
+				}
+			}
+		}
+		emptyCells = IntStream.range(0, topology.size).filter(i -> !givens.get(i)).boxed()
+				.sorted(Comparator.comparingInt((Integer i) -> -givenPeerCounts[i]).thenComparingInt(i -> i))
+				.mapToInt(i -> i).toArray();
+
+		int[] emptyPositions = new int[topology.size];
+		for (int e = 0; e < emptyCells.length; e++) {
+			emptyPositions[emptyCells[e]] = e;
+		}
+		int[] givenPositions = new int[topology.size];
+		for (int g = 0; g < givenCells.length; g++) {
+			givenPositions[givenCells[g]] = g;
+		}
+
+		emptyPeers = new int[emptyCells.length][];
+		givenPeers = new int[emptyCells.length][];
+		for (int e = 0; e < emptyCells.length; e++) {
+			int[] peers = topology.peers[emptyCells[e]];
+			emptyPeers[e] = IntStream.of(peers).filter(p -> !givens.get(p)).map(p -> emptyPositions[p]).toArray();
+			givenPeers[e] = IntStream.of(peers).filter(givens::get).map(p -> givenPositions[p]).toArray();
+		}
+
+		List<int[]> conflicts = new ArrayList<>();
+		for (int g = 0; g < givenCells.length; g++) {
+			for (int peer : topology.peers[givenCells[g]]) {
+				if (peer > givenCells[g] && givens.get(peer)) {
+					conflicts.add(new int[] { g, givenPositions[peer] });
+				}
+			}
+		}
+		givenConflicts = conflicts.toArray(int[][]::new);
+		trailCapacity = Stream.of(emptyPeers).mapToInt(peers -> peers.length).sum();
+	}
+
+	/**
+	 * Gets the plan for a puzzle's layout of givens, from a cache of recently used
+	 * plans, or compiles it
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param puzzle A puzzle with the layout
+	 *
+	 * @return The plan
+	 *
+	 * @throws IllegalArgumentException If the sudoku has too many symbols, see
+	 *                                  {@link Topology#supports(Sudoku)}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <S> SolverPlan<S> of(Sudoku<S> puzzle) {
+		if (!Topology.supports(puzzle)) {
+			throw new IllegalArgumentException("Plans need at most " + Topology.maxSymbols + " symbols");
+		}
+
+		Topology<S> topology = Topology.of(puzzle);
+		BitSet givens = SolverPlan.givens(puzzle);
+		return (SolverPlan<S>) cache.computeIfAbsent(new Key(topology, givens),
+				key -> new SolverPlan<>(topology, givens));
+	}
+
+	/**
+	 * Solves puzzles, sharing plans between puzzles with the same layout of
+	 * givens
+	 *
+	 * @param <S>     Type of symbols in the sudokus
+	 * @param puzzles The puzzles. Will not be mutated
+	 *
+	 * @return A solution to each puzzle, in the same order. Empty for puzzles
+	 *         without solutions
+	 */
+	public static <S> List<Optional<Sudoku<S>>> solveAll(List<Sudoku<S>> puzzles) {
+		List<Optional<Sudoku<S>>> solutions = new ArrayList<>(puzzles.size());
+		SolverPlan<S> plan = null;
+		for (Sudoku<S> puzzle : puzzles) {
+			if (plan == null || !plan.matches(puzzle)) {
+				plan = SolverPlan.of(puzzle);
+			}
+			solutions.add(plan.solve(puzzle));
+		}
+		return solutions;
+	}
+
+	/**
+	 * Checks whether or not a puzzle has this plan's layout of givens
+	 *
+	 * @param puzzle The puzzle to check
+	 *
+	 * @return True if the plan can solve the puzzle, false otherwise
+	 */
+	public boolean matches(Sudoku<S> puzzle) {
+		return puzzle.size() == topology.size && Topology.supports(puzzle) && Topology.of(puzzle).equals(topology)
+				&& SolverPlan.givens(puzzle).equals(givens);
+	}
+
+	/**
+	 * Finds a solution to a puzzle
+	 *
+	 * @param puzzle A puzzle with the plan's layout, see
+	 *               {@link #matches(Sudoku)}. Will not be mutated
+	 *
+	 * @return A solution, or nothing if the puzzle has none
+	 */
+	public Optional<Sudoku<S>> solve(Sudoku<S> puzzle) {
+		Search search = new Search(puzzle);
+		if (!search.consistent || search.count(0, 1) == 0) {
+			return Optional.empty();
+		}
+
+		Sudoku<S> solution = new Sudoku<>(puzzle);
+		for (int e = 0; e < emptyCells.length; e++) {
+			solution.setCellSymbol(emptyCells[e], topology.symbolOf(search.solution[e]));
+		}
+		return Optional.of(solution);
+	}
+
+	/**
+	 * Counts the solutions of a puzzle
+	 *
+	 * @param puzzle A puzzle with the plan's layout, see
+	 *               {@link #matches(Sudoku)}. Will not be mutated
+	 * @param limit  Number of solutions to stop at
+	 *
+	 * @return Number of solutions, at most limit
+	 */
+	public long countSolutions(Sudoku<S> puzzle, long limit) {
+		Search search = new Search(puzzle);
+		return search.consistent ? search.count(0, limit) : 0;
+	}
+
+	private static BitSet givens(Sudoku<?> puzzle) {
+		BitSet givens = new BitSet(puzzle.size());
+		puzzle.filledCellIndices().forEach(givens::set);
+		return givens;
+	}
+
+	/** One search, with its own candidate arrays */
+	private class Search {
+		/** Candidates of each empty cell, by position in emptyCells */
+		final int[] candidates = new int[emptyCells.length];
+		/** Symbol placed in each empty cell, 0 if none */
+		final int[] placed = new int[emptyCells.length];
+		/** The first solution found */
+		final int[] solution = new int[emptyCells.length];
+		/** Peers whose candidates were narrowed, for undoing */
+		final int[] trail = new int[trailCapacity];
+		int trailSize = 0;
+		boolean found = false;
+		final boolean consistent;
+
+		Search(Sudoku<S> puzzle) {
+			int[] givenBits = new int[givenCells.length];
+			for (int g = 0; g < givenCells.length; g++) {
+				givenBits[g] = topology.bitOf(puzzle.getCellSymbol(givenCells[g]).get());
+			}
+
+			boolean ok = true;
+			for (int[] pair : givenConflicts) {
+				ok &= givenBits[pair[0]] != givenBits[pair[1]];
+			}
+
+			for (int e = 0; e < emptyCells.length && ok; e++) {
+				int used = 0;
+				for (int g : givenPeers[e]) {
+					used |= givenBits[g];
+				}
+				candidates[e] = topology.allSymbols & ~used;
+				ok = candidates[e] != 0;
+			}
+			consistent = ok;
+		}
+
+		long count(int filled, long limit) {
+			if (filled == emptyCells.length) {
+				if (!found) {
+					System.arraycopy(placed, 0, solution, 0, placed.length);
+					found = true;
+				}
+				return 1;
+			}
+
+			// The empty cell with the fewest candidates, earliest in plan order on ties
+			int best = -1, bestCount = Integer.MAX_VALUE;
+			for (int e = 0; e < emptyCells.length; e++) {
+				if (placed[e] == 0) {
+					int count = Integer.bitCount(candidates[e]);
+					if (count < bestCount) {
+						best = e;
+						bestCount = count;
+						if (count <= 1) {
+							break;
+						}
+					}
+				}
+			}
+
+			long solutions = 0;
+			for (int rest = candidates[best]; rest != 0 && solutions < limit; rest &= rest - 1) {
+				int bit = rest & -rest;
+				placed[best] = bit;
+
+				// Forward checking: take the symbol from the empty peers
+				int mark = trailSize;
+				boolean dead = false;
+				for (int p : emptyPeers[best]) {
+					if (placed[p] == 0 && (candidates[p] & bit) != 0) {
+						candidates[p] &= ~bit;
+						trail[trailSize++] = p;
+						dead |= candidates[p] == 0;
+					}
+				}
+
+				if (!dead) {
+					solutions += count(filled + 1, limit - solutions);
+				}
+
+				while (trailSize > mark) {
+					candidates[trail[--trailSize]] |= bit;
+				}
+			}
+			placed[best] = 0;
+			return solutions;
+		}
+	}
+}
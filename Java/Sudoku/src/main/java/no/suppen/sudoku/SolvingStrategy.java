@@ -0,0 +1,117 @@
+package no.suppen.sudoku;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A way of finding a solution to a sudoku. Strategies are interchangeable, and
+ * differ only in how fast they are on different kinds of sudokus.
+ */
+public interface SolvingStrategy {
+	/**
+	 * Finds a solution to a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param puzzle The sudoku to solve. Will not be mutated
+	 *
+	 * @return A solution, or nothing if the sudoku has none
+	 */
+	<S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle);
+
+	/**
+	 * Finds a solution to a sudoku, giving up if asked to. Strategies which can
+	 * not give up ignore the check and run to the end
+	 *
+	 * @param <S>       Type of symbols in the sudoku
+	 * @param puzzle    The sudoku to solve. Will not be mutated
+	 * @param cancelled Polled now and then. The strategy may give up once it
+	 *                  returns true
+	 *
+	 * @return A solution, or nothing if the sudoku has none
+	 *
+	 * @throws CancellationException If the strategy gave up
+	 */
+	default <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle, BooleanSupplier cancelled) {
+		return findSolution(puzzle);
+	}
+
+	/** Short name of the strategy, for logs and benchmarks */
+	String name();
+
+	/** Backtracking on the most constrained cell, see {@link Solver#findSolution(Sudoku)} */
+	static SolvingStrategy backtracking() {
+		return new SolvingStrategy() {
+			@Override
+			public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+				return Solver.findSolution(puzzle);
+			}
+
+			@Override
+			public String name() {
+				return "backtracking";
+			}
+		};
+	}
+
+	/**
+	 * Clause learning on the sudoku's {@link Cnf} formula, see
+	 * {@link CdclSolver}. Does well on heavily constrained boards with custom cell
+	 * groups, where backtracking makes the same mistakes over and over
+	 */
+	static SolvingStrategy cdcl() {
+		return new SolvingStrategy() {
+			@Override
+			public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+				return findSolution(puzzle, () -> false);
+			}
+
+			@Override
+			public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle, BooleanSupplier cancelled) {
+				Cnf<S> cnf = Cnf.encode(puzzle);
+				return new CdclSolver(cnf).solve(cancelled).map(cnf::decode);
+			}
+
+			@Override
+			public String name() {
+				return "cdcl";
+			}
+		};
+	}
+
+	/**
+	 * Mask based backtracking on the most constrained cell. Like
+	 * {@link #backtracking()}, but much faster, and it can give up
+	 */
+	static SolvingStrategy mostConstrainedCell() {
+		return new MaskSearchStrategy("cell", MaskSearchStrategy.Branching.CELL, null);
+	}
+
+	/**
+	 * Backtracking on the symbol with the fewest places left in a full group.
+	 * Does well on boards where symbols are pinned down by their groups before
+	 * cells are by their peers
+	 */
+	static SolvingStrategy mostConstrainedGroup() {
+		return new MaskSearchStrategy("group", MaskSearchStrategy.Branching.GROUP, null);
+	}
+
+	/**
+	 * Backtracking on whichever has the fewest options, a cell or the symbol of a
+	 * full group, as Knuth's dancing links does on the exact cover columns
+	 */
+	static SolvingStrategy exactCover() {
+		return new MaskSearchStrategy("exact cover", MaskSearchStrategy.Branching.EXACT_COVER, null);
+	}
+
+	/**
+	 * Backtracking on the most constrained cell, trying candidates in random
+	 * order. The search restarts with a doubled node budget whenever it runs out,
+	 * which gets it out of bad early choices
+	 *
+	 * @param seed Seed of the random order
+	 */
+	static SolvingStrategy randomRestarts(long seed) {
+		return new MaskSearchStrategy("random restarts", MaskSearchStrategy.Branching.CELL, seed);
+	}
+}
@@ -0,0 +1,97 @@
+package no.suppen.sudoku;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Times {@link SolvingStrategy}s against each other on the same sudokus. Run
+ * with the number of rounds as the only argument:
+ *
+ * <pre>
+ * java -cp sudoku.jar no.suppen.sudoku.StrategyBenchmark 20
+ * </pre>
+ *
+ * Prints the median time per strategy and sudoku. The first rounds warm up the
+ * JIT and are not counted.
+ */
+public class StrategyBenchmark {
+	private static final int warmupRounds = 3;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		PortfolioSolver portfolio = PortfolioSolver.standard();
+		List<SolvingStrategy> strategies = List.of(SolvingStrategy.backtracking(), SolvingStrategy.cdcl(),
+				SolvingStrategy.mostConstrainedCell(), SolvingStrategy.mostConstrainedGroup(),
+				SolvingStrategy.exactCover(), SolvingStrategy.randomRestarts(1), portfolio);
+
+		StrategyBenchmark.inputs().forEach((name, puzzle) -> {
+			for (SolvingStrategy strategy : strategies) {
+				long[] times = new long[rounds];
+				for (int r = -warmupRounds; r < rounds; r++) {
+					long start = System.nanoTime();
+					boolean solved = strategy.findSolution(puzzle).map(Sudoku::isSolved).orElse(false);
+					long time = System.nanoTime() - start;
+
+					if (!solved) {
+						throw new IllegalStateException(strategy.name() + " did not solve " + name);
+					}
+					if (r >= 0) {
+						times[r] = time;
+					}
+				}
+
+				Arrays.sort(times);
+				System.out.printf("%-24s %-16s %10.3f ms%n", name, strategy.name(), times[rounds / 2] / 1e6);
+			}
+		});
+
+		System.out.println("Portfolio wins: " + portfolio.wins());
+		portfolio.close();
+	}
+
+	/** The sudokus to time, by name */
+	static Map<String, Sudoku<Integer>> inputs() {
+		Map<String, Sudoku<Integer>> inputs = new LinkedHashMap<>();
+
+		inputs.put("9x9 easy", Sudoku9x9.fromString("""
+				53_ _7_ ___
+				6__ 195 ___
+				_98 ___ _6_
+				8__ _6_ __3
+				4__ 8_3 __1
+				7__ _2_ __6
+				_6_ ___ 28_
+				___ 419 __5
+				___ _8_ _79"""));
+
+		inputs.put("9x9 hard", Sudoku9x9.fromString("""
+				8__ ___ ___
+				__3 6__ ___
+				_7_ _9_ 2__
+				_5_ __7 ___
+				___ _45 7__
+				___ 1__ _3_
+				__1 ___ _68
+				__8 5__ _1_
+				_9_ ___ 4__"""));
+
+		// Both diagonals and the four extra boxes of a windoku as extra groups
+		Set<Set<Integer>> variant = new HashSet<>(Sudoku9x9.cellGroups);
+		variant.add(IntStream.range(0, 9).map(i -> i * 10).boxed().collect(Collectors.toSet()));
+		variant.add(IntStream.range(0, 9).map(i -> i * 8 + 8).boxed().collect(Collectors.toSet()));
+		for (int top : new int[] { 10, 14, 46, 50 }) {
+			variant.add(IntStream.range(0, 9).map(i -> top + i / 3 * 9 + i % 3).boxed().collect(Collectors.toSet()));
+		}
+		inputs.put("9x9 x-windoku empty", new Sudoku<>(Sudoku9x9.size, Sudoku9x9.symbols, variant));
+
+		inputs.put("16x16 empty", GridCounter.standardLayout(4, 4));
+
+		return inputs;
+	}
+}
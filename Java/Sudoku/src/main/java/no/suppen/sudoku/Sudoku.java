@@ -1,12 +1,16 @@
 package no.suppen.sudoku;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Class capable of representing any sudoku with a fixed number of cells, a set
@@ -25,17 +29,62 @@ public class Sudoku<S> {
 	private List<Optional<S>> cells;
 	/** The sudoku's cell groups */
 	public Set<Set<Integer>> cellGroups;
+	/** Hash of the cells' contents, kept up to date as cells are set and cleared */
+	private long boardHash;
+	/**
+	 * Bitset of the empty cells, kept up to date as cells are set and cleared.
+	 * Null for subclasses which store their cells elsewhere
+	 */
+	private long[] emptyCells;
+	/** Number of bits set in emptyCells */
+	private int emptyCount;
 
 	private void construct(int size, Set<S> symbols, Set<Set<Integer>> cellGroups) {
 		// Make a board and fill it with empty cells
 		cells = new ArrayList<Optional<S>>(size);
-		IntStream.range(0, size).forEach(_i -> cells.add(Optional.empty()));
+		for (int i = 0; i < size; i++) {
+			cells.add(Optional.empty());
+		}
 
-		// Store the symbol set
-		this.symbols = symbols;
+		// An empty board hashes to zero
+		boardHash = 0;
+
+		// Every cell starts out empty
+		emptyCells = new long[(size + Long.SIZE - 1) / Long.SIZE];
+		for (int i = 0; i < size; i++) {
+			emptyCells[i / Long.SIZE] |= 1L << i;
+		}
+		emptyCount = size;
+
+		// Copy the symbol set to make it immutable. Immutable sets, like those of the
+		// layout constants and of other boards, copy to themselves, so boards share
+		// them, and Topology.of can find their topology by identity
+		this.symbols = Set.copyOf(symbols);
 
 		// Clone the cell groups to make them immutable
-		this.cellGroups = cellGroups.stream().map(Set::copyOf).collect(Collectors.toSet());
+		this.cellGroups = Sudoku.immutableCopy(cellGroups);
+	}
+
+	/**
+	 * Makes an immutable copy of cell groups. Groups which already are immutable,
+	 * like the layout constants and the groups of other boards, are used as they
+	 * are, so boards share them instead of each having its own copy
+	 *
+	 * @param cellGroups The cell groups to copy
+	 *
+	 * @return Immutable cell groups equal to the given ones
+	 */
+	@SuppressWarnings("unchecked")
+	static Set<Set<Integer>> immutableCopy(Set<Set<Integer>> cellGroups) {
+		if (Topology.isDeeplyImmutable(cellGroups)) {
+			return cellGroups;
+		}
+
+		Set<Integer>[] copies = cellGroups.toArray(Set[]::new);
+		for (int g = 0; g < copies.length; g++) {
+			copies[g] = Set.copyOf(copies[g]);
+		}
+		return Set.of(copies);
 	}
 
 	/**
@@ -62,9 +111,29 @@ public class Sudoku<S> {
 		orig.filledCellIndices().forEach(i -> setCellSymbol(i, orig.getCellSymbol(i).get()));
 	}
 
+	/**
+	 * Creates a sudoku without cells of its own, for subclasses which store their
+	 * cells elsewhere. Such subclasses must override {@link #size()},
+	 * {@link #getCellSymbol(int)}, {@link #setCellSymbol(int, Object)},
+	 * {@link #clearCellSymbol(int)} and {@link #boardHash()}
+	 * 
+	 * @param symbols    Set of possible symbols to have in the cells
+	 * @param cellGroups Cell groups of the board. Must not be changed afterwards,
+	 *                   as they are not copied
+	 */
+	protected Sudoku(Set<S> symbols, Set<Set<Integer>> cellGroups) {
+		this.symbols = symbols;
+		this.cellGroups = cellGroups;
+	}
+
 	@Override
 	public int hashCode() {
-		return Objects.hash(cells, cellGroups, symbols);
+		// Same as the hash code of the list of cells
+		int cellsHash = 1;
+		for (int i = 0; i < size(); i++) {
+			cellsHash = 31 * cellsHash + getCellSymbol(i).hashCode();
+		}
+		return Objects.hash(cellsHash, cellGroups, symbols);
 	}
 
 	@Override
@@ -73,11 +142,17 @@ public class Sudoku<S> {
 			return true;
 		if (obj == null)
 			return false;
-		if (getClass() != obj.getClass())
+		// Subclasses only differ in where the cells are stored
+		if (!(obj instanceof Sudoku))
 			return false;
 		Sudoku<?> other = (Sudoku<?>) obj;
-		return Objects.equals(cells, other.cells) && Objects.equals(cellGroups, other.cellGroups)
-				&& Objects.equals(symbols, other.symbols);
+		if (size() != other.size())
+			return false;
+		for (int i = 0; i < size(); i++) {
+			if (!getCellSymbol(i).equals(other.getCellSymbol(i)))
+				return false;
+		}
+		return Objects.equals(cellGroups, other.cellGroups) && Objects.equals(symbols, other.symbols);
 	}
 
 	/** Number of cells on the board */
@@ -108,7 +183,11 @@ public class Sudoku<S> {
 		}
 
 		// Update the board
+		clearCellSymbol(index);
 		cells.set(index, Optional.of(symbol));
+		boardHash ^= Sudoku.cellHash(index, symbol);
+		emptyCells[index / Long.SIZE] &= ~(1L << index);
+		emptyCount--;
 	}
 
 	/**
@@ -117,7 +196,43 @@ public class Sudoku<S> {
 	 * @param index Index of the cell to clear
 	 */
 	public void clearCellSymbol(int index) {
-		cells.set(index, Optional.empty());
+		Optional<S> symbol = cells.set(index, Optional.empty());
+
+		// Take the old symbol out of the board hash
+		if (symbol.isPresent()) {
+			boardHash ^= Sudoku.cellHash(index, symbol.get());
+			emptyCells[index / Long.SIZE] |= 1L << index;
+			emptyCount++;
+		}
+	}
+
+	/**
+	 * Gets a hash of the cells' contents. It is updated incrementally by
+	 * {@link #setCellSymbol(int, Object)} and {@link #clearCellSymbol(int)}, so
+	 * reading it is free. Two boards with the same symbols in the same cells have
+	 * the same board hash, no matter the order the cells were filled in
+	 * 
+	 * @return 64 bit hash of the cells' contents
+	 */
+	public long boardHash() {
+		return boardHash;
+	}
+
+	/**
+	 * Gets the hash contribution of a symbol in a cell. The board hash is the XOR
+	 * of the contributions of all filled cells
+	 * 
+	 * @param index  Index of the cell
+	 * @param symbol Symbol in the cell
+	 * 
+	 * @return Hash of the symbol being in the cell
+	 */
+	static long cellHash(int index, Object symbol) {
+		// SplitMix64 step, to spread the bits of the index and symbol hash
+		long hash = (((long) index << 32) ^ (symbol.hashCode() & 0xFFFFFFFFL)) + 0x9E3779B97F4A7C15L;
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
 	}
 
 	/**
@@ -139,6 +254,10 @@ public class Sudoku<S> {
 	 * @return True if the cell is empty, false otherwise
 	 */
 	public boolean cellIsEmpty(int index) {
+		if (emptyCells != null) {
+			Objects.checkIndex(index, size());
+			return (emptyCells[index / Long.SIZE] & 1L << index) != 0;
+		}
 		return getCellSymbol(index).isEmpty();
 	}
 
@@ -199,7 +318,7 @@ public class Sudoku<S> {
 	 * @return Stream of indices of all empty cells on the board
 	 */
 	public IntStream emptyCellIndices() {
-		return cellIndices().filter(this::cellIsEmpty);
+		return StreamSupport.intStream(emptyCellSpliterator(), false);
 	}
 
 	/**
@@ -208,12 +327,50 @@ public class Sudoku<S> {
 	 * @returns Stream of incides of all filled cells on the board
 	 */
 	public IntStream filledCellIndices() {
-		return cellIndices().filter(this::cellIsFilled);
+		return StreamSupport.intStream(filledCellSpliterator(), false);
+	}
+
+	/**
+	 * Gets a spliterator over the indices of the empty cells, in ascending order.
+	 * It knows its exact size, and splits into halves of the board, so
+	 * {@code StreamSupport.intStream(spliterator, true)} spreads the cells evenly
+	 * over threads. The empty cells are read when the spliterator is first used,
+	 * and changes to the board after that are not seen
+	 * 
+	 * @return A new spliterator
+	 */
+	public Spliterator.OfInt emptyCellSpliterator() {
+		if (emptyCells == null) {
+			return cellIndices().filter(this::cellIsEmpty).spliterator();
+		}
+		return new CellSpliterator(this, true);
+	}
+
+	/**
+	 * Gets a spliterator over the indices of the filled cells, in ascending order
+	 * 
+	 * @return A new spliterator
+	 * 
+	 * @see #emptyCellSpliterator()
+	 */
+	public Spliterator.OfInt filledCellSpliterator() {
+		if (emptyCells == null) {
+			return cellIndices().filter(this::cellIsFilled).spliterator();
+		}
+		return new CellSpliterator(this, false);
+	}
+
+	/** Number of empty cells on the board */
+	public int emptyCellCount() {
+		if (emptyCells == null) {
+			return (int) cellIndices().filter(this::cellIsEmpty).count();
+		}
+		return emptyCount;
 	}
 
 	/** Checks whether or not all cells on the board has been filled */
 	public boolean isFilled() {
-		return emptyCellIndices().count() == 0;
+		return emptyCellCount() == 0;
 	}
 
 	/**
@@ -247,4 +404,141 @@ public class Sudoku<S> {
 	public boolean isSolved() {
 		return isFilled() && !hasErrors();
 	}
+
+	/**
+	 * Spliterator over the set bits of a snapshot of a board's empty cell bitset,
+	 * or of its complement. Splits happen on word boundaries, and each part counts
+	 * its bits, so every part knows its exact size
+	 */
+	private static final class CellSpliterator implements Spliterator.OfInt {
+		/** The board to take the snapshot of, until it is taken */
+		private final Sudoku<?> board;
+		private final boolean empty;
+		/** The snapshot. Shared by the parts of a split, and never changed */
+		private long[] words;
+		/** Range of cells left, from next inclusive to end exclusive */
+		private int next, end;
+		private long remaining;
+
+		CellSpliterator(Sudoku<?> board, boolean empty) {
+			this.board = board;
+			this.empty = empty;
+			this.next = 0;
+			this.end = board.size();
+		}
+
+		private CellSpliterator(long[] words, int next, int end) {
+			this.board = null;
+			this.empty = true;
+			this.words = words;
+			this.next = next;
+			this.end = end;
+			this.remaining = count(next, end);
+		}
+
+		/** Takes the snapshot, if it has not been taken yet */
+		private void bind() {
+			if (words != null) {
+				return;
+			}
+
+			words = board.emptyCells.clone();
+			if (!empty) {
+				for (int w = 0; w < words.length; w++) {
+					words[w] = ~words[w];
+				}
+				if (end % Long.SIZE != 0) {
+					words[words.length - 1] &= (1L << end) - 1;
+				}
+			}
+			remaining = empty ? board.emptyCount : end - board.emptyCount;
+		}
+
+		/** Counts the set bits from one cell, inclusive, to another, exclusive */
+		private long count(int from, int to) {
+			long count = 0;
+			for (int w = from / Long.SIZE; w * Long.SIZE < to; w++) {
+				long word = words[w];
+				if (w == from / Long.SIZE) {
+					word &= -1L << from;
+				}
+				if ((w + 1) * Long.SIZE > to) {
+					word &= (1L << to) - 1;
+				}
+				count += Long.bitCount(word);
+			}
+			return count;
+		}
+
+		/** Finds the first set bit from a cell, or end if there is none */
+		private int nextSetBit(int from) {
+			if (from >= end) {
+				return end;
+			}
+			int w = from / Long.SIZE;
+			long word = words[w] & -1L << from;
+			while (word == 0) {
+				if (++w * Long.SIZE >= end) {
+					return end;
+				}
+				word = words[w];
+			}
+			return Math.min(end, w * Long.SIZE + Long.numberOfTrailingZeros(word));
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			bind();
+			int index = nextSetBit(next);
+			if (index == end) {
+				next = end;
+				return false;
+			}
+			next = index + 1;
+			remaining--;
+			action.accept(index);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			bind();
+			for (int index = nextSetBit(next); index < end; index = nextSetBit(index + 1)) {
+				action.accept(index);
+			}
+			next = end;
+			remaining = 0;
+		}
+
+		@Override
+		public Spliterator.OfInt trySplit() {
+			bind();
+			int middle = (next + end) / 2 / Long.SIZE * Long.SIZE;
+			if (middle <= next) {
+				return null;
+			}
+
+			CellSpliterator prefix = new CellSpliterator(words, next, middle);
+			next = middle;
+			remaining -= prefix.remaining;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			bind();
+			return remaining;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | SORTED | SIZED | SUBSIZED | NONNULL;
+		}
+
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			// Natural order
+			return null;
+		}
+	}
 }
@@ -0,0 +1,356 @@
+package no.suppen.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Array based description of a sudoku's layout, derived from its size, symbols
+ * and cell groups. Symbols are numbered, so a set of symbols can be stored as
+ * an int mask with one bit per symbol, and cell groups are stored as arrays of
+ * cell indices. This is what the mask based parts of the solver work on.
+ *
+ * Topologies are immutable and cached, so sudokus with equal layouts usually
+ * share one topology. The cache only keeps the layouts used most recently, so
+ * topologies must be compared with {@link #equals(Object)}, not by identity.
+ *
+ * @param <S> Type of symbols in the sudoku
+ */
+public class Topology<S> {
+	/** Largest number of symbols a topology can have, as masks are ints */
+	public static final int maxSymbols = Integer.SIZE;
+
+	/** Number of topologies to keep in the cache of {@link #of(Sudoku)} */
+	private static final int cacheSize = 256;
+
+	/**
+	 * Cache of topologies, keyed by size, symbols and cell groups. The least
+	 * recently used are dropped, so layouts made on the fly, like those workers
+	 * get from a coordinator, do not pile up
+	 */
+	private static final Map<List<Object>, Topology<?>> cache = Collections
+			.synchronizedMap(new LinkedHashMap<List<Object>, Topology<?>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, Topology<?>> eldest) {
+					return size() > cacheSize;
+				}
+			});
+
+	/**
+	 * The last topology looked up for immutable sets, found again by identity
+	 * without hashing the sets
+	 */
+	private record Recent(int size, Set<?> symbols, Set<Set<Integer>> cellGroups, Topology<?> topology) {
+	}
+
+	private static volatile Recent recent = new Recent(-1, null, null, null);
+
+	/** Number of cells */
+	public final int size;
+	/** The symbols, in bit order */
+	public final List<S> symbols;
+	/** Mask with a bit set for every symbol */
+	public final int allSymbols;
+	/** The cells of each cell group */
+	public final int[][] groups;
+	/** The cell groups of each cell */
+	public final int[][] cellGroups;
+	/** The cells linked to each cell, excluding the cell itself */
+	public final int[][] peers;
+	/** Whether or not each group has exactly one cell per symbol */
+	public final boolean[] fullGroups;
+
+	/**
+	 * Cell groups of each cell, position by position: cellGroupsByPosition[k][i]
+	 * is the k'th group of cell i. Cells in fewer groups are padded with the
+	 * phantom group index {@code groups.length}
+	 */
+	public final int[][] cellGroupsByPosition;
+	/**
+	 * Cells of each group, position by position: groupCellsByPosition[p][g] is
+	 * the p'th cell of group g. Groups with fewer cells are padded with the
+	 * phantom cell index {@code size}
+	 */
+	public final int[][] groupCellsByPosition;
+
+	/** Bit index of each symbol */
+	private final Map<S, Integer> symbolBits;
+
+	private Topology(int size, Set<S> symbols, Set<Set<Integer>> cellGroups) {
+		if (symbols.size() > maxSymbols) {
+			throw new IllegalArgumentException(
+					"Topologies support at most " + maxSymbols + " symbols. Got " + symbols.size());
+		}
+
+		this.size = size;
+		this.symbols = List.copyOf(Topology.ordered(symbols));
+		this.allSymbols = symbols.size() == Integer.SIZE ? -1 : (1 << symbols.size()) - 1;
+
+		symbolBits = new HashMap<>();
+		for (int bit = 0; bit < this.symbols.size(); bit++) {
+			symbolBits.put(this.symbols.get(bit), bit);
+		}
+
+		// Plain loops rather than streams, as this runs on the first solve of a cold
+		// JVM, where the stream machinery costs more to load than the work itself
+
+		// Sort the groups, so the numbering does not depend on set iteration order
+		groups = new int[cellGroups.size()][];
+		int groupIndex = 0;
+		for (Set<Integer> group : cellGroups) {
+			int[] cells = new int[group.size()];
+			int k = 0;
+			for (int i : group) {
+				cells[k++] = i;
+			}
+			Arrays.sort(cells);
+			groups[groupIndex++] = cells;
+		}
+		Arrays.sort(groups, Arrays::compare);
+
+		// Invert the groups
+		int[] groupCounts = new int[size];
+		for (int[] group : groups) {
+			for (int i : group) {
+				groupCounts[i]++;
+			}
+		}
+		this.cellGroups = new int[size][];
+		for (int i = 0; i < size; i++) {
+			this.cellGroups[i] = new int[groupCounts[i]];
+			groupCounts[i] = 0;
+		}
+		for (int g = 0; g < groups.length; g++) {
+			for (int i : groups[g]) {
+				this.cellGroups[i][groupCounts[i]++] = g;
+			}
+		}
+
+		// Union of the groups of each cell
+		peers = new int[size][];
+		boolean[] isPeer = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			int count = 0;
+			for (int g : this.cellGroups[i]) {
+				for (int j : groups[g]) {
+					if (j != i && !isPeer[j]) {
+						isPeer[j] = true;
+						count++;
+					}
+				}
+			}
+			peers[i] = new int[count];
+			int k = 0;
+			for (int j = 0; j < size; j++) {
+				if (isPeer[j]) {
+					peers[i][k++] = j;
+					isPeer[j] = false;
+				}
+			}
+		}
+
+		fullGroups = new boolean[groups.length];
+		for (int g = 0; g < groups.length; g++) {
+			fullGroups[g] = groups[g].length == this.symbols.size();
+		}
+
+		// Transposed and padded tables, for working on many cells or groups at once
+		int maxGroupsPerCell = 0;
+		for (int[] groupsOfCell : this.cellGroups) {
+			maxGroupsPerCell = Math.max(maxGroupsPerCell, groupsOfCell.length);
+		}
+		cellGroupsByPosition = new int[maxGroupsPerCell][size];
+		for (int k = 0; k < maxGroupsPerCell; k++) {
+			for (int i = 0; i < size; i++) {
+				cellGroupsByPosition[k][i] = k < this.cellGroups[i].length ? this.cellGroups[i][k] : groups.length;
+			}
+		}
+
+		int maxGroupSize = 0;
+		for (int[] group : groups) {
+			maxGroupSize = Math.max(maxGroupSize, group.length);
+		}
+		groupCellsByPosition = new int[maxGroupSize][groups.length];
+		for (int p = 0; p < maxGroupSize; p++) {
+			for (int g = 0; g < groups.length; g++) {
+				groupCellsByPosition[p][g] = p < groups[g].length ? groups[g][p] : size;
+			}
+		}
+	}
+
+	/**
+	 * Gets the topology of a sudoku
+	 *
+	 * @param <S>    Type of symbols in the sudoku
+	 * @param sudoku The sudoku to get the topology of
+	 *
+	 * @return The sudoku's topology
+	 *
+	 * @throws IllegalArgumentException If the sudoku has more than
+	 *                                  {@link #maxSymbols} symbols
+	 */
+	@SuppressWarnings("unchecked")
+	public static <S> Topology<S> of(Sudoku<S> sudoku) {
+		// Boards made from the same layout constants share the very same sets
+		Recent last = recent;
+		if (last.symbols == sudoku.symbols && last.cellGroups == sudoku.cellGroups && last.size == sudoku.size()) {
+			return (Topology<S>) last.topology;
+		}
+
+		Topology<?> topology = cache.get(List.of(sudoku.size(), sudoku.symbols, sudoku.cellGroups));
+		if (topology == null) {
+			// The sudoku's sets may be changed later, so the cache gets its own copies
+			List<Object> key = List.of(sudoku.size(), Set.copyOf(sudoku.symbols),
+					Sudoku.immutableCopy(sudoku.cellGroups));
+			topology = cache.computeIfAbsent(key,
+					_key -> new Topology<>(sudoku.size(), sudoku.symbols, sudoku.cellGroups));
+		}
+
+		// Mutable sets could change behind an identity match
+		if (Topology.isImmutable(sudoku.symbols) && Topology.isDeeplyImmutable(sudoku.cellGroups)) {
+			recent = new Recent(sudoku.size(), sudoku.symbols, sudoku.cellGroups, topology);
+		}
+		return (Topology<S>) topology;
+	}
+
+	/** Checks whether a set is one of the JDK's immutable sets, which copy to themselves */
+	static boolean isImmutable(Set<?> set) {
+		return Set.copyOf(set) == set;
+	}
+
+	/** Checks whether a set of sets and all its members are immutable */
+	static boolean isDeeplyImmutable(Set<? extends Set<?>> sets) {
+		if (!Topology.isImmutable(sets)) {
+			return false;
+		}
+		for (Set<?> set : sets) {
+			if (!Topology.isImmutable(set)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether or not a sudoku can be described by a topology
+	 *
+	 * @param sudoku The sudoku to check
+	 *
+	 * @return True if the sudoku has few enough symbols, false otherwise
+	 */
+	public static boolean supports(Sudoku<?> sudoku) {
+		return sudoku.symbols.size() <= maxSymbols;
+	}
+
+	/** Number of cell groups */
+	public int groupCount() {
+		return groups.length;
+	}
+
+	/**
+	 * Gets the bit of a symbol
+	 *
+	 * @param symbol The symbol to get the bit of
+	 *
+	 * @return Mask with only the symbol's bit set
+	 */
+	public int bitOf(S symbol) {
+		return 1 << symbolBits.get(symbol);
+	}
+
+	/**
+	 * Gets the symbol of a single bit mask
+	 *
+	 * @param mask Mask with exactly one bit set
+	 *
+	 * @return The symbol of the bit
+	 */
+	public S symbolOf(int mask) {
+		return symbols.get(Integer.numberOfTrailingZeros(mask));
+	}
+
+	/**
+	 * Gets the symbols of a mask
+	 *
+	 * @param mask Mask of symbols
+	 *
+	 * @return The symbols of the set bits, in bit order
+	 */
+	public List<S> symbolsOf(int mask) {
+		List<S> result = new ArrayList<>(Integer.bitCount(mask));
+		for (int rest = mask; rest != 0; rest &= rest - 1) {
+			result.add(symbolOf(rest & -rest));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the cells of a sudoku as masks
+	 *
+	 * @param sudoku The sudoku to get the cells of. Must have this topology
+	 *
+	 * @return Array with one more entry than the sudoku has cells. Filled cells
+	 *         hold the bit of their symbol, empty cells and the final phantom
+	 *         cell hold 0
+	 */
+	public int[] cellMasks(Sudoku<S> sudoku) {
+		int[] masks = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			Optional<S> symbol = sudoku.getCellSymbol(i);
+			if (symbol.isPresent()) {
+				masks[i] = bitOf(symbol.get());
+			}
+		}
+		return masks;
+	}
+
+	/**
+	 * Orders symbols by their natural order if they have one, and by their string
+	 * forms otherwise, so bit numbering is the same from run to run. Sets made by
+	 * {@link Set#of} iterate in an order which changes between runs, so it must
+	 * not leak through
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static <S> List<S> ordered(Set<S> symbols) {
+		List<S> list = new ArrayList<>(symbols);
+		boolean comparable = true;
+		for (S symbol : list) {
+			comparable &= symbol instanceof Comparable;
+		}
+		if (comparable) {
+			try {
+				list.sort((Comparator) Comparator.naturalOrder());
+				return list;
+			} catch (ClassCastException e) {
+				// Mutually incomparable symbols
+			}
+		}
+		list.sort(Comparator.comparing(String::valueOf));
+		return list;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(size, symbols, Arrays.deepHashCode(groups));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Topology<?> other = (Topology<?>) obj;
+		return size == other.size && Objects.equals(symbols, other.symbols) && Arrays.deepEquals(groups, other.groups);
+	}
+}
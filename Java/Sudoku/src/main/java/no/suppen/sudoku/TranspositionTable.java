@@ -0,0 +1,244 @@
+package no.suppen.sudoku;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread safe memo of search outcomes, keyed by
+ * {@link Sudoku#boardHash()}. The solver stores what it learned about a
+ * partial board ("no solutions", "at least k solutions" or "exactly k
+ * solutions"), and prunes the subtree immediately when it reaches the same
+ * board again, possibly through a different assignment order or on another
+ * thread.
+ *
+ * The table never grows. Each key maps to a bucket of two slots: one keeps the
+ * outcome with the most empty cells (the most expensive one to recompute), the
+ * other is always overwritten by the newest outcome. Buckets are spread over a
+ * fixed number of locks, so threads working on different parts of the search
+ * tree rarely wait for each other.
+ */
+public class TranspositionTable {
+	/** What is known about the number of solutions below a board */
+	public static record Outcome(long solutions, boolean exact) {
+		/**
+		 * Checks whether or not the board is known to have no solutions
+		 *
+		 * @return True if the board is known to be unsolvable, false otherwise
+		 */
+		public boolean isUnsolvable() {
+			return exact && solutions == 0;
+		}
+	}
+
+	/** Approximate number of bytes used per entry */
+	public static final int bytesPerEntry = 2 * Long.BYTES;
+
+	/** Number of locks the buckets are spread over */
+	private static final int stripes = 64;
+
+	/** Bit marking a slot as occupied */
+	private static final long occupiedBit = 1L;
+	/** Bit marking an outcome as exact, as opposed to a lower bound */
+	private static final long exactBit = 1L << 1;
+	/** Position and width of the empty cell count in a packed entry */
+	private static final int workShift = 2, workBits = 16;
+	/** Position of the solution count in a packed entry */
+	private static final int solutionsShift = workShift + workBits;
+	/** Largest solution count which can be stored. Larger counts are stored as lower bounds */
+	private static final long maxSolutions = (1L << (Long.SIZE - solutionsShift)) - 1;
+
+	/** Board hashes of the slots. Slot 2n is depth preferred, 2n+1 always replaced */
+	private final long[] keys;
+	/** Packed outcomes of the slots */
+	private final long[] entries;
+	/** Mask turning a hash into a bucket index */
+	private final int bucketMask;
+	/** Locks guarding the buckets */
+	private final Object[] locks;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a new, empty transposition table
+	 *
+	 * @param capacity Maximum number of outcomes to keep. Rounded up to a power
+	 *                 of two. Each entry takes {@link #bytesPerEntry} bytes
+	 */
+	public TranspositionTable(int capacity) {
+		if (capacity < 2 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Capacity must be between 2 and 2^30. Got " + capacity);
+		}
+
+		int slots = Integer.highestOneBit(capacity - 1) << 1;
+		keys = new long[slots];
+		entries = new long[slots];
+		bucketMask = slots / 2 - 1;
+
+		locks = new Object[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Creates a transposition table using at most the given amount of memory
+	 *
+	 * @param bytes Maximum number of bytes for the entries
+	 *
+	 * @return A new, empty transposition table
+	 */
+	public static TranspositionTable withMemoryLimit(long bytes) {
+		long capacity = Math.max(2, Math.min(bytes / bytesPerEntry, 1 << 30));
+		// Round down, so the limit is respected
+		return new TranspositionTable((int) Long.highestOneBit(capacity));
+	}
+
+	/** Maximum number of outcomes the table can hold */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Looks up what is known about a board
+	 *
+	 * @param key Board hash of the board
+	 *
+	 * @return The stored outcome, if any
+	 */
+	public Optional<Outcome> lookup(long key) {
+		int bucket = bucket(key);
+		long entry = 0;
+
+		synchronized (locks[bucket & (stripes - 1)]) {
+			for (int slot = 2 * bucket; slot < 2 * bucket + 2; slot++) {
+				if (keys[slot] == key && entries[slot] != 0) {
+					entry = entries[slot];
+					break;
+				}
+			}
+		}
+
+		if (entry == 0) {
+			misses.increment();
+			return Optional.empty();
+		}
+
+		hits.increment();
+		return Optional.of(new Outcome(entry >>> solutionsShift, (entry & exactBit) != 0));
+	}
+
+	/**
+	 * Checks whether or not a board is known to have no solutions
+	 *
+	 * @param key Board hash of the board
+	 *
+	 * @return True if the board is known to be unsolvable, false otherwise
+	 */
+	public boolean isUnsolvable(long key) {
+		return lookup(key).map(Outcome::isUnsolvable).orElse(false);
+	}
+
+	/**
+	 * Stores the exact number of solutions below a board
+	 *
+	 * @param key        Board hash of the board
+	 * @param solutions  Number of solutions
+	 * @param emptyCells Number of empty cells on the board. Used to decide which
+	 *                   outcomes to keep when the table is full
+	 */
+	public void storeExact(long key, long solutions, int emptyCells) {
+		store(key, solutions, solutions <= maxSolutions, emptyCells);
+	}
+
+	/**
+	 * Stores a lower bound for the number of solutions below a board
+	 *
+	 * @param key        Board hash of the board
+	 * @param solutions  The board has at least this many solutions
+	 * @param emptyCells Number of empty cells on the board. Used to decide which
+	 *                   outcomes to keep when the table is full
+	 */
+	public void storeLowerBound(long key, long solutions, int emptyCells) {
+		store(key, solutions, false, emptyCells);
+	}
+
+	private void store(long key, long solutions, boolean exact, int emptyCells) {
+		int bucket = bucket(key);
+		int depthSlot = 2 * bucket, newestSlot = depthSlot + 1;
+		long entry = pack(solutions, exact, emptyCells);
+
+		synchronized (locks[bucket & (stripes - 1)]) {
+			// Refine an existing outcome for the same board
+			for (int slot = depthSlot; slot <= newestSlot; slot++) {
+				if (keys[slot] == key && entries[slot] != 0) {
+					entries[slot] = merge(entries[slot], entry);
+					return;
+				}
+			}
+
+			// Keep the most expensive outcome in the depth preferred slot, and move the
+			// one it replaces to the always replaced slot
+			if (entries[depthSlot] == 0 || work(entry) >= work(entries[depthSlot])) {
+				keys[newestSlot] = keys[depthSlot];
+				entries[newestSlot] = entries[depthSlot];
+				keys[depthSlot] = key;
+				entries[depthSlot] = entry;
+			} else {
+				keys[newestSlot] = key;
+				entries[newestSlot] = entry;
+			}
+		}
+	}
+
+	/** Removes all outcomes from the table */
+	public void clear() {
+		for (int stripe = 0; stripe < stripes; stripe++) {
+			synchronized (locks[stripe]) {
+				for (int bucket = stripe; bucket <= bucketMask; bucket += stripes) {
+					entries[2 * bucket] = 0;
+					entries[2 * bucket + 1] = 0;
+				}
+			}
+		}
+	}
+
+	/** Number of lookups which found an outcome */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/** Number of lookups which did not find an outcome */
+	public long misses() {
+		return misses.sum();
+	}
+
+	private int bucket(long key) {
+		// The low bits of the board hash are well mixed already
+		return (int) key & bucketMask;
+	}
+
+	private static long pack(long solutions, boolean exact, int emptyCells) {
+		return (Math.min(solutions, maxSolutions) << solutionsShift)
+				| ((long) Math.min(emptyCells, (1 << workBits) - 1) << workShift) | (exact ? exactBit : 0)
+				| occupiedBit;
+	}
+
+	private static int work(long entry) {
+		return (int) (entry >>> workShift) & ((1 << workBits) - 1);
+	}
+
+	/**
+	 * Combines two outcomes for the same board. An exact count beats a lower
+	 * bound, and a higher lower bound beats a lower one
+	 */
+	private static long merge(long old, long fresh) {
+		if ((old & exactBit) != 0) {
+			return old;
+		}
+		if ((fresh & exactBit) != 0 || (fresh >>> solutionsShift) > (old >>> solutionsShift)) {
+			return fresh;
+		}
+		return old;
+	}
+}
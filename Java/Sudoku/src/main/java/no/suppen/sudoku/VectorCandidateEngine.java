@@ -0,0 +1,94 @@
+package no.suppen.sudoku;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Candidate engine working on many cells or groups at once, using the
+ * incubating vector API. Lanes are cells when finding candidates, and groups
+ * when finding used and hidden symbols, using the topology's transposed tables
+ * to gather the masks.
+ *
+ * Only use this through {@link CandidateEngine#best()}, which checks that the
+ * vector module is present before loading this class.
+ */
+public class VectorCandidateEngine implements CandidateEngine {
+	private final VectorSpecies<Integer> species = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public void groupUsed(Topology<?> topology, int[] cellMasks, int[] groupUsed) {
+		int groups = topology.groups.length;
+
+		for (int g = 0; g < groups; g += species.length()) {
+			VectorMask<Integer> inRange = species.indexInRange(g, groups);
+
+			IntVector used = IntVector.zero(species);
+			for (int[] cells : topology.groupCellsByPosition) {
+				used = used.or(IntVector.fromArray(species, cellMasks, 0, cells, g, inRange));
+			}
+			used.intoArray(groupUsed, g, inRange);
+		}
+		groupUsed[groups] = 0;
+	}
+
+	@Override
+	public void candidates(Topology<?> topology, int[] cellMasks, int[] groupUsed, int[] candidates) {
+		int size = topology.size;
+
+		for (int i = 0; i < size; i += species.length()) {
+			VectorMask<Integer> inRange = species.indexInRange(i, size);
+
+			IntVector used = IntVector.zero(species);
+			for (int[] groups : topology.cellGroupsByPosition) {
+				used = used.or(IntVector.fromArray(species, groupUsed, 0, groups, i, inRange));
+			}
+
+			// Filled cells have no candidates
+			VectorMask<Integer> filled = IntVector.fromArray(species, cellMasks, i, inRange)
+					.compare(VectorOperators.NE, 0);
+			used.not().and(topology.allSymbols).blend(0, filled).intoArray(candidates, i, inRange);
+		}
+		candidates[size] = 0;
+	}
+
+	@Override
+	public void hiddenSymbols(Topology<?> topology, int[] candidates, int[] groupUsed, int[] hidden) {
+		int groups = topology.groups.length;
+		int symbolCount = topology.symbols.size();
+
+		for (int g = 0; g < groups; g += species.length()) {
+			VectorMask<Integer> inRange = species.indexInRange(g, groups);
+
+			// Full groups have exactly one cell per symbol, so only those positions matter
+			IntVector once = IntVector.zero(species), twice = IntVector.zero(species);
+			for (int p = 0; p < symbolCount && p < topology.groupCellsByPosition.length; p++) {
+				IntVector cell = IntVector.fromArray(species, candidates, 0, topology.groupCellsByPosition[p], g,
+						inRange);
+				twice = twice.or(once.and(cell));
+				once = once.or(cell);
+			}
+
+			IntVector result = once.and(twice.not()).and(IntVector.fromArray(species, groupUsed, g, inRange).not());
+			for (int lane = 0; lane < species.length() && g + lane < groups; lane++) {
+				hidden[g + lane] = topology.fullGroups[g + lane] ? result.lane(lane) : 0;
+			}
+		}
+	}
+
+	@Override
+	public void bitCounts(int[] masks, int[] counts, int length) {
+		for (int i = 0; i < length; i += species.length()) {
+			VectorMask<Integer> inRange = species.indexInRange(i, length);
+
+			// Classic SWAR population count, lane by lane
+			IntVector v = IntVector.fromArray(species, masks, i, inRange);
+			v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(0x55555555));
+			v = v.and(0x33333333).add(v.lanewise(VectorOperators.LSHR, 2).and(0x33333333));
+			v = v.add(v.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F);
+			v = v.mul(0x01010101).lanewise(VectorOperators.LSHR, 24);
+			v.intoArray(counts, i, inRange);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package no.suppen.sudoku;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Gets a JVM ready to solve sudokus quickly. The first solve in a fresh JVM is
+ * slow, as the classes have to be loaded and the code starts out interpreted.
+ * {@link #run(int)} solves a few puzzles with the common entry points, so that
+ * the cost is paid before the first real request rather than during it.
+ *
+ * {@link #main(String[])} is also the training run for the class data sharing
+ * archive made by the Maven build. Starting the JVM with
+ * {@code -XX:SharedArchiveFile=target/sudoku.jsa} and the same jar on the class
+ * path then loads the classes from the archive instead of parsing and
+ * verifying them.
+ */
+public class Warmup {
+	/** Number of rounds run by {@link #run()} */
+	public static final int defaultRounds = 200;
+
+	private static final String puzzle9x9 = """
+			53_ _7_ ___
+			6__ 195 ___
+			_98 ___ _6_
+
+			8__ _6_ __3
+			4__ 8_3 __1
+			7__ _2_ __6
+
+			_6_ ___ 28_
+			___ 419 __5
+			___ _8_ _79""";
+
+	private Warmup() {
+	}
+
+	/** Warms up with the default number of rounds */
+	public static void run() {
+		Warmup.run(defaultRounds);
+	}
+
+	/**
+	 * Warms up by solving, counting and validating puzzles
+	 *
+	 * @param rounds Number of times to go through the puzzles. A couple of hundred
+	 *               rounds gets the hot paths compiled
+	 */
+	public static void run(int rounds) {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzle9x9);
+		Sudoku<Integer> empty6x6 = Sudoku6x6.empty();
+		String line = Sudoku9x9.toString(puzzle);
+		PuzzleValidator validator = new PuzzleValidator();
+
+		for (int round = 0; round < rounds; round++) {
+			Solver.findSolution(puzzle);
+			Solver.countSolutions(puzzle, 2);
+			Solver.findSolution(empty6x6);
+			SolverPlan.of(puzzle).solve(puzzle);
+			validator.verdict(line);
+		}
+	}
+
+	/**
+	 * Reports the time to the first solve, then warms up
+	 *
+	 * @param args Optionally the number of warm-up rounds
+	 */
+	public static void main(String[] args) {
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		long solveStart = System.nanoTime();
+		Solver.findSolution(Sudoku9x9.fromString(puzzle9x9));
+		long solveTime = System.nanoTime() - solveStart;
+
+		System.out.printf("Time to first solve: %d ms since JVM start, of which %.1f ms solving%n",
+				System.currentTimeMillis() - jvmStart, solveTime / 1e6);
+
+		Warmup.run(args.length > 0 ? Integer.parseInt(args[0]) : defaultRounds);
+	}
+}
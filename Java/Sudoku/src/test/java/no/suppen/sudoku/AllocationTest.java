@@ -0,0 +1,112 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Guards the allocation free search of {@link Solver}. The bytes allocated by
+ * the test thread are measured around each call, taking the least of several
+ * runs so that a stray allocation by the JIT compiler does not count.
+ */
+class AllocationTest {
+	/** Bytes a 9x9 solve may allocate, for copying in and out of the search */
+	private static final long solveBudget = 4 * 1024;
+	/** Bytes a search with far more nodes may allocate beyond an easy one */
+	private static final long nodeSlack = 256;
+	private static final int runs = 20;
+
+	private static final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	// Takes tens of thousands of nodes for the search
+	private final String hardStr = """
+					8__ ___ ___
+					__3 6__ ___
+					_7_ _9_ 2__
+
+					_5_ __7 ___
+					___ _45 7__
+					___ 1__ _3_
+
+					__1 ___ _68
+					__8 5__ _1_
+					_9_ ___ 4__""";
+
+	@BeforeAll
+	static void checkSupport() {
+		assumeTrue(threads.isThreadAllocatedMemorySupported(), "The JVM does not count allocated bytes");
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/** Gets the least number of bytes allocated by any of several runs */
+	private static long allocatedBytes(Runnable action) {
+		long thread = Thread.currentThread().getId();
+		long least = Long.MAX_VALUE;
+		for (int run = 0; run < runs; run++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			action.run();
+			least = Math.min(least, threads.getThreadAllocatedBytes(thread) - before);
+		}
+		return least;
+	}
+
+	@Test
+	final void testFindSolution() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(hardStr);
+		Warmup.run(20);
+
+		long bytes = allocatedBytes(() -> Solver.findSolution(puzzle));
+		assertTrue(bytes <= solveBudget, "A solve allocated " + bytes + " bytes");
+	}
+
+	@Test
+	final void testCountSolutions() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(hardStr);
+		Warmup.run(20);
+
+		long bytes = allocatedBytes(() -> Solver.countSolutions(puzzle, 2));
+		assertTrue(bytes <= solveBudget, "A count allocated " + bytes + " bytes");
+	}
+
+	@Test
+	final void testNodesDoNotAllocate() {
+		// The hard puzzle visits many more nodes, but should cost about the same
+		Sudoku<Integer> easy = Sudoku9x9.fromString(puzzleStr);
+		Sudoku<Integer> hard = Sudoku9x9.fromString(hardStr);
+		Warmup.run(20);
+
+		long easyBytes = allocatedBytes(() -> Solver.countSolutions(easy, 2));
+		long hardBytes = allocatedBytes(() -> Solver.countSolutions(hard, 2));
+		assertTrue(hardBytes <= easyBytes + nodeSlack,
+				"Easy count allocated " + easyBytes + " bytes, hard count " + hardBytes);
+	}
+
+	@Test
+	final void testSixteenBySixteen() {
+		Sudoku<Integer> empty = GridCounter.standardLayout(4, 4);
+		Warmup.run(20);
+
+		// Four times the cells of a 9x9 board, so four times the budget
+		long bytes = allocatedBytes(() -> Solver.findSolution(empty));
+		assertTrue(bytes <= 4 * solveBudget, "A 16x16 solve allocated " + bytes + " bytes");
+	}
+}
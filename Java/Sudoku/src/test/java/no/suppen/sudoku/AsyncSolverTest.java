@@ -0,0 +1,115 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+class AsyncSolverTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	@Test
+	final void testResults() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+			assertEquals(Solver.findSolution(puzzle), AsyncSolver.solveAsync(puzzle, executor).get());
+			assertEquals(1, AsyncSolver.countSolutionsAsync(puzzle, 2, executor).get());
+			assertEquals(1000, AsyncSolver.countSolutionsAsync(Sudoku9x9.empty(), 1000, executor).get());
+
+			PuzzleValidator.Validation validation = AsyncSolver.validateAsync(puzzleStr, executor).get();
+			assertEquals(PuzzleValidator.Verdict.UNIQUE, validation.verdict());
+			assertEquals(PuzzleValidator.Verdict.MALFORMED, AsyncSolver.validateAsync("12", executor).get().verdict());
+
+			Sudoku<Integer> broken = Sudoku9x9.fromString(puzzleStr);
+			broken.setCellSymbol(2, 5);
+			assertEquals(Optional.empty(), AsyncSolver.solveAsync(broken, executor).get());
+			assertEquals(0, AsyncSolver.countSolutionsAsync(broken, 2, executor).get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	final void testNothingOnTheCallingThread() {
+		// An executor which only queues tasks
+		Deque<Runnable> queued = new ArrayDeque<>();
+		CompletableFuture<Optional<Sudoku<Integer>>> solution = AsyncSolver
+				.solveAsync(Sudoku9x9.fromString(puzzleStr), queued::add);
+		CompletableFuture<Long> count = AsyncSolver.countSolutionsAsync(Sudoku9x9.empty(), 10, queued::add);
+		assertFalse(solution.isDone());
+		assertFalse(count.isDone());
+
+		// Tasks cancelled before they start do nothing
+		count.cancel(true);
+		queued.forEach(Runnable::run);
+		assertTrue(solution.join().get().isSolved());
+		assertTrue(count.isCancelled());
+	}
+
+	@Test
+	final void testCancelReachesTheSearch() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// Counting every 16x16 grid takes forever
+			CompletableFuture<Long> count = AsyncSolver.countSolutionsAsync(GridCounter.standardLayout(4, 4),
+					Long.MAX_VALUE, executor);
+			Thread.sleep(50);
+			assertTrue(count.cancel(true));
+			assertThrows(CancellationException.class, count::join);
+
+			// The thread is free again
+			assertEquals(1, AsyncSolver.countSolutionsAsync(Sudoku9x9.fromString(puzzleStr), 2, executor).get(10,
+					TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	final void testTimeoutReachesTheSearch() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<Optional<Sudoku<Integer>>> solution = AsyncSolver
+					.solveAsync(GridCounter.standardLayout(5, 5), executor).orTimeout(50, TimeUnit.MILLISECONDS);
+			ExecutionException e = assertThrows(ExecutionException.class, solution::get);
+			assertInstanceOf(TimeoutException.class, e.getCause());
+
+			assertTrue(AsyncSolver.solveAsync(Sudoku9x9.fromString(puzzleStr), executor).get(10, TimeUnit.SECONDS)
+					.isPresent());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	final void testRejected() {
+		CompletableFuture<Long> count = AsyncSolver.countSolutionsAsync(Sudoku9x9.empty(), 1, task -> {
+			throw new RejectedExecutionException("Full");
+		});
+		ExecutionException e = assertThrows(ExecutionException.class, count::get);
+		assertInstanceOf(RejectedExecutionException.class, e.getCause());
+	}
+}
@@ -0,0 +1,105 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class BatchSolver9x9Test {
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	@Test
+	final void testSolve() {
+		Sudoku<Integer> solved = Sudoku9x9.fromString(solvedStr);
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+
+		Sudoku<Integer> invalid = Sudoku9x9.fromString(puzzleStr);
+		invalid.setCellSymbol(0, 1);
+		invalid.setCellSymbol(1, 1);
+
+		Sudoku<Integer> ambiguous = Sudoku9x9.fromString(puzzleStr);
+		ambiguous.clearCellSymbol(79);
+		ambiguous.clearCellSymbol(80);
+
+		// A batch size which does not divide the number of puzzles
+		BatchSolver9x9 solver = new BatchSolver9x9(3);
+		List<Optional<Sudoku<Integer>>> solutions = solver
+				.solve(List.of(puzzle, invalid, solved, ambiguous, Sudoku9x9.empty()));
+
+		assertEquals(Optional.of(solved), solutions.get(0));
+		assertEquals(Optional.empty(), solutions.get(1));
+		assertEquals(Optional.of(solved), solutions.get(2));
+
+		// Puzzles with several solutions get one of them
+		Set<Sudoku<Integer>> ambiguousSolutions = Solver.solve(ambiguous).collect(Collectors.toSet());
+		assertTrue(ambiguousSolutions.contains(solutions.get(3).get()));
+		assertTrue(solutions.get(4).get().isSolved());
+
+		// Only the last two needed search
+		assertEquals(2, solver.searched());
+
+		// The puzzles are not changed
+		assertEquals(Sudoku9x9.fromString(puzzleStr), puzzle);
+	}
+
+	@Test
+	final void testSolveDigits() {
+		Sudoku<Integer> solved = Sudoku9x9.fromString(solvedStr);
+		String digits = Sudoku9x9.toString(Sudoku9x9.fromString(puzzleStr));
+
+		// Many copies of the same puzzle
+		int count = 100;
+		byte[] puzzles = new byte[count * Sudoku9x9.size];
+		for (int i = 0; i < puzzles.length; i++) {
+			char c = digits.charAt(i % Sudoku9x9.size);
+			puzzles[i] = (byte) (c == '_' ? 0 : c - '0');
+		}
+
+		byte[] solutions = new byte[puzzles.length];
+		assertEquals(count, new BatchSolver9x9(64).solve(puzzles, solutions, count));
+
+		List<Integer> expected = new ArrayList<>();
+		solved.cellIndices().forEach(i -> expected.add(solved.getCellSymbol(i).get()));
+		for (int p = 0; p < count; p++) {
+			for (int i = 0; i < Sudoku9x9.size; i++) {
+				assertEquals(expected.get(i), (int) solutions[p * Sudoku9x9.size + i]);
+			}
+		}
+	}
+
+	@Test
+	final void testNonStandard() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new BatchSolver9x9(1).solve(List.of(Sudoku6x6.empty())));
+		assertThrows(IllegalArgumentException.class, () -> new BatchSolver9x9(0));
+	}
+}
@@ -0,0 +1,131 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class BoardArenaTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	@Test
+	final void testStoreAndLoad() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		BoardArena<Integer> arena = new BoardArena<>(puzzle, 10);
+
+		int handle = arena.allocate(puzzle);
+		assertEquals(1, arena.live());
+
+		// The view and the loaded copy are equal to the original
+		ArenaSudoku<Integer> view = arena.view(handle);
+		assertEquals(puzzle, view);
+		assertEquals(puzzle.hashCode(), view.hashCode());
+		assertEquals(puzzle.boardHash(), view.boardHash());
+		assertEquals(puzzle, arena.load(handle));
+		assertFalse(arena.load(handle) instanceof ArenaSudoku);
+	}
+
+	@Test
+	final void testViewWritesInPlace() {
+		BoardArena<Integer> arena = new BoardArena<>(Sudoku9x9.empty(), 10);
+		int first = arena.allocate();
+		int second = arena.allocate();
+
+		ArenaSudoku<Integer> view = arena.view(first);
+		Sudoku<Integer> expected = Sudoku9x9.empty();
+
+		view.setCellSymbol(40, 5);
+		expected.setCellSymbol(40, 5);
+		view.setCellSymbol(40, 6);
+		expected.setCellSymbol(40, 6);
+		view.setCellSymbol(0, 1);
+		view.clearCellSymbol(0);
+
+		assertEquals(Optional.of(6), view.getCellSymbol(40));
+		assertEquals(expected, view);
+		assertEquals(expected.boardHash(), view.boardHash());
+		assertEquals(expected, arena.view(first));
+
+		// Other boards are not affected
+		assertEquals(Sudoku9x9.empty(), view.moveTo(second));
+		assertEquals(second, view.handle());
+
+		assertThrows(InvalidSymbolException.class, () -> view.setCellSymbol(0, 10));
+	}
+
+	@Test
+	final void testSolveView() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		BoardArena<Integer> arena = new BoardArena<>(puzzle, 1);
+
+		// Views work anywhere a sudoku does
+		ArenaSudoku<Integer> view = arena.view(arena.allocate(puzzle));
+		assertEquals(Solver.findSolution(puzzle), Solver.findSolution(view));
+		assertFalse(view.hasErrors());
+	}
+
+	@Test
+	final void testAllocateAndFree() {
+		BoardArena<Integer> arena = new BoardArena<>(Sudoku6x6.empty(), 4);
+
+		int[] handles = new int[4];
+		arena.allocate(handles, 3);
+		assertEquals(3, arena.live());
+		assertThrows(IllegalStateException.class, () -> arena.allocate(handles, 2));
+
+		// Freed boards are reused, and come back empty
+		arena.view(handles[1]).setCellSymbol(0, 1);
+		arena.free(handles[1]);
+		assertEquals(2, arena.live());
+		assertEquals(handles[1], arena.allocate());
+		assertEquals(Sudoku6x6.empty(), arena.view(handles[1]));
+
+		arena.allocate();
+		assertThrows(IllegalStateException.class, () -> arena.allocate());
+
+		arena.free(handles, 3);
+		assertEquals(1, arena.live());
+		arena.freeAll();
+		assertEquals(0, arena.live());
+		assertTrue(arena.offHeapBytes() > 0);
+	}
+
+	@Test
+	final void testBadFrees() {
+		BoardArena<Integer> arena = new BoardArena<>(Sudoku6x6.empty(), 4);
+		int first = arena.allocate();
+		int second = arena.allocate();
+
+		// Handles never given out
+		assertThrows(IndexOutOfBoundsException.class, () -> arena.free(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> arena.free(2));
+		assertThrows(IndexOutOfBoundsException.class, () -> arena.free(4));
+
+		// Freeing twice would give the board to two owners
+		arena.free(first);
+		assertThrows(IllegalStateException.class, () -> arena.free(first));
+		assertEquals(1, arena.live());
+		assertEquals(first, arena.allocate());
+		assertNotEquals(first, arena.allocate());
+
+		// Allocated again, the board can be freed again
+		arena.free(first);
+		arena.free(second);
+		assertEquals(1, arena.live());
+
+		arena.freeAll();
+		assertThrows(IndexOutOfBoundsException.class, () -> arena.free(first));
+	}
+}
@@ -0,0 +1,103 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CandidateGridTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	private final String puzzle6x6Str = """
+					_1_ 643
+					___ 125
+
+					_4_ 256
+					6__ ___
+
+					__6 __4
+					45_ 362""";
+
+	@Test
+	final void testCandidatesMatchSudoku() {
+		for (Sudoku<Integer> sudoku : List.of(Sudoku9x9.fromString(puzzleStr), Sudoku6x6.fromString(puzzle6x6Str),
+				Sudoku9x9.empty())) {
+			CandidateGrid<Integer> grid = CandidateGrid.of(sudoku);
+
+			sudoku.cellIndices().forEach(i -> {
+				Set<Integer> expected = sudoku.cellIsEmpty(i) ? sudoku.getCandidatesForCell(i) : Set.of();
+				assertEquals(expected, new HashSet<>(grid.candidates(i)));
+				assertEquals(expected.size(), grid.candidateCount(i));
+			});
+		}
+	}
+
+	@Test
+	final void testSingles() {
+		Sudoku<Integer> sudoku = Sudoku9x9.fromString(puzzleStr);
+		CandidateGrid<Integer> grid = CandidateGrid.of(sudoku);
+
+		// The first naked single is the first cell with exactly one candidate
+		int nakedSingle = grid.firstNakedSingle();
+		assertEquals(sudoku.emptyCellIndices().filter(i -> sudoku.getCandidatesForCell(i).size() == 1).findFirst()
+				.orElse(-1), nakedSingle);
+
+		// The hidden single's symbol can only go in its cell, in one of the cell's groups
+		long hiddenSingle = grid.firstHiddenSingle();
+		assertNotEquals(-1, hiddenSingle);
+		int index = (int) (hiddenSingle >>> 32);
+		int symbol = grid.topology.symbolOf((int) hiddenSingle);
+		assertTrue(sudoku.getCandidatesForCell(index).contains(symbol));
+		assertTrue(Sudoku9x9.cellGroups.stream().filter(group -> group.contains(index))
+				.anyMatch(group -> group.stream().filter(i -> i != index && sudoku.cellIsEmpty(i))
+						.noneMatch(i -> sudoku.getCandidatesForCell(i).contains(symbol))));
+	}
+
+	@Test
+	final void testDeadCell() {
+		Sudoku<Integer> sudoku = Sudoku9x9.empty();
+		assertFalse(CandidateGrid.of(sudoku).hasDeadCell());
+
+		// Cell 0 sees all nine symbols
+		for (int i = 1; i <= 8; i++) {
+			sudoku.setCellSymbol(i, i);
+		}
+		sudoku.setCellSymbol(9, 9);
+		assertTrue(CandidateGrid.of(sudoku).hasDeadCell());
+		assertEquals(0, CandidateGrid.of(sudoku).mostConstrainedCell());
+	}
+
+	@Test
+	final void testVectorEngineMatchesScalarEngine() {
+		assumeTrue(CandidateEngine.best() instanceof VectorCandidateEngine, "Vector module not present");
+
+		CandidateEngine scalar = new ScalarCandidateEngine();
+		CandidateEngine vector = CandidateEngine.best();
+
+		for (Sudoku<Integer> sudoku : List.of(Sudoku9x9.fromString(puzzleStr), Sudoku6x6.fromString(puzzle6x6Str))) {
+			CandidateGrid<Integer> scalarGrid = CandidateGrid.of(sudoku, scalar);
+			CandidateGrid<Integer> vectorGrid = CandidateGrid.of(sudoku, vector);
+
+			sudoku.cellIndices().forEach(i -> {
+				assertEquals(scalarGrid.candidateMask(i), vectorGrid.candidateMask(i));
+				assertEquals(scalarGrid.candidateCount(i), vectorGrid.candidateCount(i));
+			});
+			assertEquals(scalarGrid.firstHiddenSingle(), vectorGrid.firstHiddenSingle());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class CdclSolverTest {
+	private final String puzzleStr = """
+					8__ ___ ___
+					__3 6__ ___
+					_7_ _9_ 2__
+
+					_5_ __7 ___
+					___ _45 7__
+					___ 1__ _3_
+
+					__1 ___ _68
+					__8 5__ _1_
+					_9_ ___ 4__""";
+
+	/** Checks that a model satisfies every clause */
+	private static boolean satisfies(boolean[] model, List<int[]> clauses) {
+		return clauses.stream().allMatch(clause -> IntStream.of(clause).anyMatch(l -> model[Math.abs(l)] == l > 0));
+	}
+
+	@Test
+	final void testSmallFormulas() {
+		List<int[]> satisfiable = List.of(new int[] { 1, 2 }, new int[] { -1, 3 }, new int[] { -2, -3 },
+				new int[] { -3, 2, 1 });
+		Optional<boolean[]> model = new CdclSolver(3, satisfiable).solve();
+		assertTrue(model.isPresent());
+		assertTrue(satisfies(model.get(), satisfiable));
+
+		List<int[]> unsatisfiable = List.of(new int[] { 1, 2 }, new int[] { -1, 2 }, new int[] { 1, -2 },
+				new int[] { -1, -2 });
+		assertTrue(new CdclSolver(2, unsatisfiable).solve().isEmpty());
+
+		assertTrue(new CdclSolver(1, List.of(new int[] {})).solve().isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> new CdclSolver(1, List.<int[]>of(new int[] { 2 })));
+	}
+
+	@Test
+	final void testPigeonhole() {
+		// 6 pigeons in 5 holes needs real conflict analysis to refute
+		int pigeons = 6, holes = 5;
+		List<int[]> clauses = new ArrayList<>();
+		for (int p = 0; p < pigeons; p++) {
+			final int pigeon = p;
+			clauses.add(IntStream.range(0, holes).map(h -> pigeon * holes + h + 1).toArray());
+		}
+		for (int h = 0; h < holes; h++) {
+			for (int p = 0; p < pigeons; p++) {
+				for (int q = p + 1; q < pigeons; q++) {
+					clauses.add(new int[] { -(p * holes + h + 1), -(q * holes + h + 1) });
+				}
+			}
+		}
+
+		CdclSolver solver = new CdclSolver(pigeons * holes, clauses);
+		assertTrue(solver.solve().isEmpty());
+		assertTrue(solver.conflicts() > 0);
+		assertThrows(IllegalStateException.class, solver::solve);
+	}
+
+	@Test
+	final void testSudoku() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		Cnf<Integer> cnf = Cnf.encode(puzzle);
+
+		Optional<boolean[]> model = new CdclSolver(cnf).solve();
+		assertTrue(model.isPresent());
+		assertTrue(satisfies(model.get(), cnf.clauses()));
+
+		Sudoku<Integer> solution = cnf.decode(model.get());
+		assertTrue(solution.isSolved());
+		puzzle.filledCellIndices().forEach(i -> assertEquals(puzzle.getCellSymbol(i), solution.getCellSymbol(i)));
+	}
+
+	@Test
+	final void testStrategiesAgree() {
+		for (Sudoku<Integer> puzzle : StrategyBenchmark.inputs().values()) {
+			Optional<Sudoku<Integer>> solution = SolvingStrategy.cdcl().findSolution(puzzle);
+			assertTrue(solution.isPresent());
+			assertTrue(solution.get().isSolved());
+		}
+
+		// A puzzle with contradicting givens has no solution
+		Sudoku<Integer> broken = Sudoku9x9.fromString(puzzleStr);
+		broken.setCellSymbol(1, 8);
+		assertTrue(SolvingStrategy.cdcl().findSolution(broken).isEmpty());
+		assertTrue(SolvingStrategy.backtracking().findSolution(broken).isEmpty());
+	}
+
+	@Test
+	final void testLuby() {
+		long[] expected = { 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8 };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], CdclSolver.luby(i));
+		}
+	}
+}
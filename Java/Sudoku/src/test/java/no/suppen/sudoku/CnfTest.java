@@ -0,0 +1,70 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class CnfTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	@Test
+	final void testVariables() {
+		Cnf<Integer> cnf = Cnf.encode(Sudoku9x9.empty());
+
+		assertEquals(81 * 9, cnf.variableCount());
+		assertEquals(1, cnf.variable(0, 1));
+		assertEquals(9, cnf.variable(0, 9));
+		assertEquals(81 * 9, cnf.variable(80, 9));
+		assertThrows(InvalidSymbolException.class, () -> cnf.variable(0, 10));
+	}
+
+	@Test
+	final void testClauses() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		Cnf<Integer> cnf = Cnf.encode(puzzle);
+
+		// Per cell: one at-least-one clause and 36 at-most-one pairs.
+		// Per linked pair of cells: 9 clauses. Each cell has 20 peers.
+		// Per group: 9 at-least-one clauses. Plus one unit clause per given
+		long expected = 81 * (1 + 36) + 81 * 20 / 2 * 9 + 27 * 9 + puzzle.filledCellIndices().count();
+		assertEquals(expected, cnf.clauses().size());
+
+		// The given in cell 0 is a unit clause
+		assertTrue(cnf.clauses().stream().anyMatch(c -> Arrays.equals(c, new int[] { cnf.variable(0, 5) })));
+	}
+
+	@Test
+	final void testDimacs() {
+		Cnf<Integer> cnf = Cnf.encode(Sudoku9x9.fromString(puzzleStr));
+		String[] lines = cnf.toDimacs().split("\n");
+
+		assertTrue(lines[0].startsWith("c "));
+		assertEquals("p cnf " + cnf.variableCount() + " " + cnf.clauses().size(), lines[1]);
+		assertEquals(cnf.clauses().size() + 2, lines.length);
+		assertTrue(Arrays.stream(lines).skip(2).allMatch(line -> line.endsWith(" 0")));
+	}
+
+	@Test
+	final void testDecode() {
+		Sudoku<Integer> solution = Solver.findSolution(Sudoku9x9.fromString(puzzleStr)).get();
+		Cnf<Integer> cnf = Cnf.encode(solution);
+
+		boolean[] model = new boolean[cnf.variableCount() + 1];
+		solution.cellIndices().forEach(i -> model[cnf.variable(i, solution.getCellSymbol(i).get())] = true);
+
+		assertEquals(solution, cnf.decode(model));
+	}
+}
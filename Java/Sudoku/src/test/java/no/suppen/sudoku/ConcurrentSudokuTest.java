@@ -0,0 +1,95 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentSudokuTest {
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	@Test
+	final void testVersions() {
+		Sudoku<Integer> empty = Sudoku9x9.fromString("_".repeat(81));
+		ConcurrentSudoku<Integer> board = new ConcurrentSudoku<>(empty);
+		ConcurrentSudoku.Snapshot<Integer> first = board.snapshot();
+		assertEquals(0, first.version());
+
+		ConcurrentSudoku.Snapshot<Integer> second = board.setCellSymbol(0, 5);
+		assertEquals(1, second.version());
+		assertEquals(Optional.of(5), second.board().getCellSymbol(0));
+		assertEquals(Optional.empty(), first.board().getCellSymbol(0));
+
+		// Changes which change nothing publish nothing
+		assertSame(second, board.setCellSymbol(0, 5));
+		assertSame(second, board.clearCellSymbol(1));
+
+		// A stale snapshot can not be published over
+		assertFalse(board.compareAndSet(first, first.board().with(1, 3)));
+		assertTrue(board.compareAndSet(second, second.board().with(1, 3)));
+		assertEquals(2, board.version());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> board.update(b -> PersistentSudoku.of(Sudoku6x6.fromString("_".repeat(36)))));
+	}
+
+	@Test
+	final void testConcurrentWriters() throws InterruptedException {
+		Sudoku<Integer> solved = Sudoku9x9.fromString(solvedStr);
+		ConcurrentSudoku<Integer> board = new ConcurrentSudoku<>(Sudoku9x9.fromString("_".repeat(81)));
+
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicBoolean readerSawProblem = new AtomicBoolean();
+		Thread reader = new Thread(() -> {
+			long lastVersion = 0;
+			while (!done.get()) {
+				ConcurrentSudoku.Snapshot<Integer> snapshot = board.snapshot();
+				long filled = snapshot.board().filledCellIndices().count();
+				// Every version adds one cell, and versions never go back
+				if (filled != snapshot.version() || snapshot.version() < lastVersion) {
+					readerSawProblem.set(true);
+				}
+				lastVersion = snapshot.version();
+			}
+		});
+		reader.start();
+
+		// Each writer fills the cells of its own row
+		List<Thread> writers = new ArrayList<>();
+		for (int row = 0; row < 9; row++) {
+			int r = row;
+			writers.add(new Thread(() -> {
+				for (int c = 0; c < 9; c++) {
+					int i = r * 9 + c;
+					board.setCellSymbol(i, solved.getCellSymbol(i).get());
+				}
+			}));
+		}
+		writers.forEach(Thread::start);
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		done.set(true);
+		reader.join();
+
+		assertFalse(readerSawProblem.get());
+		assertEquals(81, board.version());
+		assertEquals(solved, board.snapshot().board());
+		assertEquals(solved.boardHash(), board.snapshot().board().boardHash());
+	}
+}
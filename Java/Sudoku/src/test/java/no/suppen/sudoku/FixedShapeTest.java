@@ -0,0 +1,102 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class FixedShapeTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	@Test
+	final void testShapes() {
+		assertNotNull(FixedShape.of(Topology.of(GridCounter.standardLayout(2, 2))));
+		assertNotNull(FixedShape.of(Topology.of(Sudoku6x6.empty())));
+		assertNotNull(FixedShape.of(Topology.of(Sudoku9x9.empty())));
+		assertNotNull(FixedShape.of(Topology.of(GridCounter.standardLayout(4, 4))));
+		assertSame(FixedShape.of(Topology.of(Sudoku9x9.empty())),
+				FixedShape.of(Topology.of(GridCounter.standardLayout(3, 3))));
+
+		// Any symbols will do
+		Sudoku<Character> letters = new Sudoku<>(Sudoku9x9.size, Set.of('a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i'),
+				Sudoku9x9.cellGroups);
+		assertNotNull(FixedShape.of(Topology.of(letters)));
+
+		// Other shapes, like tall blocks, have none
+		assertNull(FixedShape.of(Topology.of(GridCounter.standardLayout(3, 2))));
+		assertNull(FixedShape.of(Topology.of(GridCounter.standardLayout(2, 4))));
+	}
+
+	/** Solves and counts on both paths, which must agree */
+	private void assertSameAsMaskBoard(Sudoku<Integer> puzzle) {
+		Topology<Integer> topology = Topology.of(puzzle);
+		FixedShape shape = FixedShape.of(topology);
+
+		MaskBoard board = new MaskBoard(topology);
+		puzzle.filledCellIndices().forEach(i -> board.place(i, topology.bitOf(puzzle.getCellSymbol(i).get())));
+
+		int[] cells = topology.cellMasks(puzzle);
+		assertEquals(board.countSolutions(3), shape.countSolutions(cells, 3));
+		assertArrayEquals(topology.cellMasks(puzzle), cells, "Counting changed the cells");
+
+		boolean solved = board.solve();
+		assertEquals(solved, shape.solve(cells));
+		if (solved) {
+			assertArrayEquals(board.cells, Arrays.copyOf(cells, topology.size));
+		}
+	}
+
+	@Test
+	final void testSameResults() {
+		Random random = new Random(46);
+		for (int[] box : new int[][] { { 2, 2 }, { 2, 3 }, { 3, 3 }, { 4, 4 } }) {
+			Sudoku<Integer> solved = Solver.findSolution(GridCounter.standardLayout(box[0], box[1])).get();
+			for (int round = 0; round < 20; round++) {
+				// Clear a random share of the cells. Plain search on 16x16 boards with
+				// most cells cleared can take very long, so they keep more
+				Sudoku<Integer> puzzle = new Sudoku<>(solved);
+				double share = 0.2 + (box[0] == 4 ? 0.25 : 0.6) * random.nextDouble();
+				for (int i = 0; i < puzzle.size(); i++) {
+					if (random.nextDouble() < share) {
+						puzzle.clearCellSymbol(i);
+					}
+				}
+				assertSameAsMaskBoard(puzzle);
+			}
+		}
+	}
+
+	@Test
+	final void testSolverUsesIt() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		assertSameAsMaskBoard(puzzle);
+		assertEquals(1, Solver.countSolutions(puzzle, 2));
+		assertTrue(Solver.findSolution(puzzle).get().isSolved());
+	}
+
+	@Test
+	final void testClashes() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.setCellSymbol(2, 5);
+		Topology<Integer> topology = Topology.of(puzzle);
+		assertEquals(0, FixedShape.of(topology).countSolutions(topology.cellMasks(puzzle), 2));
+		assertFalse(FixedShape.of(topology).solve(topology.cellMasks(puzzle)));
+		assertEquals(0, Solver.countSolutions(puzzle, 2));
+		assertEquals(Optional.empty(), Solver.findSolution(puzzle));
+	}
+}
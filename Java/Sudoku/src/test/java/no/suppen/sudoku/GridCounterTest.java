@@ -0,0 +1,72 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import no.suppen.sudoku.GridCounter.Progress;
+
+class GridCounterTest {
+	@Test
+	final void testStandardLayout() {
+		assertEquals(Sudoku6x6.empty(), GridCounter.standardLayout(2, 3));
+		assertEquals(Sudoku9x9.empty(), GridCounter.standardLayout(3, 3));
+	}
+
+	@Test
+	final void testCount4x4() {
+		Sudoku<Integer> layout = GridCounter.standardLayout(2, 2);
+
+		assertEquals(BigInteger.valueOf(288), GridCounter.of(layout).count());
+		assertEquals(288, Solver.countSolutions(layout, Long.MAX_VALUE));
+	}
+
+	@Test
+	final void testCount6x6() {
+		List<Progress> progress = new ArrayList<>();
+		GridCounter<Integer> counter = GridCounter.of(Sudoku6x6.empty());
+
+		assertEquals(BigInteger.valueOf(28_200_960), counter.count(progress::add));
+
+		// Progress goes up to the total
+		Progress last = progress.get(progress.size() - 1);
+		assertEquals(last.total(), last.done());
+		assertEquals(progress.size(), last.total());
+		BigInteger total = BigInteger.valueOf(last.canonicalGrids()).multiply(counter.symmetryFactor());
+		assertEquals(BigInteger.valueOf(28_200_960), total);
+	}
+
+	@Test
+	final void testSymmetryFactor() {
+		// 9! relabellings, 2! orders of rows 1-2, 3! orders of the rows of each
+		// other band, and 2! orders of those bands
+		BigInteger factor = BigInteger.valueOf(362880L * 2 * 6 * 6 * 2);
+		assertEquals(factor, GridCounter.of(Sudoku9x9.empty()).symmetryFactor());
+	}
+
+	@Test
+	final void testCustomLayout() {
+		// A 4x4 with both diagonals as extra groups is not a standard layout
+		Set<Set<Integer>> groups = new HashSet<>(GridCounter.standardLayout(2, 2).cellGroups);
+		groups.add(Set.of(0, 5, 10, 15));
+		groups.add(Set.of(3, 6, 9, 12));
+		Sudoku<Integer> layout = new Sudoku<>(16, Set.of(1, 2, 3, 4), groups);
+
+		GridCounter<Integer> counter = GridCounter.of(layout);
+		assertEquals(BigInteger.valueOf(24), counter.symmetryFactor());
+		assertEquals(BigInteger.valueOf(Solver.countSolutions(layout, Long.MAX_VALUE)), counter.count());
+	}
+
+	@Test
+	final void testFilledLayout() {
+		Sudoku<Integer> layout = Sudoku6x6.empty();
+		layout.setCellSymbol(0, 1);
+		assertThrows(IllegalArgumentException.class, () -> GridCounter.of(layout));
+	}
+}
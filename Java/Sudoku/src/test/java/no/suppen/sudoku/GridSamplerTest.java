@@ -0,0 +1,103 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import no.suppen.sudoku.GridSampler.Mode;
+
+class GridSamplerTest {
+	@Test
+	final void testGridsAreSolved() {
+		for (Mode mode : Mode.values()) {
+			GridSampler<Integer> sampler = GridSampler.of(Sudoku9x9.empty(), 1, mode);
+			assertTrue(sampler.stream().limit(200).allMatch(Sudoku::isSolved), mode.name());
+		}
+
+		// Layouts which are not standard
+		Sudoku<Integer> layout = StrategyBenchmark.inputs().get("9x9 x-windoku empty");
+		for (Mode mode : Mode.values()) {
+			GridSampler<Integer> sampler = GridSampler.of(layout, 2, mode);
+			assertTrue(sampler.stream().limit(50).allMatch(Sudoku::isSolved), mode.name());
+		}
+	}
+
+	@Test
+	final void testSeeded() {
+		for (Mode mode : Mode.values()) {
+			List<Sudoku<Integer>> first = GridSampler.of(Sudoku9x9.empty(), 42, mode).stream().limit(20)
+					.collect(Collectors.toList());
+			List<Sudoku<Integer>> second = GridSampler.of(Sudoku9x9.empty(), 42, mode).stream().limit(20)
+					.collect(Collectors.toList());
+			List<Sudoku<Integer>> other = GridSampler.of(Sudoku9x9.empty(), 43, mode).stream().limit(20)
+					.collect(Collectors.toList());
+
+			assertEquals(first, second);
+			assertNotEquals(first, other);
+			assertEquals(20, Set.copyOf(first).size());
+		}
+	}
+
+	/** Counts how often each 4x4 grid is made */
+	private Map<Sudoku<Integer>, Integer> sample4x4(Mode mode) {
+		GridSampler<Integer> sampler = GridSampler.of(GridCounter.standardLayout(2, 2), 7, mode);
+		Map<Sudoku<Integer>, Integer> counts = new HashMap<>();
+		sampler.stream().limit(288 * 100).forEach(grid -> counts.merge(grid, 1, Integer::sum));
+		return counts;
+	}
+
+	@Test
+	final void testCoverage() {
+		// Search is not uniform, but reaches every grid
+		assertEquals(288, sample4x4(Mode.SEARCH).size());
+	}
+
+	@Test
+	final void testNearUniform() {
+		// All 288 4x4 grids should turn up about equally often
+		Map<Sudoku<Integer>, Integer> counts = sample4x4(Mode.TRANSFORM);
+		assertEquals(288, counts.size());
+		assertTrue(counts.values().stream().allMatch(count -> count > 50 && count < 160), counts.values().toString());
+	}
+
+	@Test
+	final void testEncodedGrids() {
+		GridSampler<Integer> sampler = GridSampler.of(Sudoku6x6.empty(), 3, Mode.TRANSFORM);
+		byte[] grid = new byte[Sudoku6x6.size];
+		sampler.next(grid);
+
+		Sudoku<Integer> sudoku = Sudoku6x6.empty();
+		for (int i = 0; i < grid.length; i++) {
+			sudoku.setCellSymbol(i, (int) grid[i]);
+		}
+		assertTrue(sudoku.isSolved());
+	}
+
+	@Test
+	final void testInvalidLayouts() {
+		Sudoku<Integer> filled = Sudoku9x9.empty();
+		filled.setCellSymbol(0, 1);
+		assertThrows(IllegalArgumentException.class, () -> GridSampler.of(filled, 1));
+
+		// Two cells that must differ, but only one symbol
+		Sudoku<Integer> impossible = new Sudoku<>(2, Set.of(1), Set.of(Set.of(0, 1)));
+		assertThrows(IllegalStateException.class, () -> GridSampler.of(impossible, 1).next());
+
+		// Ten cells that must differ, but nine symbols. Far too big a tree to search
+		// in the first attempt
+		Set<Integer> ten = IntStream.range(0, 10).boxed().collect(Collectors.toSet());
+		Sudoku<Integer> crowded = new Sudoku<>(10, Sudoku9x9.empty().symbols, Set.of(ten));
+		for (Mode mode : Mode.values()) {
+			GridSampler<Integer> sampler = GridSampler.of(crowded, 1, mode);
+			assertThrows(IllegalStateException.class, sampler::next);
+			assertTrue(sampler.restarts() > 0);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class GroupAnalyzerTest {
+	// Hard enough to leave the analyzer plenty to do
+	private final String hardStr = """
+					8__ ___ ___
+					__3 6__ ___
+					_7_ _9_ 2__
+
+					_5_ __7 ___
+					___ _45 7__
+					___ 1__ _3_
+
+					__1 ___ _68
+					__8 5__ _1_
+					_9_ ___ 4__""";
+
+	private final Topology<Integer> topology = Topology.of(Sudoku9x9.empty());
+	private final GroupAnalyzer analyzer = new GroupAnalyzer(topology);
+	private final int[] cells = new int[topology.size];
+	private final int[] candidates = new int[topology.size];
+
+	/** Index of the group of the first row */
+	private final int row = firstRow();
+
+	private int firstRow() {
+		for (int g : topology.cellGroups[0]) {
+			if (Arrays.equals(topology.groups[g], new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8 })) {
+				return g;
+			}
+		}
+		throw new AssertionError("No first row");
+	}
+
+	private int bits(int... symbols) {
+		int mask = 0;
+		for (int symbol : symbols) {
+			mask |= topology.bitOf(symbol);
+		}
+		return mask;
+	}
+
+	@Test
+	final void testNakedPair() {
+		Arrays.fill(candidates, topology.allSymbols);
+		candidates[0] = bits(1, 2);
+		candidates[5] = bits(1, 2);
+
+		assertEquals(14, analyzer.analyze(row, cells, candidates));
+		assertEquals(bits(1, 2), candidates[0]);
+		assertEquals(bits(1, 2), candidates[5]);
+		for (int i : new int[] { 1, 2, 3, 4, 6, 7, 8 }) {
+			assertEquals(bits(3, 4, 5, 6, 7, 8, 9), candidates[i]);
+		}
+
+		// Nothing more to find
+		assertEquals(0, analyzer.analyze(row, cells, candidates));
+	}
+
+	@Test
+	final void testHiddenSets() {
+		Arrays.fill(candidates, topology.allSymbols & ~bits(1, 2, 3));
+		candidates[3] = topology.allSymbols;
+		candidates[7] = topology.allSymbols;
+		candidates[8] |= bits(3);
+
+		// 3 only fits in cell 8, and then 1 and 2 only fit in cells 3 and 7
+		assertTrue(analyzer.analyze(row, cells, candidates) > 0);
+		assertEquals(bits(3), candidates[8]);
+		assertEquals(bits(1, 2), candidates[3]);
+		assertEquals(bits(1, 2), candidates[7]);
+	}
+
+	@Test
+	final void testFilledCells() {
+		Arrays.fill(candidates, topology.allSymbols);
+		cells[4] = bits(5);
+		candidates[4] = 0;
+
+		assertEquals(8, analyzer.analyze(row, cells, candidates));
+		assertEquals(topology.allSymbols & ~bits(5), candidates[0]);
+	}
+
+	@Test
+	final void testContradictions() {
+		// Three cells with two candidates between them
+		Arrays.fill(candidates, topology.allSymbols);
+		candidates[0] = candidates[1] = candidates[2] = bits(1, 2);
+		assertEquals(-1, analyzer.analyze(row, cells, candidates));
+
+		// A missing symbol with nowhere to go
+		Arrays.fill(candidates, topology.allSymbols & ~bits(9));
+		assertEquals(-1, analyzer.analyze(row, cells, candidates));
+
+		// A symbol twice
+		Arrays.fill(candidates, topology.allSymbols);
+		cells[0] = cells[8] = bits(4);
+		assertEquals(-1, analyzer.analyze(row, cells, candidates));
+	}
+
+	@Test
+	final void testKeepsTheSolution() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(hardStr);
+		Sudoku<Integer> solved = Solver.findSolution(puzzle).get();
+		CandidateGrid<Integer> grid = CandidateGrid.of(puzzle);
+		int[] puzzleCells = topology.cellMasks(puzzle);
+		for (int i = 0; i < topology.size; i++) {
+			candidates[i] = grid.candidateMask(i);
+		}
+
+		// Analyze until nothing changes, then every solution symbol must be left
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int g = 0; g < topology.groupCount(); g++) {
+				int removed = analyzer.analyze(g, puzzleCells, candidates);
+				assertTrue(removed >= 0);
+				changed |= removed > 0;
+			}
+		}
+		for (int i = 0; i < topology.size; i++) {
+			if (puzzleCells[i] == 0) {
+				assertNotEquals(0, candidates[i] & topology.bitOf(solved.getCellSymbol(i).get()), "Cell " + i);
+			}
+		}
+	}
+
+	@Test
+	final void testPencilMarksPropagate() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(hardStr);
+		Sudoku<Integer> solved = Solver.findSolution(puzzle).get();
+		PencilMarks<Integer> marks = PencilMarks.of(puzzle);
+		assertTrue(marks.propagate());
+
+		for (int i = 0; i < topology.size; i++) {
+			Integer symbol = solved.getCellSymbol(i).get();
+			if (marks.isFilled(i)) {
+				assertEquals(symbol, marks.symbol(i).get(), "Cell " + i);
+			} else {
+				assertTrue(marks.candidates(i).contains(symbol), "Cell " + i);
+			}
+		}
+		assertEquals(Optional.of(solved), marks.solve());
+	}
+
+	@Test
+	final void testSixteenBySixteen() {
+		Sudoku<Integer> empty = GridCounter.standardLayout(4, 4);
+		Topology<Integer> big = Topology.of(empty);
+		GroupAnalyzer bigAnalyzer = new GroupAnalyzer(big);
+		int[] bigCells = new int[big.size];
+		int[] bigCandidates = new int[big.size];
+		Arrays.fill(bigCandidates, big.allSymbols);
+
+		// Four cells of a group sharing four symbols
+		int[] group = big.groups[0];
+		int quad = 0b1111;
+		for (int k = 0; k < 4; k++) {
+			bigCandidates[group[k]] = quad;
+		}
+		assertEquals(4 * (group.length - 4), bigAnalyzer.analyze(0, bigCells, bigCandidates));
+		assertEquals(big.allSymbols & ~quad, bigCandidates[group[group.length - 1]]);
+	}
+}
@@ -0,0 +1,114 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import no.suppen.sudoku.HintSession.Hint;
+import no.suppen.sudoku.HintSession.Kind;
+
+class HintSessionTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	@Test
+	final void testMoves() {
+		HintSession<Integer> session = HintSession.start(Sudoku9x9.fromString(puzzleStr));
+
+		assertTrue(session.isConsistent(2, 4));
+		assertFalse(session.isConsistent(2, 1));
+		assertEquals(List.of(1, 2, 4), session.candidates(2));
+
+		// A wrong move, then the right one
+		assertFalse(session.setCellSymbol(2, 1));
+		assertEquals(List.of(2), session.wrongCells().boxed().collect(Collectors.toList()));
+		assertTrue(session.candidates(2).isEmpty());
+		assertFalse(session.candidates(6).contains(1));
+
+		assertTrue(session.setCellSymbol(2, 4));
+		assertEquals(0, session.wrongCells().count());
+		assertTrue(session.candidates(6).contains(1));
+
+		session.clearCellSymbol(2);
+		assertEquals(List.of(1, 2, 4), session.candidates(2));
+
+		assertThrows(IllegalArgumentException.class, () -> session.setCellSymbol(0, 1));
+		assertThrows(IllegalArgumentException.class, () -> session.clearCellSymbol(0));
+	}
+
+	@Test
+	final void testDuplicateSymbolsInAGroup() {
+		HintSession<Integer> session = HintSession.start(Sudoku9x9.fromString(puzzleStr));
+
+		// Two wrong 1s in the first row. Clearing one leaves 1 used in the row
+		session.setCellSymbol(2, 1);
+		session.setCellSymbol(3, 1);
+		session.clearCellSymbol(3);
+		assertFalse(session.candidates(6).contains(1));
+
+		session.clearCellSymbol(2);
+		assertTrue(session.candidates(6).contains(1));
+	}
+
+	@Test
+	final void testHintsSolveThePuzzle() {
+		HintSession<Integer> session = HintSession.start(Sudoku9x9.fromString(puzzleStr));
+		session.setCellSymbol(2, 1);
+
+		Hint<Integer> first = session.nextStep().get();
+		assertEquals(new Hint<>(Kind.WRONG_SYMBOL, 2, 4), first);
+
+		// Follow the hints to the end
+		Optional<Hint<Integer>> hint = Optional.of(first);
+		while (hint.isPresent()) {
+			assertTrue(session.setCellSymbol(hint.get().index(), hint.get().symbol()));
+			hint = session.nextStep();
+		}
+		assertEquals(Sudoku9x9.fromString(solvedStr), session.board());
+	}
+
+	@Test
+	final void testHintKinds() {
+		// An empty board has no singles, so the hint comes from the solution
+		HintSession<Integer> empty = HintSession.start(Sudoku9x9.empty());
+		assertEquals(Kind.FROM_SOLUTION, empty.nextStep().get().kind());
+
+		// One empty cell is a naked single
+		Sudoku<Integer> almost = Sudoku9x9.fromString(solvedStr);
+		almost.clearCellSymbol(40);
+		assertEquals(new Hint<>(Kind.NAKED_SINGLE, 40, 5), HintSession.start(almost).nextStep().get());
+
+		assertThrows(IllegalArgumentException.class, () -> {
+			Sudoku<Integer> broken = Sudoku9x9.fromString(puzzleStr);
+			broken.setCellSymbol(2, 5);
+			HintSession.start(broken);
+		});
+	}
+}
@@ -0,0 +1,173 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class PencilMarksTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	private static byte[] toBytes(PencilMarks<?> marks) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		marks.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static <S> PencilMarks<S> fromBytes(byte[] bytes, Sudoku<S> layout) throws IOException {
+		return PencilMarks.read(new DataInputStream(new ByteArrayInputStream(bytes)), layout);
+	}
+
+	@Test
+	final void testOf() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		PencilMarks<Integer> marks = PencilMarks.of(puzzle);
+		CandidateGrid<Integer> grid = CandidateGrid.of(puzzle);
+
+		for (int i = 0; i < puzzle.size(); i++) {
+			assertEquals(puzzle.getCellSymbol(i), marks.symbol(i));
+			assertEquals(puzzle.cellIsFilled(i), marks.isFilled(i));
+			assertEquals(grid.candidateMask(i), marks.candidateMask(i));
+		}
+		assertEquals(puzzle, marks.toSudoku());
+		assertEquals(List.of(1, 2, 4), marks.candidates(2));
+	}
+
+	@Test
+	final void testBinaryRoundTrip() throws IOException {
+		PencilMarks<Integer> marks = PencilMarks.of(Sudoku9x9.fromString(puzzleStr));
+		marks.eliminate(2, 4);
+		marks.place(2, 1);
+
+		byte[] bytes = PencilMarksTest.toBytes(marks);
+		assertEquals(186, bytes.length);
+		assertEquals(marks, PencilMarksTest.fromBytes(bytes, Sudoku9x9.empty()));
+
+		// Another layout is refused
+		assertThrows(IOException.class, () -> PencilMarksTest.fromBytes(bytes, Sudoku6x6.empty()));
+		bytes[0] = 0;
+		assertThrows(IOException.class, () -> PencilMarksTest.fromBytes(bytes, Sudoku9x9.empty()));
+	}
+
+	/** Symbols with identity hash codes, which differ between runs */
+	private record Letter(char letter) {
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return this == other;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(letter);
+		}
+	}
+
+	private static Sudoku<Letter> letterLayout() {
+		Set<Letter> letters = IntStream.range(0, 9).mapToObj(i -> new Letter((char) ('a' + i)))
+				.collect(Collectors.toSet());
+		Sudoku<Integer> standard = Sudoku9x9.empty();
+		return new Sudoku<>(standard.size(), letters, standard.cellGroups);
+	}
+
+	@Test
+	final void testLayoutFingerprint() throws IOException {
+		// The fingerprint only depends on the layout, so it is the same in every JVM
+		byte[] bytes = PencilMarksTest.toBytes(PencilMarks.of(Sudoku9x9.empty()));
+		assertEquals(1942148924, new DataInputStream(new ByteArrayInputStream(bytes, 9, 4)).readInt());
+
+		// Symbols which only match by their string forms, as in another JVM
+		PencilMarks<Letter> marks = PencilMarks.of(PencilMarksTest.letterLayout());
+		marks.eliminate(0, marks.candidates(0).get(2));
+		PencilMarks<Letter> read = PencilMarksTest.fromBytes(PencilMarksTest.toBytes(marks),
+				PencilMarksTest.letterLayout());
+		assertEquals(marks.toText(), read.toText());
+	}
+
+	@Test
+	final void testTextRoundTrip() {
+		PencilMarks<Integer> marks = PencilMarks.of(Sudoku9x9.fromString(puzzleStr));
+		marks.eliminate(2, 4);
+
+		String text = marks.toText();
+		assertTrue(text.startsWith("5 3 .12 .26 7 .2468 .1489 .1249 .248\n6 "), text);
+		assertEquals(marks, PencilMarks.fromText(text, Sudoku9x9.empty()));
+		assertEquals(marks, PencilMarks.fromText(text.replace('\n', ' '), Sudoku9x9.empty()));
+
+		assertThrows(IllegalArgumentException.class, () -> PencilMarks.fromText("5 3 .12", Sudoku9x9.empty()));
+		assertThrows(IllegalArgumentException.class,
+				() -> PencilMarks.fromText(text.replaceFirst("\\.12", ".1a"), Sudoku9x9.empty()));
+	}
+
+	@Test
+	final void testPropagateAndResume() throws IOException {
+		// The first stage propagates and saves its work
+		PencilMarks<Integer> marks = PencilMarks.of(Sudoku9x9.fromString(puzzleStr));
+		assertTrue(marks.propagate());
+		byte[] saved = PencilMarksTest.toBytes(marks);
+
+		// A later stage picks it up without redoing it
+		PencilMarks<Integer> resumed = PencilMarksTest.fromBytes(saved, Sudoku9x9.empty());
+		assertEquals(Sudoku9x9.fromString(solvedStr), resumed.toSudoku());
+		assertEquals(Optional.of(Sudoku9x9.fromString(solvedStr)), resumed.solve());
+	}
+
+	@Test
+	final void testSolveKeepsEliminations() {
+		PencilMarks<Integer> marks = PencilMarks.of(Sudoku9x9.fromString(puzzleStr));
+		PencilMarks<Integer> before = marks.copy();
+		assertEquals(Optional.of(Sudoku9x9.fromString(solvedStr)), marks.solve());
+		assertEquals(before, marks);
+
+		// Ruling out the solution's symbol leaves no solution, as the puzzle is unique
+		marks.eliminate(2, 4);
+		assertEquals(Optional.empty(), marks.solve());
+		assertFalse(marks.copy().propagate());
+
+		// Candidates which the filled cells rule out are ignored
+		PencilMarks<Integer> loose = PencilMarks.fromText(
+				PencilMarks.of(Sudoku9x9.fromString(puzzleStr)).toText().replace(".12 ", ".1235 "),
+				Sudoku9x9.empty());
+		assertEquals(Optional.of(Sudoku9x9.fromString(solvedStr)), loose.solve());
+
+		assertThrows(IllegalArgumentException.class, () -> marks.place(2, 4));
+	}
+}
@@ -0,0 +1,80 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class PersistentSudokuTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	@Test
+	final void testCopy() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		PersistentSudoku<Integer> persistent = PersistentSudoku.of(puzzle);
+
+		assertEquals(puzzle, persistent);
+		assertEquals(persistent, puzzle);
+		assertEquals(puzzle.hashCode(), persistent.hashCode());
+		assertEquals(puzzle.boardHash(), persistent.boardHash());
+		assertSame(persistent, PersistentSudoku.of(persistent));
+
+		// Later changes to the original do not show
+		puzzle.setCellSymbol(2, 4);
+		assertEquals(Optional.empty(), persistent.getCellSymbol(2));
+	}
+
+	@Test
+	final void testWithAndWithout() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		PersistentSudoku<Integer> original = PersistentSudoku.of(puzzle);
+
+		PersistentSudoku<Integer> changed = original.with(2, 4).with(0, 1).without(1);
+		puzzle.setCellSymbol(2, 4);
+		puzzle.setCellSymbol(0, 1);
+		puzzle.clearCellSymbol(1);
+
+		assertEquals(puzzle, changed);
+		assertEquals(puzzle.boardHash(), changed.boardHash());
+		assertEquals(Sudoku9x9.fromString(puzzleStr), original);
+		assertEquals(Sudoku9x9.fromString(puzzleStr).boardHash(), original.boardHash());
+
+		// Changes which change nothing give the same board
+		assertSame(original, original.with(0, 5));
+		assertSame(original, original.without(2));
+
+		// Unchanged cells are shared, so the old board is still right
+		assertEquals(changed.getCellSymbol(80), original.getCellSymbol(80));
+	}
+
+	@Test
+	final void testImmutable() {
+		PersistentSudoku<Integer> persistent = PersistentSudoku.of(Sudoku9x9.fromString(puzzleStr));
+
+		assertThrows(UnsupportedOperationException.class, () -> persistent.setCellSymbol(2, 4));
+		assertThrows(UnsupportedOperationException.class, () -> persistent.clearCellSymbol(0));
+		assertThrows(UnsupportedOperationException.class, () -> persistent.symbols.add(10));
+		assertThrows(InvalidSymbolException.class, () -> persistent.with(2, 10));
+		assertThrows(IndexOutOfBoundsException.class, () -> persistent.with(81, 1));
+	}
+
+	@Test
+	final void testSolving() {
+		PersistentSudoku<Integer> persistent = PersistentSudoku.of(Sudoku9x9.fromString(puzzleStr));
+
+		assertEquals(Solver.findSolution(Sudoku9x9.fromString(puzzleStr)), Solver.findSolution(persistent));
+		assertEquals(1, Solver.countSolutions(persistent, 2));
+	}
+}
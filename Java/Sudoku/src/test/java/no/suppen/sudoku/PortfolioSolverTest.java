@@ -0,0 +1,163 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+class PortfolioSolverTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	/** A strategy which never finishes, but gives up when asked */
+	private static class Stubborn implements SolvingStrategy {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gaveUp = new CountDownLatch(1);
+
+		@Override
+		public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle, BooleanSupplier cancelled) {
+			started.countDown();
+			while (!cancelled.getAsBoolean()) {
+				Thread.onSpinWait();
+			}
+			gaveUp.countDown();
+			throw new CancellationException();
+		}
+
+		@Override
+		public String name() {
+			return "stubborn";
+		}
+	}
+
+	@Test
+	final void testStrategies() {
+		List<SolvingStrategy> strategies = List.of(SolvingStrategy.mostConstrainedCell(),
+				SolvingStrategy.mostConstrainedGroup(), SolvingStrategy.exactCover(),
+				SolvingStrategy.randomRestarts(1), SolvingStrategy.randomRestarts(2));
+
+		Sudoku<Integer> deadEnd = Sudoku9x9.fromString(puzzleStr);
+		deadEnd.setCellSymbol(2, 1);
+		Sudoku<Integer> conflicting = Sudoku9x9.fromString(puzzleStr);
+		conflicting.setCellSymbol(8, 5);
+
+		for (SolvingStrategy strategy : strategies) {
+			StrategyBenchmark.inputs().forEach((name, puzzle) -> {
+				Optional<Sudoku<Integer>> solution = strategy.findSolution(puzzle);
+				assertTrue(solution.map(Sudoku::isSolved).orElse(false), strategy.name() + " on " + name);
+				puzzle.filledCellIndices()
+						.forEach(i -> assertEquals(puzzle.getCellSymbol(i), solution.get().getCellSymbol(i)));
+			});
+			assertEquals(Optional.empty(), strategy.findSolution(deadEnd), strategy.name());
+			assertEquals(Optional.empty(), strategy.findSolution(conflicting), strategy.name());
+		}
+	}
+
+	@Test
+	final void testStrategiesGiveUp() {
+		// 1024 cells take more nodes than are searched between checks
+		Sudoku<Integer> big = GridCounter.standardLayout(4, 8);
+		assertThrows(CancellationException.class,
+				() -> SolvingStrategy.mostConstrainedCell().findSolution(big, () -> true));
+		assertThrows(CancellationException.class,
+				() -> SolvingStrategy.cdcl().findSolution(GridCounter.standardLayout(4, 4), () -> true));
+	}
+
+	@Test
+	final void testRaceCancelsLosers() throws InterruptedException {
+		Stubborn stubborn = new Stubborn();
+		// The winner waits for the loser to start, as a task cancelled before it
+		// starts never runs, so it has nothing to give up
+		SolvingStrategy winner = new SolvingStrategy() {
+			@Override
+			public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+				try {
+					stubborn.started.await();
+				} catch (InterruptedException e) {
+					throw new CancellationException();
+				}
+				return SolvingStrategy.exactCover().findSolution(puzzle);
+			}
+
+			@Override
+			public String name() {
+				return "exact cover";
+			}
+		};
+		try (PortfolioSolver portfolio = new PortfolioSolver(List.of(stubborn, winner))) {
+			PortfolioSolver.Result<Integer> result = portfolio.solve(Sudoku9x9.fromString(puzzleStr));
+
+			assertEquals("exact cover", result.winner());
+			assertEquals(2, result.runners());
+			assertEquals(Solver.findSolution(Sudoku9x9.fromString(puzzleStr)), result.solution());
+			assertTrue(stubborn.gaveUp.await(10, TimeUnit.SECONDS));
+			assertEquals(Map.of("stubborn", 0L, "exact cover", 1L), portfolio.wins());
+		}
+	}
+
+	@Test
+	final void testAdaptiveChoice() {
+		try (PortfolioSolver portfolio = new PortfolioSolver(List.of(new Stubborn(), SolvingStrategy.mostConstrainedCell()),
+				1)) {
+			// The first race is run by all, so the winner can be found
+			assertEquals(2, portfolio.solve(Sudoku9x9.fromString(puzzleStr)).runners());
+
+			// Then only the winner races, until the next exploring race
+			for (int race = 1; race < PortfolioSolver.explorationInterval; race++) {
+				PortfolioSolver.Result<Integer> result = portfolio.solve(Sudoku9x9.fromString(puzzleStr));
+				assertEquals(1, result.runners());
+				assertEquals("cell", result.winner());
+			}
+			assertEquals(2, portfolio.solve(Sudoku9x9.fromString(puzzleStr)).runners());
+			assertEquals(PortfolioSolver.explorationInterval + 1, portfolio.races());
+		}
+	}
+
+	@Test
+	final void testFailures() {
+		SolvingStrategy failing = new SolvingStrategy() {
+			@Override
+			public <S> Optional<Sudoku<S>> findSolution(Sudoku<S> puzzle) {
+				throw new ArithmeticException("Broken");
+			}
+
+			@Override
+			public String name() {
+				return "failing";
+			}
+		};
+
+		try (PortfolioSolver portfolio = new PortfolioSolver(List.of(failing, SolvingStrategy.mostConstrainedCell()))) {
+			assertEquals("cell", portfolio.solve(Sudoku9x9.fromString(puzzleStr)).winner());
+		}
+		try (PortfolioSolver portfolio = new PortfolioSolver(List.of(failing))) {
+			IllegalStateException e = assertThrows(IllegalStateException.class,
+					() -> portfolio.solve(Sudoku9x9.fromString(puzzleStr)));
+			assertInstanceOf(ArithmeticException.class, e.getCause());
+		}
+		assertThrows(IllegalArgumentException.class, () -> new PortfolioSolver(List.of()));
+		assertThrows(IllegalArgumentException.class, () -> new PortfolioSolver(List.of(failing), 2));
+	}
+}
@@ -0,0 +1,87 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PuzzleReducerTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	/** Checks that a puzzle is a minimal puzzle for a solution */
+	private static void assertMinimal(Sudoku<Integer> puzzle, Sudoku<Integer> solution) {
+		assertEquals(1, Solver.countSolutions(puzzle, 2));
+		puzzle.filledCellIndices().forEach(i -> assertEquals(solution.getCellSymbol(i), puzzle.getCellSymbol(i)));
+
+		// Every given is needed
+		puzzle.filledCellIndices().forEach(i -> {
+			Sudoku<Integer> fewer = new Sudoku<>(puzzle);
+			fewer.clearCellSymbol(i);
+			assertEquals(2, Solver.countSolutions(fewer, 2), "Given at " + i + " is not needed");
+		});
+	}
+
+	@Test
+	final void testReduceSolvedBoard() {
+		Sudoku<Integer> solved = Sudoku9x9.fromString(solvedStr);
+		Sudoku<Integer> puzzle = PuzzleReducer.reduce(solved);
+
+		assertMinimal(puzzle, solved);
+		assertEquals(Sudoku9x9.fromString(solvedStr), solved);
+	}
+
+	@Test
+	final void testReducePuzzle() {
+		Sudoku<Integer> puzzle = PuzzleReducer.reduce(Sudoku9x9.fromString(puzzleStr));
+
+		assertMinimal(puzzle, Sudoku9x9.fromString(solvedStr));
+		assertTrue(puzzle.filledCellIndices().count() < Sudoku9x9.fromString(puzzleStr).filledCellIndices().count());
+	}
+
+	@Test
+	final void testSeveralSubsets() {
+		Sudoku<Integer> solved = Sudoku9x9.fromString(solvedStr);
+		List<Sudoku<Integer>> puzzles = PuzzleReducer.reduce(solved, 4, 1);
+
+		assertTrue(puzzles.size() > 1);
+		assertEquals(puzzles.size(), puzzles.stream().distinct().count());
+		puzzles.forEach(puzzle -> assertMinimal(puzzle, solved));
+
+		// Same seed, same puzzles
+		assertEquals(puzzles, PuzzleReducer.reduce(solved, 4, 1));
+	}
+
+	@Test
+	final void testNotUnique() {
+		assertThrows(IllegalArgumentException.class, () -> PuzzleReducer.reduce(Sudoku9x9.empty()));
+
+		Sudoku<Integer> broken = Sudoku9x9.fromString(puzzleStr);
+		broken.setCellSymbol(2, 5);
+		assertThrows(IllegalArgumentException.class, () -> PuzzleReducer.reduce(broken));
+	}
+}
@@ -0,0 +1,102 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import no.suppen.sudoku.PuzzleValidator.Validation;
+import no.suppen.sudoku.PuzzleValidator.Verdict;
+
+class PuzzleValidatorTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	/** The puzzle on one line */
+	private final String puzzleLine = puzzleStr.replaceAll("[ \n]", "");
+
+	@Test
+	final void testVerdicts() {
+		PuzzleValidator validator = new PuzzleValidator();
+
+		assertEquals(Verdict.UNIQUE, validator.verdict(puzzleStr));
+		assertEquals(Verdict.UNIQUE, validator.verdict(puzzleLine.replace('_', '.')));
+		assertEquals(Verdict.UNIQUE, validator.verdict(solvedStr));
+
+		// Clearing the first row leaves two ways to fill it
+		assertEquals(Verdict.MULTIPLE, validator.verdict("_".repeat(9) + puzzleLine.substring(9)));
+		assertEquals(Verdict.MULTIPLE, validator.verdict("0".repeat(81)));
+
+		// 5 twice in the first row
+		String twoFives = "5" + puzzleLine.substring(1, 8) + "5" + puzzleLine.substring(9);
+		assertEquals(Verdict.INVALID_GIVENS, validator.verdict(twoFives));
+
+		// A 1 in cell 2 is consistent with the givens, but leaves no solution
+		String deadEnd = puzzleLine.substring(0, 2) + "1" + puzzleLine.substring(3);
+		assertEquals(Verdict.NO_SOLUTION, validator.verdict(deadEnd));
+	}
+
+	@Test
+	final void testMalformed() {
+		PuzzleValidator validator = new PuzzleValidator();
+
+		assertEquals(Verdict.MALFORMED, validator.verdict(""));
+		assertEquals(Verdict.MALFORMED, validator.verdict(puzzleLine.substring(1)));
+		assertEquals(Verdict.MALFORMED, validator.verdict(puzzleLine + "_"));
+		assertEquals(Verdict.MALFORMED, validator.verdict("x" + puzzleLine.substring(1)));
+		assertTrue(validator.reason().contains("'x'"));
+	}
+
+	@Test
+	final void testAgreesWithSolver() {
+		PuzzleValidator validator = new PuzzleValidator();
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+
+		// Clear more and more cells, comparing with the solver each time
+		for (int i = 0; i < 20; i++) {
+			puzzle.clearCellSymbol(i);
+			long solutions = Solver.countSolutions(puzzle, 2);
+			Verdict expected = solutions == 1 ? Verdict.UNIQUE : Verdict.MULTIPLE;
+			assertEquals(expected, validator.verdict(Sudoku9x9.toString(puzzle)));
+		}
+	}
+
+	@Test
+	final void testStream() {
+		String input = String.join("\n", puzzleLine, "nonsense", puzzleLine.replaceFirst("_", "3"), "0".repeat(81));
+		List<Validation> validations = new PuzzleValidator().validate(new BufferedReader(new StringReader(input)))
+				.collect(Collectors.toList());
+
+		assertEquals(List.of(1L, 2L, 3L, 4L), validations.stream().map(Validation::number).collect(Collectors.toList()));
+		assertEquals(List.of(Verdict.UNIQUE, Verdict.MALFORMED, Verdict.INVALID_GIVENS, Verdict.MULTIPLE),
+				validations.stream().map(Validation::verdict).collect(Collectors.toList()));
+		assertTrue(validations.stream().allMatch(v -> v.reason() != null));
+	}
+}
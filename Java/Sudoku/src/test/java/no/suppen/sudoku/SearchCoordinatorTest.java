@@ -0,0 +1,242 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(60)
+class SearchCoordinatorTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	/** A puzzle with 64 solutions */
+	private Sudoku<Integer> ambiguousPuzzle() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		IntStream.range(0, 14).forEach(puzzle::clearCellSymbol);
+		return puzzle;
+	}
+
+	/** Starts workers as threads in this JVM */
+	private List<Thread> startWorkers(int count, int port, int checkInterval) {
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Thread worker = new Thread(() -> {
+				try {
+					SearchWorker.run("localhost", port, checkInterval);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		return workers;
+	}
+
+	/** Something a fake worker sends instead of searching its subproblem */
+	private interface Reply {
+		void send(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * Runs a search with a fake worker, which takes a subproblem and answers with
+	 * garbage
+	 */
+	private void assertRejects(boolean collectSolutions, Reply reply) throws Exception {
+		try (SearchCoordinator<Integer> coordinator = new SearchCoordinator<>(ambiguousPuzzle(), collectSolutions,
+				0, 1)) {
+			Thread worker = new Thread(() -> {
+				try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.port());
+						DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+						DataOutputStream out = new DataOutputStream(
+								new BufferedOutputStream(socket.getOutputStream()))) {
+					Topology<Integer> topology = Topology.of(SearchProtocol.readLayout(in));
+					in.readBoolean();
+					out.writeByte(SearchProtocol.ready);
+					out.flush();
+					assertEquals(SearchProtocol.task, in.readByte());
+					SearchProtocol.readBoard(in, topology);
+
+					reply.send(out);
+					out.flush();
+					// Wait for the coordinator to hang up
+					in.read();
+				} catch (IOException e) {
+					// Hung up on
+				}
+			});
+			worker.start();
+
+			assertThrows(IOException.class, coordinator::run);
+			worker.join();
+		}
+	}
+
+	@Test
+	final void testRejectsGarbage() throws Exception {
+		// Negative count
+		assertRejects(false, out -> {
+			out.writeByte(SearchProtocol.done);
+			out.writeLong(-1);
+			out.writeInt(0);
+		});
+		// More boards than solutions
+		assertRejects(true, out -> {
+			out.writeByte(SearchProtocol.done);
+			out.writeLong(0);
+			out.writeInt(Integer.MAX_VALUE);
+		});
+		// A board of the wrong size
+		assertRejects(true, out -> {
+			out.writeByte(SearchProtocol.done);
+			out.writeLong(1);
+			out.writeInt(1);
+			SearchProtocol.writeBoard(out, new byte[80]);
+		});
+		// A symbol the layout does not have
+		assertRejects(true, out -> {
+			byte[] board = new byte[81];
+			board[0] = 10;
+			out.writeByte(SearchProtocol.done);
+			out.writeLong(1);
+			out.writeInt(1);
+			SearchProtocol.writeBoard(out, board);
+		});
+		// A donation nobody asked for
+		assertRejects(false, out -> {
+			out.writeByte(SearchProtocol.donate);
+			out.writeInt(1);
+		});
+	}
+
+	@Test
+	final void testCollectsAllSolutions() throws Exception {
+		Sudoku<Integer> puzzle = ambiguousPuzzle();
+		Set<Sudoku<Integer>> expected = SolutionCursor.start(puzzle).stream().collect(Collectors.toSet());
+
+		try (SearchCoordinator<Integer> coordinator = new SearchCoordinator<>(puzzle, true, 0)) {
+			List<Thread> workers = startWorkers(3, coordinator.port(), 4);
+			SearchCoordinator.Result<Integer> result = coordinator.run();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			assertEquals(expected.size(), result.solutionCount());
+			assertEquals(expected, new HashSet<>(result.solutions()));
+			assertTrue(result.subproblems() > 1);
+		}
+	}
+
+	@Test
+	final void testSplitsWhenWorkersRunOutOfWork() throws Exception {
+		Sudoku<Integer> puzzle = ambiguousPuzzle();
+
+		// One subproblem for three workers. The other two only get work by splitting
+		try (SearchCoordinator<Integer> coordinator = new SearchCoordinator<>(puzzle, false, 0, 1)) {
+			List<Thread> workers = startWorkers(3, coordinator.port(), 1);
+			while (coordinator.idleWorkers() < 3) {
+				Thread.sleep(10);
+			}
+
+			SearchCoordinator.Result<Integer> result = coordinator.run();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			assertEquals(Solver.countSolutions(puzzle, Long.MAX_VALUE), result.solutionCount());
+			assertTrue(result.solutions().isEmpty());
+			assertTrue(result.splits() > 0);
+			assertTrue(result.subproblems() > 1);
+		}
+	}
+
+	@Test
+	final void testCloseWithoutRunning() throws Exception {
+		SearchCoordinator<Integer> coordinator = new SearchCoordinator<>(ambiguousPuzzle(), false, 0);
+		List<Thread> workers = startWorkers(2, coordinator.port(), 4);
+		while (coordinator.idleWorkers() < 2) {
+			Thread.sleep(10);
+		}
+
+		// The waiting workers are told to shut down, though the search never started
+		coordinator.close();
+		for (Thread worker : workers) {
+			worker.join(TimeUnit.SECONDS.toMillis(10));
+			assertFalse(worker.isAlive());
+		}
+		assertThrows(IOException.class, coordinator::run);
+	}
+
+	@Test
+	final void testUnsolvable() throws Exception {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.setCellSymbol(2, 5);
+
+		try (SearchCoordinator<Integer> coordinator = new SearchCoordinator<>(puzzle, true, 0)) {
+			List<Thread> workers = startWorkers(1, coordinator.port(), 4);
+			SearchCoordinator.Result<Integer> result = coordinator.run();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			assertEquals(0, result.solutionCount());
+			assertEquals(0, result.subproblems());
+		}
+	}
+
+	@Test
+	final void testWorkerProcesses() throws Exception {
+		Sudoku<Integer> puzzle = ambiguousPuzzle();
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+		try (SearchCoordinator<Integer> coordinator = new SearchCoordinator<>(puzzle, false, 0)) {
+			List<Process> workers = new ArrayList<>();
+			try {
+				for (int i = 0; i < 2; i++) {
+					workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+							SearchWorker.class.getName(), "localhost", String.valueOf(coordinator.port()), "8")
+							.redirectErrorStream(true)
+							.start());
+				}
+
+				SearchCoordinator.Result<Integer> result = coordinator.run();
+
+				assertEquals(Solver.countSolutions(puzzle, Long.MAX_VALUE), result.solutionCount());
+				for (Process worker : workers) {
+					assertTrue(worker.waitFor(30, TimeUnit.SECONDS));
+					assertEquals(0, worker.exitValue());
+				}
+			} finally {
+				workers.forEach(Process::destroyForcibly);
+			}
+		}
+	}
+}
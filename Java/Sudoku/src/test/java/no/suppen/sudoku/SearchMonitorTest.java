@@ -0,0 +1,108 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+class SearchMonitorTest {
+	// Has a few thousand solutions, enough for many reports
+	private final String sparseStr = """
+					53_ _7_ ___
+					6__ ___ ___
+					___ ___ _6_
+
+					8__ _6_ __3
+					4__ ___ __1
+					7__ _2_ ___
+
+					_6_ ___ 28_
+					___ 419 ___
+					___ _8_ _79""";
+
+	@Test
+	final void testReports() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(sparseStr);
+		List<SearchMonitor.Progress> reports = new ArrayList<>();
+		long count = Solver.countSolutions(puzzle, Long.MAX_VALUE, Duration.ZERO, reports::add);
+
+		assertEquals(Solver.countSolutions(puzzle, Long.MAX_VALUE), count);
+		assertTrue(reports.size() > 2, "Only " + reports.size() + " reports");
+
+		// Everything only goes up
+		for (int i = 1; i < reports.size(); i++) {
+			SearchMonitor.Progress before = reports.get(i - 1), after = reports.get(i);
+			assertTrue(after.nodes() >= before.nodes());
+			assertTrue(after.solutions() >= before.solutions());
+			assertTrue(after.fractionDone() >= before.fractionDone());
+			assertTrue(after.running() || i == reports.size() - 1);
+		}
+
+		SearchMonitor.Progress last = reports.get(reports.size() - 1);
+		assertFalse(last.running());
+		assertEquals(count, last.solutions());
+		assertEquals(1, last.fractionDone(), 1e-9);
+		assertEquals(Duration.ZERO, last.estimatedRemaining().get());
+		assertTrue(reports.get(0).fractionDone() < 1);
+	}
+
+	@Test
+	final void testLimit() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(sparseStr);
+		SearchMonitor<Integer> monitor = new SearchMonitor<>(puzzle, Duration.ofHours(1), progress -> {
+		});
+		assertEquals(10, monitor.count(10));
+		assertEquals(10, monitor.progress().solutions());
+		assertTrue(monitor.progress().fractionDone() < 1);
+		assertThrows(IllegalStateException.class, () -> monitor.count(10));
+	}
+
+	@Test
+	final void testErrors() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(sparseStr);
+		puzzle.setCellSymbol(2, 5);
+		SearchMonitor<Integer> monitor = new SearchMonitor<>(puzzle, Duration.ZERO, progress -> {
+		});
+		assertEquals(0, monitor.count(Long.MAX_VALUE));
+		assertEquals(1, monitor.progress().fractionDone());
+	}
+
+	@Test
+	final void testMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(sparseStr);
+		List<Object[]> seen = new ArrayList<>();
+
+		AtomicReference<ObjectName> name = new AtomicReference<>();
+		SearchMonitor<Integer> monitor = new SearchMonitor<>(puzzle, Duration.ZERO, progress -> {
+			if (progress.running()) {
+				try {
+					seen.add(server.getAttributes(name.get(),
+							new String[] { "Running", "Nodes", "Puzzle" }).asList().stream()
+							.map(attribute -> attribute.getValue()).toArray());
+				} catch (JMException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		name.set(monitor.objectName());
+		assertFalse(server.isRegistered(name.get()));
+		monitor.count(Long.MAX_VALUE);
+		assertFalse(server.isRegistered(name.get()));
+
+		assertFalse(seen.isEmpty());
+		Object[] first = seen.get(0);
+		assertEquals(true, first[0]);
+		assertTrue((Long) first[1] > 0);
+		assertEquals(Sudoku9x9.toString(puzzle), first[2]);
+	}
+}
@@ -0,0 +1,106 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class SolutionCursorTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	/** A puzzle with 64 solutions */
+	private Sudoku<Integer> ambiguousPuzzle() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		IntStream.range(0, 14).forEach(puzzle::clearCellSymbol);
+		return puzzle;
+	}
+
+	@Test
+	final void testEnumeratesAllSolutions() {
+		Sudoku<Integer> puzzle = ambiguousPuzzle();
+
+		List<Sudoku<Integer>> solutions = SolutionCursor.start(puzzle).stream().collect(Collectors.toList());
+
+		// Every solution exactly once
+		assertEquals(Solver.countSolutions(puzzle, Long.MAX_VALUE), solutions.size());
+		assertEquals(solutions.size(), new HashSet<>(solutions).size());
+		assertTrue(solutions.stream().allMatch(Sudoku::isSolved));
+	}
+
+	@Test
+	final void testResume() {
+		Sudoku<Integer> puzzle = ambiguousPuzzle();
+		List<Sudoku<Integer>> expected = SolutionCursor.start(puzzle).stream().collect(Collectors.toList());
+
+		// Page through the solutions, making a new cursor from the token for each page
+		List<Sudoku<Integer>> paged = new ArrayList<>();
+		String token = SolutionCursor.start(puzzle).token();
+		while (true) {
+			SolutionCursor<Integer> cursor = SolutionCursor.resume(puzzle, token);
+			List<Sudoku<Integer>> page = cursor.stream().limit(5).collect(Collectors.toList());
+			paged.addAll(page);
+			token = cursor.token();
+			if (page.size() < 5) {
+				assertTrue(cursor.isDone());
+				break;
+			}
+		}
+
+		assertEquals(expected, paged);
+
+		// A finished cursor stays finished
+		assertEquals(Optional.empty(), SolutionCursor.resume(puzzle, token).next());
+	}
+
+	@Test
+	final void testSolvedAndInvalid() {
+		Sudoku<Integer> solved = Solver.findSolution(Sudoku9x9.fromString(puzzleStr)).get();
+		SolutionCursor<Integer> cursor = SolutionCursor.start(solved);
+		assertEquals(Optional.of(solved), cursor.next());
+		assertEquals(Optional.empty(), SolutionCursor.resume(solved, cursor.token()).next());
+
+		Sudoku<Integer> invalid = Sudoku9x9.fromString(puzzleStr);
+		invalid.setCellSymbol(0, 1);
+		invalid.setCellSymbol(1, 1);
+		assertEquals(Optional.empty(), SolutionCursor.start(invalid).next());
+
+		// Not even a fresh token restarts the search on a sudoku with errors
+		ByteBuffer fresh = ByteBuffer.allocate(2 + Long.BYTES).put((byte) 1).put((byte) 0).putLong(invalid.boardHash());
+		SolutionCursor<Integer> resumed = SolutionCursor.resume(invalid,
+				Base64.getUrlEncoder().withoutPadding().encodeToString(fresh.array()));
+		assertTrue(resumed.isDone());
+		assertEquals(Optional.empty(), resumed.next());
+	}
+
+	@Test
+	final void testBadTokens() {
+		Sudoku<Integer> puzzle = ambiguousPuzzle();
+		SolutionCursor<Integer> cursor = SolutionCursor.start(puzzle);
+		cursor.next();
+		String token = cursor.token();
+
+		// Tokens only work with their own puzzle
+		assertThrows(IllegalArgumentException.class, () -> SolutionCursor.resume(Sudoku9x9.empty(), token));
+		assertThrows(IllegalArgumentException.class, () -> SolutionCursor.resume(puzzle, "not a token"));
+		assertThrows(IllegalArgumentException.class, () -> SolutionCursor.resume(puzzle, token.substring(0, 8)));
+	}
+}
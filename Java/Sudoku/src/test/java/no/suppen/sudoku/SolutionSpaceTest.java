@@ -0,0 +1,137 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class SolutionSpaceTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	/** A puzzle with 232116 solutions */
+	private Sudoku<Integer> manySolutions() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.filledCellIndices().limit(9).boxed().toList().forEach(puzzle::clearCellSymbol);
+		return puzzle;
+	}
+
+	/**
+	 * Tallies the solutions the slow way, keeping them all, and compares with the
+	 * sequential and parallel analyses
+	 */
+	private void assertSameAsEnumerating(Sudoku<Integer> puzzle) {
+		// The stream can repeat solutions
+		List<Sudoku<Integer>> solutions = Solver.solve(puzzle).distinct().toList();
+		for (SolutionSpace<Integer> space : List.of(SolutionSpace.analyze(puzzle),
+				SolutionSpace.analyze(puzzle, true))) {
+			assertEquals(solutions.size(), space.solutions());
+			assertTrue(space.isComplete());
+
+			for (int i = 0; i < puzzle.size(); i++) {
+				Map<Integer, Long> expected = new HashMap<>();
+				for (Sudoku<Integer> solution : solutions) {
+					expected.merge(solution.getCellSymbol(i).get(), 1L, Long::sum);
+				}
+				assertEquals(expected, space.frequencies(i));
+				for (int symbol = 1; symbol <= 9; symbol++) {
+					assertEquals(expected.getOrDefault(symbol, 0L), space.frequency(i, symbol));
+				}
+
+				int cell = i;
+				Optional<Integer> fixed = solutions.stream().map(s -> s.getCellSymbol(cell).get()).distinct()
+						.count() == 1 ? solutions.get(0).getCellSymbol(i) : Optional.empty();
+				assertEquals(fixed, space.fixedSymbol(i));
+				assertEquals(fixed, space.backbone().getCellSymbol(i));
+			}
+		}
+	}
+
+	@Test
+	final void testFrequencies() {
+		// A solution with its first 26 cells cleared has 48 solutions, few enough to
+		// keep them all. Bigger spaces are left to testParallel
+		Sudoku<Integer> solved = Solver.findSolution(Sudoku9x9.fromString(puzzleStr)).get();
+		Sudoku<Integer> puzzle = new Sudoku<>(solved);
+		IntStream.range(0, 26).forEach(puzzle::clearCellSymbol);
+		assertEquals(48, SolutionSpace.analyze(puzzle).solutions());
+		assertSameAsEnumerating(puzzle);
+
+		// Two cells which only fit one way
+		solved.clearCellSymbol(79);
+		solved.clearCellSymbol(80);
+		assertSameAsEnumerating(solved);
+	}
+
+	@Test
+	final void testParallel() {
+		Sudoku<Integer> puzzle = manySolutions();
+		SolutionSpace<Integer> sequential = SolutionSpace.analyze(puzzle);
+		SolutionSpace<Integer> parallel = SolutionSpace.analyze(puzzle, true);
+		assertEquals(232116, sequential.solutions());
+		assertEquals(Solver.countSolutions(puzzle, Long.MAX_VALUE), parallel.solutions());
+		for (int i = 0; i < puzzle.size(); i++) {
+			assertEquals(sequential.frequencies(i), parallel.frequencies(i));
+		}
+		assertEquals(sequential.backbone(), parallel.backbone());
+	}
+
+	@Test
+	final void testBackbone() {
+		Sudoku<Integer> puzzle = manySolutions();
+		SolutionSpace<Integer> all = SolutionSpace.analyze(puzzle);
+		for (boolean parallel : new boolean[] { false, true }) {
+			// Only a few of the solutions are needed
+			SolutionSpace<Integer> space = SolutionSpace.findBackbone(puzzle, parallel);
+			assertFalse(space.isComplete());
+			assertTrue(space.solutions() <= 1 + puzzle.emptyCellIndices().count());
+			assertEquals(all.backbone(), space.backbone());
+			assertNotEquals(puzzle, space.backbone());
+			for (int i = 0; i < puzzle.size(); i++) {
+				assertTrue(all.frequencies(i).keySet().containsAll(space.frequencies(i).keySet()));
+			}
+
+			// The empty board has far too many solutions to go through, but no
+			// backbone, which a few of them show
+			Sudoku<Integer> empty = Sudoku9x9.empty();
+			SolutionSpace<Integer> early = SolutionSpace.findBackbone(empty, parallel);
+			assertFalse(early.isComplete());
+			assertTrue(early.solutions() > 1);
+			assertEquals(empty, early.backbone());
+		}
+
+		// A unique solution is all backbone
+		Sudoku<Integer> unique = Sudoku9x9.fromString(puzzleStr);
+		SolutionSpace<Integer> space = SolutionSpace.findBackbone(unique, false);
+		assertTrue(space.isComplete());
+		assertEquals(1, space.solutions());
+		assertEquals(Solver.findSolution(unique).get(), space.backbone());
+	}
+
+	@Test
+	final void testNoSolutions() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.setCellSymbol(2, 5);
+		SolutionSpace<Integer> space = SolutionSpace.analyze(puzzle, true);
+		assertEquals(0, space.solutions());
+		assertTrue(space.isComplete());
+		assertEquals(Map.of(), space.frequencies(0));
+		assertEquals(Optional.empty(), space.fixedSymbol(0));
+		assertEquals(Sudoku9x9.empty(), space.backbone());
+	}
+}
@@ -0,0 +1,97 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SolveOrderTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	/** A puzzle with 64 solutions, to see the order they come in */
+	private Sudoku<Integer> manySolutions() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.filledCellIndices().limit(6).boxed().toList().forEach(puzzle::clearCellSymbol);
+		return puzzle;
+	}
+
+	@Test
+	final void testFixed() {
+		Sudoku<Integer> puzzle = manySolutions();
+		List<Sudoku<Integer>> first = Solver.solve(puzzle, SolveOrder.fixed()).limit(50).toList();
+		assertEquals(first, SolveOrder.fixed().solve(puzzle).limit(50).toList());
+		assertEquals(Solver.findSolution(puzzle), Optional.of(first.get(0)));
+		assertEquals(SolutionCursor.start(puzzle).stream().limit(50).toList(), first);
+		assertEquals(SolveOrder.fixed().count(puzzle, 50), SolveOrder.fixed().count(puzzle, 50));
+	}
+
+	@Test
+	final void testSeeded() {
+		Sudoku<Integer> puzzle = manySolutions();
+		List<Sudoku<Integer>> first = SolveOrder.seeded(49).solve(puzzle).limit(50).toList();
+		assertEquals(first, SolveOrder.seeded(49).solve(puzzle).limit(50).toList());
+		assertEquals(SolveOrder.seeded(49).count(puzzle, 50), SolveOrder.seeded(49).count(puzzle, 50));
+		assertNotEquals(first, SolveOrder.seeded(50).solve(puzzle).limit(50).toList());
+		assertNotEquals(first, SolveOrder.fixed().solve(puzzle).limit(50).toList());
+	}
+
+	@Test
+	final void testAllSolutions() {
+		Sudoku<Integer> puzzle = manySolutions();
+		long count = Solver.countSolutions(puzzle, Long.MAX_VALUE);
+		assertEquals(64, count);
+		for (SolveOrder order : new SolveOrder[] { SolveOrder.fixed(), SolveOrder.seeded(1), SolveOrder.seeded(2) }) {
+			Set<Sudoku<Integer>> solutions = new HashSet<>();
+			order.solve(puzzle).forEach(solution -> {
+				assertTrue(solution.isSolved());
+				assertTrue(solutions.add(solution), "Same solution twice");
+			});
+			assertEquals(count, solutions.size());
+			assertEquals(count, order.count(puzzle, Long.MAX_VALUE).solutions());
+		}
+	}
+
+	@Test
+	final void testUnsolvable() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.setCellSymbol(2, 5);
+		assertEquals(Optional.empty(), SolveOrder.fixed().findSolution(puzzle));
+		assertEquals(0, SolveOrder.seeded(3).count(puzzle, 2).solutions());
+		assertTrue(SolveOrder.fixed().findSolution(Sudoku9x9.fromString(puzzleStr)).get().isSolved());
+	}
+
+	@Test
+	final void testSymbolOrder() {
+		// Mutually incomparable symbols are ordered by their string forms, not by
+		// the set's order, which changes between runs
+		Object a = new Object() {
+			@Override
+			public String toString() {
+				return "a";
+			}
+		};
+		Object b = new Object() {
+			@Override
+			public String toString() {
+				return "b";
+			}
+		};
+		assertEquals(List.of(a, b), Topology.ordered(Set.of(b, a)));
+		assertEquals(List.of(1, 2, 3), Topology.ordered(Set.of(3, 1, 2)));
+	}
+}
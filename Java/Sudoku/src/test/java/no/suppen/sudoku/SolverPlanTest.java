@@ -0,0 +1,114 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class SolverPlanTest {
+	private final String puzzleStr = """
+					53_ _7_ ___
+					6__ 195 ___
+					_98 ___ _6_
+
+					8__ _6_ __3
+					4__ 8_3 __1
+					7__ _2_ __6
+
+					_6_ ___ 28_
+					___ 419 __5
+					___ _8_ _79""";
+
+	private final String solvedStr = """
+					534 678 912
+					672 195 348
+					198 342 567
+
+					859 761 423
+					426 853 791
+					713 924 856
+
+					961 537 284
+					287 419 635
+					345 286 179""";
+
+	/** Swaps every digit d with 10 - d, which keeps the layout of givens */
+	private static Sudoku<Integer> relabel(Sudoku<Integer> sudoku) {
+		Sudoku<Integer> relabelled = new Sudoku<>(sudoku);
+		sudoku.filledCellIndices().forEach(i -> relabelled.setCellSymbol(i, 10 - sudoku.getCellSymbol(i).get()));
+		return relabelled;
+	}
+
+	@Test
+	final void testSolve() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		SolverPlan<Integer> plan = SolverPlan.of(puzzle);
+
+		assertEquals(Optional.of(Sudoku9x9.fromString(solvedStr)), plan.solve(puzzle));
+		assertEquals(Sudoku9x9.fromString(puzzleStr), puzzle);
+		assertEquals(1, plan.countSolutions(puzzle, 2));
+	}
+
+	@Test
+	final void testPlanIsSharedByLayout() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		Sudoku<Integer> relabelled = SolverPlanTest.relabel(puzzle);
+
+		SolverPlan<Integer> plan = SolverPlan.of(puzzle);
+		assertSame(plan, SolverPlan.of(relabelled));
+		assertTrue(plan.matches(relabelled));
+		assertEquals(Optional.of(SolverPlanTest.relabel(Sudoku9x9.fromString(solvedStr))), plan.solve(relabelled));
+
+		Sudoku<Integer> moreGivens = new Sudoku<>(puzzle);
+		moreGivens.setCellSymbol(2, 4);
+		assertFalse(plan.matches(moreGivens));
+		assertNotSame(plan, SolverPlan.of(moreGivens));
+	}
+
+	@Test
+	final void testUnsolvable() {
+		// Two 5s in the first row
+		Sudoku<Integer> conflicting = Sudoku9x9.fromString(puzzleStr);
+		conflicting.setCellSymbol(8, 5);
+		assertEquals(Optional.empty(), SolverPlan.of(conflicting).solve(conflicting));
+		assertEquals(0, SolverPlan.of(conflicting).countSolutions(conflicting, 10));
+
+		// Consistent givens, but no solution
+		Sudoku<Integer> deadEnd = Sudoku9x9.fromString(puzzleStr);
+		deadEnd.setCellSymbol(2, 1);
+		assertEquals(Solver.findSolution(deadEnd), SolverPlan.of(deadEnd).solve(deadEnd));
+		assertEquals(Solver.countSolutions(deadEnd, 10), SolverPlan.of(deadEnd).countSolutions(deadEnd, 10));
+	}
+
+	@Test
+	final void testCountSolutions() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		for (int i : new int[] { 0, 1, 4, 9, 12, 13 }) {
+			puzzle.clearCellSymbol(i);
+		}
+
+		SolverPlan<Integer> plan = SolverPlan.of(puzzle);
+		assertEquals(Solver.countSolutions(puzzle, 1000), plan.countSolutions(puzzle, 1000));
+		assertEquals(2, plan.countSolutions(puzzle, 2));
+	}
+
+	@Test
+	final void testSolveAll() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		Sudoku<Integer> conflicting = new Sudoku<>(puzzle);
+		conflicting.setCellSymbol(8, 5);
+		Sudoku<Integer> empty = Sudoku9x9.fromString("_".repeat(81));
+
+		List<Sudoku<Integer>> puzzles = List.of(puzzle, SolverPlanTest.relabel(puzzle), conflicting, empty, puzzle);
+		List<Optional<Sudoku<Integer>>> solutions = SolverPlan.solveAll(puzzles);
+
+		assertEquals(puzzles.size(), solutions.size());
+		assertEquals(Optional.of(Sudoku9x9.fromString(solvedStr)), solutions.get(0));
+		assertEquals(Optional.of(SolverPlanTest.relabel(Sudoku9x9.fromString(solvedStr))), solutions.get(1));
+		assertEquals(Optional.empty(), solutions.get(2));
+		assertTrue(solutions.get(3).map(Sudoku::isSolved).orElse(false));
+		assertEquals(solutions.get(0), solutions.get(4));
+	}
+}
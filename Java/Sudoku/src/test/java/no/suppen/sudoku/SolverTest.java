@@ -2,8 +2,10 @@ package no.suppen.sudoku;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -89,4 +91,77 @@ class SolverTest {
 		
 		assertTrue(solutions.isEmpty());
 	}
+
+	@Test
+	final void testSolveWithTranspositionTable() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		puzzle.clearCellSymbol(79);
+		puzzle.clearCellSymbol(80);
+
+		TranspositionTable table = new TranspositionTable(1 << 12);
+
+		// The table must not change which solutions are found
+		Set<Sudoku<Integer>> expected = Solver.solve(puzzle).collect(Collectors.toSet());
+		Set<Sudoku<Integer>> solutions = Solver.solve(puzzle, table).collect(Collectors.toSet());
+		assertEquals(expected, solutions);
+
+		// Nor when it is reused
+		solutions = Solver.solve(puzzle, table).collect(Collectors.toSet());
+		assertEquals(expected, solutions);
+	}
+
+	@Test
+	final void testCountSolutions() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		assertEquals(1, Solver.countSolutions(puzzle, Long.MAX_VALUE));
+
+		// Removing givens gives more solutions
+		puzzle.clearCellSymbol(79);
+		puzzle.clearCellSymbol(80);
+		long solutions = Solver.countSolutions(puzzle, Long.MAX_VALUE);
+		assertEquals(Solver.solve(puzzle).collect(Collectors.toSet()).size(), solutions);
+
+		// Counting stops at the limit
+		assertEquals(2, Solver.countSolutions(puzzle, 2));
+
+		// Invalid sudokus have no solutions
+		puzzle.setCellSymbol(0, 1);
+		puzzle.setCellSymbol(1, 1);
+		assertEquals(0, Solver.countSolutions(puzzle, Long.MAX_VALUE));
+	}
+
+	@Test
+	final void testCountSolutionsWithTranspositionTable() {
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+		// Remove the top of the board, causing lots of ambiguity
+		IntStream.range(0, 14).forEach(puzzle::clearCellSymbol);
+		long expected = Solver.countSolutions(puzzle, Long.MAX_VALUE);
+		assertTrue(expected > 10);
+
+		TranspositionTable table = new TranspositionTable(1 << 16);
+		assertEquals(expected, Solver.countSolutions(puzzle, Long.MAX_VALUE, table));
+
+		// The second count is answered from the table
+		long hits = table.hits();
+		assertEquals(expected, Solver.countSolutions(puzzle, Long.MAX_VALUE, table));
+		assertEquals(hits + 1, table.hits());
+
+		// A lower limit is answered from the table as well
+		assertEquals(10, Solver.countSolutions(puzzle, 10, table));
+	}
+
+	@Test
+	final void testFindSolution() {
+		Sudoku<Integer> solved = Sudoku9x9.fromString(solvedStr);
+		Sudoku<Integer> puzzle = Sudoku9x9.fromString(puzzleStr);
+
+		assertEquals(Optional.of(solved), Solver.findSolution(puzzle));
+
+		// Even the empty board is solved quickly
+		assertTrue(Solver.findSolution(Sudoku9x9.empty()).get().isSolved());
+
+		puzzle.setCellSymbol(0, 1);
+		puzzle.setCellSymbol(1, 1);
+		assertEquals(Optional.empty(), Solver.findSolution(puzzle));
+	}
 }
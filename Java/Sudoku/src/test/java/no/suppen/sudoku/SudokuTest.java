@@ -5,8 +5,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -68,6 +71,21 @@ class SudokuTest {
 		assertFalse(sudoku == copy);
 		assertEquals(sudoku, copy);
 	}
+
+	@Test
+	final void testCellGroupsAreShared() {
+		// Immutable groups are used as they are, so boards share them
+		assertSame(Sudoku9x9.cellGroups, sudoku.cellGroups);
+		assertSame(sudoku.cellGroups, new Sudoku<>(sudoku).cellGroups);
+
+		// Mutable groups are copied, so later changes do not show
+		Set<Set<Integer>> mutableGroups = new HashSet<>(Sudoku9x9.cellGroups);
+		Sudoku<Integer> other = new Sudoku<>(Sudoku9x9.size, Sudoku9x9.symbols, mutableGroups);
+		mutableGroups.add(Set.of(0, 80));
+		assertEquals(Sudoku9x9.cellGroups, other.cellGroups);
+		assertThrows(UnsupportedOperationException.class, () -> other.cellGroups.add(Set.of(0, 80)));
+		assertSame(other.cellGroups, new Sudoku<>(other).cellGroups);
+	}
 	
 	@Test
 	final void testEquals() {
@@ -215,6 +233,45 @@ class SudokuTest {
 		});
 	}
 
+	@Test
+	final void testCellSpliterators() {
+		// A 16x16 board spans several words of the bitset
+		Sudoku<Integer> board = GridCounter.standardLayout(4, 4);
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < board.size(); i++) {
+			if (random.nextInt(3) == 0) {
+				board.setCellSymbol(i, 1 + random.nextInt(16));
+			}
+		}
+		board.clearCellSymbol(0);
+		board.setCellSymbol(255, 16);
+
+		int[] expectedEmpty = board.cellIndices().filter(i -> board.getCellSymbol(i).isEmpty()).toArray();
+		int[] expectedFilled = board.cellIndices().filter(i -> board.getCellSymbol(i).isPresent()).toArray();
+		assertArrayEquals(expectedEmpty, board.emptyCellIndices().toArray());
+		assertArrayEquals(expectedFilled, board.filledCellIndices().toArray());
+		assertArrayEquals(expectedEmpty, StreamSupport.intStream(board.emptyCellSpliterator(), true).toArray());
+		assertArrayEquals(expectedFilled, StreamSupport.intStream(board.filledCellSpliterator(), true).toArray());
+		assertEquals(expectedEmpty.length, board.emptyCellCount());
+
+		// Parts of a split know their exact sizes
+		Spliterator.OfInt spliterator = board.emptyCellSpliterator();
+		assertEquals(expectedEmpty.length, spliterator.getExactSizeIfKnown());
+		Spliterator.OfInt prefix = spliterator.trySplit();
+		assertEquals(expectedEmpty.length, prefix.estimateSize() + spliterator.estimateSize());
+		int[] first = new int[1];
+		assertTrue(prefix.tryAdvance((int i) -> first[0] = i));
+		assertEquals(expectedEmpty[0], first[0]);
+		assertEquals(expectedEmpty.length - 1, prefix.estimateSize() + spliterator.estimateSize());
+
+		// The cells are read when the spliterator is first used
+		Spliterator.OfInt late = board.emptyCellSpliterator();
+		board.setCellSymbol(expectedEmpty[0], 1);
+		assertEquals(expectedEmpty.length - 1, late.estimateSize());
+		board.clearCellSymbol(expectedEmpty[1]);
+		assertEquals(expectedEmpty.length - 1, StreamSupport.intStream(late, false).count());
+	}
+
 	@Test
 	final void testIsFilled() {
 		sudoku.cellIndices().forEach(index -> {
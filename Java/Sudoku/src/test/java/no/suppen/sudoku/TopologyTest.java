@@ -0,0 +1,111 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class TopologyTest {
+	@Test
+	final void testOf() {
+		Topology<Integer> topology = Topology.of(Sudoku9x9.empty());
+
+		assertEquals(Sudoku9x9.size, topology.size);
+		assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9), topology.symbols);
+		assertEquals(0x1FF, topology.allSymbols);
+		assertEquals(27, topology.groupCount());
+
+		// Sudokus with the same layout share the topology
+		assertSame(topology, Topology.of(Sudoku9x9.empty()));
+		assertNotSame(topology, Topology.of(Sudoku6x6.empty()));
+	}
+
+	@Test
+	final void testTables() {
+		Sudoku<Integer> sudoku = Sudoku9x9.empty();
+		Topology<Integer> topology = Topology.of(sudoku);
+
+		// The groups are the cell groups
+		assertEquals(Sudoku9x9.cellGroups, Arrays.stream(topology.groups)
+				.map(group -> Arrays.stream(group).boxed().collect(Collectors.toSet())).collect(Collectors.toSet()));
+
+		// Peers are the linked cells
+		sudoku.cellIndices().forEach(i -> {
+			assertEquals(sudoku.linkedCellIndices(i).boxed().collect(Collectors.toSet()),
+					Arrays.stream(topology.peers[i]).boxed().collect(Collectors.toSet()));
+			assertEquals(3, topology.cellGroups[i].length);
+		});
+
+		// Every standard group has one cell per symbol
+		for (boolean full : topology.fullGroups) {
+			assertTrue(full);
+		}
+	}
+
+	@Test
+	final void testPadding() {
+		// Cell 2 is in no groups, and the groups have different sizes
+		Sudoku<Integer> sudoku = new Sudoku<>(4, Set.of(1, 2), Set.of(Set.of(0, 1), Set.of(1, 3), Set.of(3)));
+		Topology<Integer> topology = Topology.of(sudoku);
+
+		assertEquals(2, topology.cellGroupsByPosition.length);
+		assertEquals(topology.groupCount(), topology.cellGroupsByPosition[0][2]);
+		assertEquals(2, topology.groupCellsByPosition.length);
+		assertArrayEquals(new boolean[] { true, true, false }, topology.fullGroups);
+	}
+
+	@Test
+	final void testSymbolMasks() {
+		Sudoku<Integer> sudoku = Sudoku6x6.empty();
+		Topology<Integer> topology = Topology.of(sudoku);
+
+		assertEquals(1, topology.bitOf(1));
+		assertEquals(1 << 5, topology.bitOf(6));
+		assertEquals(4, topology.symbolOf(1 << 3));
+		assertEquals(List.of(2, 5), topology.symbolsOf(0b10010));
+
+		sudoku.setCellSymbol(3, 3);
+		int[] masks = topology.cellMasks(sudoku);
+		assertEquals(sudoku.size() + 1, masks.length);
+		assertEquals(0b100, masks[3]);
+		assertEquals(0, masks[4]);
+	}
+
+	@Test
+	final void testTooManySymbols() {
+		Set<Integer> symbols = IntStream.range(0, 33).boxed().collect(Collectors.toSet());
+		Sudoku<Integer> sudoku = new Sudoku<>(33, symbols, Set.of());
+
+		assertFalse(Topology.supports(sudoku));
+		assertThrows(IllegalArgumentException.class, () -> Topology.of(sudoku));
+	}
+
+	@Test
+	final void testCache() {
+		// Boards copy mutable symbol sets, so copies of them share the sets, and
+		// find their topology by identity
+		Set<Integer> symbols = new HashSet<>(Sudoku9x9.symbols);
+		Sudoku<Integer> sudoku = new Sudoku<>(Sudoku9x9.size, symbols, Sudoku9x9.cellGroups);
+		symbols.add(10);
+		assertEquals(Sudoku9x9.symbols, sudoku.symbols);
+		assertSame(sudoku.symbols, new Sudoku<>(sudoku).symbols);
+		assertSame(Topology.of(sudoku), Topology.of(new Sudoku<>(sudoku)));
+
+		// Layouts used once are dropped in time, but equal layouts still get equal
+		// topologies, and plans still match them
+		Topology<Integer> standard = Topology.of(sudoku);
+		SolverPlan<Integer> plan = SolverPlan.of(sudoku);
+		for (int size = 1; size <= 300; size++) {
+			Topology.of(new Sudoku<>(size, Set.of(1), Set.of()));
+		}
+		Sudoku<Integer> again = new Sudoku<>(Sudoku9x9.size, new HashSet<>(Sudoku9x9.symbols), Sudoku9x9.cellGroups);
+		assertEquals(standard, Topology.of(again));
+		assertTrue(plan.matches(again));
+	}
+}
@@ -0,0 +1,78 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class TranspositionTableTest {
+	@Test
+	final void testCapacity() {
+		assertEquals(1024, new TranspositionTable(1000).capacity());
+		assertEquals(1024, new TranspositionTable(1024).capacity());
+		assertEquals(512, TranspositionTable.withMemoryLimit(1000 * TranspositionTable.bytesPerEntry).capacity());
+
+		assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+	}
+
+	@Test
+	final void testStoreAndLookup() {
+		TranspositionTable table = new TranspositionTable(64);
+
+		assertEquals(Optional.empty(), table.lookup(42));
+		assertFalse(table.isUnsolvable(42));
+
+		table.storeExact(42, 0, 10);
+		assertEquals(Optional.of(new TranspositionTable.Outcome(0, true)), table.lookup(42));
+		assertTrue(table.isUnsolvable(42));
+
+		table.storeLowerBound(43, 2, 10);
+		assertEquals(Optional.of(new TranspositionTable.Outcome(2, false)), table.lookup(43));
+		assertFalse(table.isUnsolvable(43));
+
+		// A higher lower bound replaces a lower one, and an exact count replaces both
+		table.storeLowerBound(43, 1, 10);
+		assertEquals(Optional.of(new TranspositionTable.Outcome(2, false)), table.lookup(43));
+		table.storeLowerBound(43, 5, 10);
+		assertEquals(Optional.of(new TranspositionTable.Outcome(5, false)), table.lookup(43));
+		table.storeExact(43, 7, 10);
+		assertEquals(Optional.of(new TranspositionTable.Outcome(7, true)), table.lookup(43));
+
+		table.clear();
+		assertEquals(Optional.empty(), table.lookup(42));
+		assertEquals(Optional.empty(), table.lookup(43));
+	}
+
+	@Test
+	final void testReplacement() {
+		TranspositionTable table = new TranspositionTable(2);
+
+		// All keys share the single bucket
+		table.storeExact(1, 0, 50);
+		table.storeExact(2, 0, 10);
+		table.storeExact(3, 0, 20);
+
+		// The most expensive outcome stays, the newest takes the other slot
+		assertTrue(table.isUnsolvable(1));
+		assertFalse(table.isUnsolvable(2));
+		assertTrue(table.isUnsolvable(3));
+
+		// A more expensive outcome pushes the old one to the other slot
+		table.storeExact(4, 0, 60);
+		assertTrue(table.isUnsolvable(4));
+		assertTrue(table.isUnsolvable(1));
+		assertFalse(table.isUnsolvable(3));
+	}
+
+	@Test
+	final void testConcurrentAccess() {
+		TranspositionTable table = new TranspositionTable(1 << 16);
+
+		IntStream.range(0, 1 << 14).parallel().forEach(i -> table.storeExact(i, i, 1));
+
+		IntStream.range(0, 1 << 14).parallel()
+				.forEach(i -> assertEquals(Optional.of(new TranspositionTable.Outcome(i, true)), table.lookup(i)));
+	}
+}
@@ -0,0 +1,20 @@
+package no.suppen.sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class WarmupTest {
+	@Test
+	final void testRun() {
+		assertDoesNotThrow(() -> Warmup.run(2));
+	}
+
+	@Test
+	final void testTopologyIsFoundByIdentity() {
+		Sudoku<Integer> first = Sudoku9x9.empty();
+		Sudoku<Integer> second = Sudoku9x9.fromString("_".repeat(81));
+		assertSame(Topology.of(first), Topology.of(second));
+		assertSame(Topology.of(first), Topology.of(new Sudoku<>(first)));
+	}
+}